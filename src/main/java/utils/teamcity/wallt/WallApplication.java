@@ -121,6 +121,7 @@ public final class WallApplication extends Application {
     public void stop( ) throws Exception {
         LOGGER.info( "Stopping ..." );
         LOGGER.info( "----\n" );
+        _apiMonitoringService.stop( );
         _injector.getInstance( AsyncHttpClientConfig.class ).executorService( ).shutdownNow( );
         _injector.getInstance( AsyncHttpClient.class ).close( );
 
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.teamcity.wallt.model.logger.Loggers;
+
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class ApiCircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( Loggers.NETWORK );
+
+    static final int FAILURES_BEFORE_OPENING = 3;
+    static final Duration MIN_PROBE_DELAY = Duration.ofSeconds( 10 );
+    static final Duration MAX_PROBE_DELAY = Duration.ofMinutes( 5 );
+    static final double PROBE_DELAY_JITTER = 0.2;
+
+    enum State {
+        /**
+         * Requests are sent
+         */
+        CLOSED,
+        /**
+         * Requests fail immediately until next probe
+         */
+        OPEN,
+        /**
+         * A single probe request is sent, other requests fail immediately
+         */
+        HALF_OPEN
+    }
+
+    private final Ticker _ticker;
+    private final DoubleSupplier _random;
+    private final Map<ApiEndpoint, EndpointCircuit> _circuits = Maps.newEnumMap( ApiEndpoint.class );
+    private final AtomicLong _rejectedCount = new AtomicLong( );
+
+    @Inject
+    ApiCircuitBreaker( ) {
+        this( Ticker.systemTicker( ), ( ) -> ThreadLocalRandom.current( ).nextDouble( ) );
+    }
+
+    @VisibleForTesting
+    ApiCircuitBreaker( final Ticker ticker, final DoubleSupplier random ) {
+        _ticker = ticker;
+        _random = random;
+        for ( final ApiEndpoint endpoint : ApiEndpoint.values( ) )
+            _circuits.put( endpoint, new EndpointCircuit( endpoint ) );
+    }
+
+    /**
+     * Sends request unless circuit of its endpoint is open: then request fails immediately,
+     * so the wall keeps last known state instead of waiting for timeouts
+     */
+    <T> ListenableFuture<T> call( final String path, final Supplier<ListenableFuture<T>> request ) {
+        final EndpointCircuit circuit = _circuits.get( ApiEndpoint.fromPath( path ) );
+        if ( !circuit.tryAcquire( ) ) {
+            _rejectedCount.incrementAndGet( );
+            return Futures.immediateFailedFuture( new ApiCircuitOpenException( "Server is unavailable for " + circuit.getEndpoint( ) + " requests, request is not sent: " + path ) );
+        }
+
+        ListenableFuture<T> future;
+        try {
+            future = request.get( );
+        } catch ( RuntimeException e ) {
+            future = Futures.immediateFailedFuture( e );
+        }
+
+        Futures.addCallback( future, new FutureCallback<T>( ) {
+            @Override
+            public void onSuccess( final T result ) {
+                circuit.onSuccess( );
+            }
+
+            @Override
+            public void onFailure( final Throwable t ) {
+                if ( t instanceof CancellationException )
+                    circuit.onCancelled( );
+                else if ( isServerFailure( t ) )
+                    circuit.onFailure( );
+                else
+                    circuit.onSuccess( );
+            }
+        } );
+        return future;
+    }
+
+    /**
+     * Client errors, like a build which does not exist anymore, mean server is responding
+     */
+    private static boolean isServerFailure( final Throwable t ) {
+        if ( !( t instanceof ApiException ) )
+            return true;
+        final int statusCode = ( (ApiException) t ).getStatusCode( );
+        return statusCode == 0 || statusCode == 429 || statusCode >= 500;
+    }
+
+    State getState( final ApiEndpoint endpoint ) {
+        return _circuits.get( endpoint ).getState( );
+    }
+
+    long getRejectedCount( ) {
+        return _rejectedCount.get( );
+    }
+
+    private final class EndpointCircuit {
+
+        private final ApiEndpoint _endpoint;
+
+        // Following fields are guarded by this
+        private State _state = State.CLOSED;
+        private int _failureCount;
+        private int _openCount;
+        private long _probeTime;
+
+        EndpointCircuit( final ApiEndpoint endpoint ) {
+            _endpoint = endpoint;
+        }
+
+        ApiEndpoint getEndpoint( ) {
+            return _endpoint;
+        }
+
+        synchronized State getState( ) {
+            return _state;
+        }
+
+        synchronized boolean tryAcquire( ) {
+            switch ( _state ) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if ( _ticker.read( ) < _probeTime )
+                        return false;
+                    _state = State.HALF_OPEN;
+                    LOGGER.info( "Probing server availability for {} requests", _endpoint );
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        synchronized void onSuccess( ) {
+            if ( _state != State.CLOSED )
+                LOGGER.info( "Server is available again for {} requests", _endpoint );
+            _state = State.CLOSED;
+            _failureCount = 0;
+            _openCount = 0;
+        }
+
+        /**
+         * Cancelled request says nothing about server, but a cancelled probe must not keep circuit half open
+         */
+        synchronized void onCancelled( ) {
+            if ( _state == State.HALF_OPEN ) {
+                _state = State.OPEN;
+                _probeTime = _ticker.read( );
+            }
+        }
+
+        synchronized void onFailure( ) {
+            _failureCount++;
+            if ( _state == State.HALF_OPEN || ( _state == State.CLOSED && _failureCount >= FAILURES_BEFORE_OPENING ) )
+                open( );
+        }
+
+        private void open( ) {
+            _openCount++;
+            // Probe delay doubles at each opening, with jitter so endpoints are not probed all together
+            final long baseDelay = Math.min( MAX_PROBE_DELAY.toNanos( ), MIN_PROBE_DELAY.toNanos( ) << Math.min( _openCount - 1, 20 ) );
+            final long delay = (long) ( baseDelay * ( 1 + PROBE_DELAY_JITTER * ( 2 * _random.getAsDouble( ) - 1 ) ) );
+            _probeTime = _ticker.read( ) + delay;
+            _state = State.OPEN;
+            LOGGER.warn( "Server is unavailable for {} requests after {} failures, next probe in {} s", _endpoint, _failureCount, Duration.ofNanos( delay ).getSeconds( ) );
+        }
+    }
+}
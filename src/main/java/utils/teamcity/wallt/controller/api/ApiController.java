@@ -15,30 +15,43 @@
 
 package utils.teamcity.wallt.controller.api;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.eventbus.EventBus;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import utils.teamcity.wallt.controller.api.json.*;
 import utils.teamcity.wallt.model.build.*;
 import utils.teamcity.wallt.model.configuration.Configuration;
+import utils.teamcity.wallt.model.event.TopologyChangeEvent;
 import utils.teamcity.wallt.model.logger.Loggers;
 
 import javax.inject.Inject;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.google.common.util.concurrent.Futures.addCallback;
 
@@ -50,9 +63,10 @@ import static com.google.common.util.concurrent.Futures.addCallback;
 final class ApiController implements IApiController {
 
     static final int MAX_BUILDS_TO_CONSIDER = 3;
-
-    private static final int ERROR_COUNT_BEFORE_IGNORING = 2;
-    private static final int IGNORING_TIME_IN_MINUTES = 20;
+    static final int MAX_BUILD_TYPES_BY_BATCH = 50;
+    static final int MAX_BUILDS_BY_CHANGE_FEED = 100;
+    static final int MAX_CHANGE_FEED_PAGES = 10;
+    static final int DISCOVERY_PAGE_SIZE = 1000;
 
     private static final Logger LOGGER = LoggerFactory.getLogger( Loggers.MAIN );
 
@@ -67,11 +81,9 @@ final class ApiController implements IApiController {
     private final Map<ApiVersion, Function<BuildType, BuildTypeData>> _buildTypeProvider;
     private final Map<ApiVersion, Function<Project, ProjectData>> _projectProvider;
 
-    // Build id -> error count
-    private final Cache<Integer, Integer> _buildRequestErrorCounter = CacheBuilder.newBuilder( )
-            .concurrencyLevel( Runtime.getRuntime( ).availableProcessors( ) * 2 )
-            .expireAfterWrite( IGNORING_TIME_IN_MINUTES, TimeUnit.MINUTES )
-            .build( );
+    // Highest build id returned by change feed, 0 until first full status request
+    private final AtomicInteger _lastSeenBuildId = new AtomicInteger( );
+    private final Object _topologyLock = new Object( );
 
     @Inject
     ApiController( final Configuration configuration, final IProjectManager projectManager, final IBuildTypeManager buildManager, final IApiRequestController apiRequestController, final EventBus eventBus, final ExecutorService executorService, final Map<ApiVersion, Function<Build, BuildData>> buildFunctionsByVersion, final Map<ApiVersion, Function<BuildType, BuildTypeData>> buildTypeProvider, final Map<ApiVersion, Function<Project, ProjectData>> projectProvider ) {
@@ -90,23 +102,64 @@ final class ApiController implements IApiController {
         _executorService.submit( runnable );
     }
 
+    @Override
+    public ListenableFuture<ApiVersion> detectApiVersion( ) {
+        final SettableFuture<ApiVersion> ackFuture = SettableFuture.create( );
+        final Iterator<ApiVersion> versions = ApiVersion.probingOrder( ).iterator( );
+        runInWorkerThread( ( ) -> probeServerVersion( versions, ackFuture ) );
+        return ackFuture;
+    }
+
+    private void probeServerVersion( final Iterator<ApiVersion> versions, final SettableFuture<ApiVersion> ackFuture ) {
+        final ApiVersion version = versions.next( );
+        addCallback( _apiRequestController.sendRequest( version, "server", Server.class, ApiRequestPriority.INTERACTIVE ), new FutureCallback<Server>( ) {
+            @Override
+            public void onSuccess( final Server server ) {
+                final ApiVersion detectedVersion = ApiVersion.bestFor( server.getVersionMajor( ), server.getVersionMinor( ) );
+                final PollingStrategy pollingStrategy = PollingStrategy.cheapestFor( detectedVersion );
+                LOGGER.info( "Server version " + server.getVersion( ) + " detected: using api version " + detectedVersion.getName( ) + " with " + pollingStrategy + " polling strategy" );
+                _configuration.setApiVersion( detectedVersion );
+                _configuration.setPollingStrategy( pollingStrategy );
+                ackFuture.set( detectedVersion );
+            }
+
+            @Override
+            public void onFailure( final Throwable t ) {
+                // Server is older than this api version: trying next one
+                if ( t instanceof ApiException && ( (ApiException) t ).getStatusCode( ) == 404 && versions.hasNext( ) ) {
+                    probeServerVersion( versions, ackFuture );
+                    return;
+                }
+                LOGGER.error( "Error during detecting server version:", t );
+                ackFuture.setException( t );
+            }
+        } );
+    }
+
     @Override
     public ListenableFuture<Void> loadProjectList( ) {
         if ( !getApiVersion( ).isSupported( ApiFeature.PROJECT_STATUS, ApiFeature.BUILD_TYPE_STATUS ) )
             return Futures.immediateFuture( null );
+        if ( getApiVersion( ).isSupported( ApiFeature.PAGED_LOCATOR ) )
+            return loadPagedList( "projects", ProjectList.class, this::toProjects, _projectManager::mergeProjects, _projectManager::synchronizeProjects );
 
         final SettableFuture<Void> ackFuture = SettableFuture.create( );
 
         runInWorkerThread( ( ) -> {
-            final ListenableFuture<ProjectList> projectListFuture = _apiRequestController.sendRequest( getApiVersion( ), "projects", ProjectList.class );
+            final ListenableFuture<ProjectList> projectListFuture = _apiRequestController.sendRequest( getApiVersion( ), "projects", ProjectList.class, ApiRequestPriority.INTERACTIVE );
             addCallback( projectListFuture, new FutureCallback<ProjectList>( ) {
                 @Override
                 public void onSuccess( final ProjectList result ) {
-                    final List<ProjectData> projects = result.getProjects( ).stream( )
-                            .map( ( project ) -> _projectProvider.get( getApiVersion( ) ).apply( project ) )
-                            .collect( Collectors.toList( ) );
-                    _projectManager.registerProjects( projects );
+                    final List<ProjectData> projects = toProjects( result );
+                    final Set<ProjectData> projectsToUpdate;
+                    synchronized ( _topologyLock ) {
+                        _projectManager.registerProjects( projects );
+                        // Build types may be loaded before their projects
+                        projectsToUpdate = updateProjectMembership( );
+                    }
                     _eventBus.post( _projectManager );
+                    for ( final ProjectData project : projectsToUpdate )
+                        _eventBus.post( project );
                     ackFuture.set( null );
 
                     for ( final ProjectData project : _projectManager.getProjects( ) ) {
@@ -129,28 +182,28 @@ final class ApiController implements IApiController {
     public ListenableFuture<Void> loadBuildTypeList( ) {
         if ( !getApiVersion( ).isSupported( ApiFeature.BUILD_TYPE_STATUS ) )
             return Futures.immediateFuture( null );
+        if ( getApiVersion( ).isSupported( ApiFeature.PAGED_LOCATOR ) )
+            return loadPagedList( "buildTypes", BuildTypeList.class, this::toBuildTypes, _buildManager::mergeBuildTypes, _buildManager::synchronizeBuildTypes );
 
         final SettableFuture<Void> ackFuture = SettableFuture.create( );
 
         runInWorkerThread( ( ) -> {
-            final ListenableFuture<BuildTypeList> buildListFuture = _apiRequestController.sendRequest( getApiVersion( ), "buildTypes", BuildTypeList.class );
+            final ListenableFuture<BuildTypeList> buildListFuture = _apiRequestController.sendRequest( getApiVersion( ), "buildTypes", BuildTypeList.class, ApiRequestPriority.INTERACTIVE );
             addCallback( buildListFuture, new FutureCallback<BuildTypeList>( ) {
                 @Override
                 public void onSuccess( final BuildTypeList result ) {
-                    final List<BuildTypeData> buildTypes = result.getBuildTypes( ).stream( )
-                            .map( ( btype ) -> _buildTypeProvider.get( getApiVersion( ) ).apply( btype ) )
-                            .collect( Collectors.toList( ) );
-                    _buildManager.registerBuildTypes( buildTypes );
+                    final List<BuildTypeData> buildTypes = toBuildTypes( result );
+                    final Set<ProjectData> projectsToUpdate;
+                    synchronized ( _topologyLock ) {
+                        _buildManager.registerBuildTypes( buildTypes );
+                        projectsToUpdate = updateProjectMembership( );
+                    }
                     _eventBus.post( _buildManager );
+                    for ( final ProjectData project : projectsToUpdate )
+                        _eventBus.post( project );
 
-                    for ( final BuildTypeData buildType : _buildManager.getBuildTypes( ) ) {
-                        final Optional<ProjectData> project = _projectManager.getProject( buildType.getProjectId( ) );
-                        if ( project.isPresent( ) ) {
-                            project.get( ).registerBuildType( buildType );
-                            _eventBus.post( project.get( ) );
-                        }
+                    for ( final BuildTypeData buildType : _buildManager.getBuildTypes( ) )
                         LOGGER.info( "Discovering build type " + buildType.getId( ) + " (" + buildType.getName( ) + ") on project " + buildType.getProjectId( ) + " (" + buildType.getProjectName( ) + ")" );
-                    }
 
                     ackFuture.set( null );
                 }
@@ -166,6 +219,230 @@ final class ApiController implements IApiController {
         return ackFuture;
     }
 
+    private List<ProjectData> toProjects( final ProjectList projectList ) {
+        return projectList.getProjects( ).stream( )
+                .map( ( project ) -> _projectProvider.get( getApiVersion( ) ).apply( project ) )
+                .collect( Collectors.toList( ) );
+    }
+
+    private List<BuildTypeData> toBuildTypes( final BuildTypeList buildTypeList ) {
+        return buildTypeList.getBuildTypes( ).stream( )
+                .map( ( btype ) -> _buildTypeProvider.get( getApiVersion( ) ).apply( btype ) )
+                .collect( Collectors.toList( ) );
+    }
+
+    /**
+     * Each page is merged as soon as it is received, then items which are no more on server are removed once all pages are received
+     */
+    private <R extends ApiPagedResponse, T> ListenableFuture<Void> loadPagedList( final String path, final Class<R> responseType, final Function<R, List<T>> toItems,
+                                                                                 final Function<List<T>, TopologyChange> merge, final Function<List<T>, TopologyChange> synchronize ) {
+        final SettableFuture<Void> ackFuture = SettableFuture.create( );
+        final ListenableFuture<List<T>> itemsFuture = cancelledWith( ackFuture, requestPagedList( path, responseType, toItems, ApiRequestPriority.INTERACTIVE, page -> applyPages( ( ) -> merge.apply( page ) ) ) );
+
+        addCallback( itemsFuture, new FutureCallback<List<T>>( ) {
+            @Override
+            public void onSuccess( final List<T> items ) {
+                applyPages( ( ) -> synchronize.apply( items ) );
+                LOGGER.info( "Discovering {} {}", items.size( ), path );
+                ackFuture.set( null );
+            }
+
+            @Override
+            public void onFailure( final Throwable t ) {
+                ackFuture.setException( t );
+                if ( isExpectedFailure( t ) )
+                    return;
+                LOGGER.error( "Error during loading " + path + " list:", t );
+            }
+        } );
+
+        return ackFuture;
+    }
+
+    /**
+     * First page is requested alone, so that lists which fit in it cost a single request. Following pages are requested by waves of
+     * parallel requests until server announces no next page.
+     *
+     * @param pageConsumer Called with items of each non empty page as soon as it is received
+     * @return Future of all items, in server order
+     */
+    private <R extends ApiPagedResponse, T> ListenableFuture<List<T>> requestPagedList( final String path, final Class<R> responseType, final Function<R, List<T>> toItems,
+                                                                                       final ApiRequestPriority priority, final Consumer<List<T>> pageConsumer ) {
+        final SettableFuture<List<T>> itemsFuture = SettableFuture.create( );
+        // Page start -> page items, so that whole list keeps server order
+        final ConcurrentNavigableMap<Integer, List<T>> pages = new ConcurrentSkipListMap<>( );
+        runInWorkerThread( ( ) -> requestPageWave( path, responseType, toItems, priority, pageConsumer, 0, 1, pages, itemsFuture ) );
+        return itemsFuture;
+    }
+
+    private <R extends ApiPagedResponse, T> void requestPageWave( final String path, final Class<R> responseType, final Function<R, List<T>> toItems,
+                                                                  final ApiRequestPriority priority, final Consumer<List<T>> pageConsumer, final int firstStart, final int pageCount,
+                                                                  final ConcurrentNavigableMap<Integer, List<T>> pages, final SettableFuture<List<T>> itemsFuture ) {
+        if ( itemsFuture.isCancelled( ) )
+            return;
+
+        final List<ListenableFuture<R>> pageFutures = Lists.newArrayList( );
+        for ( int i = 0; i < pageCount; i++ ) {
+            final int start = firstStart + i * DISCOVERY_PAGE_SIZE;
+            final ListenableFuture<R> pageFuture = cancelledWith( itemsFuture, _apiRequestController.sendRequest( getApiVersion( ), pagedPath( path, start ), responseType, priority ) );
+            addCallback( pageFuture, new FutureCallback<R>( ) {
+                @Override
+                public void onSuccess( final R result ) {
+                    final List<T> items = toItems.apply( result );
+                    pages.put( start, items );
+                    if ( !items.isEmpty( ) )
+                        pageConsumer.accept( items );
+                }
+
+                @Override
+                public void onFailure( final Throwable t ) {
+                    // Reported once for the whole wave
+                }
+            } );
+            pageFutures.add( pageFuture );
+        }
+
+        addCallback( Futures.allAsList( pageFutures ), new FutureCallback<List<R>>( ) {
+            @Override
+            public void onSuccess( final List<R> result ) {
+                if ( result.stream( ).allMatch( ApiPagedResponse::hasNextPage ) ) {
+                    requestPageWave( path, responseType, toItems, priority, pageConsumer, firstStart + pageCount * DISCOVERY_PAGE_SIZE, Math.max( 1, _configuration.getMaxParallelRequests( ) ), pages, itemsFuture );
+                    return;
+                }
+                itemsFuture.set( pages.values( ).stream( ).flatMap( List::stream ).collect( Collectors.toList( ) ) );
+            }
+
+            @Override
+            public void onFailure( final Throwable t ) {
+                itemsFuture.setException( t );
+            }
+        } );
+    }
+
+    /**
+     * Pages of projects and build types are received concurrently, so they are applied one at a time to keep project membership consistent
+     */
+    private void applyPages( final Supplier<TopologyChange> apply ) {
+        final Set<ProjectData> projectsToUpdate;
+        synchronized ( _topologyLock ) {
+            apply.get( );
+            projectsToUpdate = updateProjectMembership( );
+        }
+        _eventBus.post( _projectManager );
+        _eventBus.post( _buildManager );
+        for ( final ProjectData project : projectsToUpdate )
+            _eventBus.post( project );
+    }
+
+    static String pagedPath( final String path, final int start ) {
+        return path + "?locator=start:" + start + ",count:" + DISCOVERY_PAGE_SIZE;
+    }
+
+    @Override
+    public ListenableFuture<Void> synchronizeTopology( ) {
+        if ( !getApiVersion( ).isSupported( ApiFeature.PROJECT_STATUS, ApiFeature.BUILD_TYPE_STATUS ) )
+            return Futures.immediateFuture( null );
+
+        final SettableFuture<Void> ackFuture = SettableFuture.create( );
+
+        runInWorkerThread( ( ) -> {
+            if ( ackFuture.isCancelled( ) )
+                return;
+            final ListenableFuture<List<ProjectData>> projectsFuture = cancelledWith( ackFuture, requestList( "projects", ProjectList.class, this::toProjects, ApiRequestPriority.BACKGROUND ) );
+            final ListenableFuture<List<BuildTypeData>> buildTypesFuture = cancelledWith( ackFuture, requestList( "buildTypes", BuildTypeList.class, this::toBuildTypes, ApiRequestPriority.BACKGROUND ) );
+            addCallback( Futures.allAsList( ImmutableList.<ListenableFuture<?>>of( projectsFuture, buildTypesFuture ) ), new FutureCallback<List<Object>>( ) {
+                @Override
+                public void onSuccess( final List<Object> result ) {
+                    applyTopology( Futures.getUnchecked( projectsFuture ), Futures.getUnchecked( buildTypesFuture ) );
+                    ackFuture.set( null );
+                }
+
+                @Override
+                public void onFailure( final Throwable t ) {
+                    ackFuture.setException( t );
+                    if ( isExpectedFailure( t ) )
+                        return;
+                    LOGGER.error( "Error during topology synchronization:", t );
+                }
+            } );
+        } );
+
+        return ackFuture;
+    }
+
+    /**
+     * Lists are requested by pages when server supports it, so that background synchronization is not the largest request sent
+     */
+    private <R extends ApiPagedResponse, T> ListenableFuture<List<T>> requestList( final String path, final Class<R> responseType, final Function<R, List<T>> toItems, final ApiRequestPriority priority ) {
+        if ( getApiVersion( ).isSupported( ApiFeature.PAGED_LOCATOR ) )
+            return requestPagedList( path, responseType, toItems, priority, page -> { } );
+        return Futures.transform( _apiRequestController.sendRequest( getApiVersion( ), path, responseType, priority ), toItems::apply );
+    }
+
+    /**
+     * Only differences with server are applied, so that build types keep their cached builds
+     */
+    private void applyTopology( final List<ProjectData> projects, final List<BuildTypeData> buildTypes ) {
+        final TopologyChange projectChange;
+        final TopologyChange buildTypeChange;
+        final Set<ProjectData> projectsToUpdate;
+        synchronized ( _topologyLock ) {
+            projectChange = _projectManager.synchronizeProjects( projects );
+            buildTypeChange = _buildManager.synchronizeBuildTypes( buildTypes );
+            if ( projectChange.isEmpty( ) && buildTypeChange.isEmpty( ) )
+                return;
+            projectsToUpdate = updateProjectMembership( );
+        }
+
+        for ( final ProjectData project : _projectManager.getProjects( ) )
+            if ( projectChange.getRenamedIds( ).contains( project.getId( ) ) )
+                projectsToUpdate.add( project );
+        for ( final BuildTypeData buildType : _buildManager.getBuildTypes( ) )
+            if ( buildTypeChange.getRenamedIds( ).contains( buildType.getId( ) ) )
+                _eventBus.post( buildType );
+
+        for ( final ProjectData project : projectsToUpdate )
+            _eventBus.post( project );
+
+        final TopologyChangeEvent event = new TopologyChangeEvent( projectChange, buildTypeChange );
+        LOGGER.info( "Topology changed on server: {}", event );
+        _eventBus.post( event );
+    }
+
+    /**
+     * Build types which are removed or moved leave their project, and those which are new or moved join their project
+     *
+     * @return Projects which build types changed
+     */
+    private Set<ProjectData> updateProjectMembership( ) {
+        final Set<BuildTypeData> buildTypes = Sets.newIdentityHashSet( );
+        buildTypes.addAll( _buildManager.getBuildTypes( ) );
+        final Set<BuildTypeData> buildTypesInProject = Sets.newIdentityHashSet( );
+        final Map<String, ProjectData> projectsById = Maps.newHashMap( );
+        final Set<ProjectData> projectsToUpdate = Sets.newLinkedHashSet( );
+
+        for ( final ProjectData project : _projectManager.getProjects( ) ) {
+            projectsById.put( project.getId( ), project );
+            for ( final BuildTypeData buildType : project.getBuildTypes( ) ) {
+                if ( buildTypes.contains( buildType ) && buildType.getProjectId( ).equals( project.getId( ) ) ) {
+                    buildTypesInProject.add( buildType );
+                    continue;
+                }
+                project.unregisterBuildType( buildType.getId( ) );
+                projectsToUpdate.add( project );
+            }
+        }
+
+        for ( final BuildTypeData buildType : buildTypes ) {
+            final ProjectData project = projectsById.get( buildType.getProjectId( ) );
+            if ( project == null || buildTypesInProject.contains( buildType ) )
+                continue;
+            project.registerBuildType( buildType );
+            projectsToUpdate.add( project );
+        }
+        return projectsToUpdate;
+    }
+
     @Override
     public ListenableFuture<Void> requestQueuedBuilds( ) {
         if ( !getApiVersion( ).isSupported( ApiFeature.QUEUE_STATUS ) )
@@ -174,7 +451,9 @@ final class ApiController implements IApiController {
         final SettableFuture<Void> ackFuture = SettableFuture.create( );
 
         runInWorkerThread( ( ) -> {
-            final ListenableFuture<QueuedBuildList> buildQueueFuture = _apiRequestController.sendRequest( getApiVersion( ), "buildQueue", QueuedBuildList.class );
+            if ( ackFuture.isCancelled( ) )
+                return;
+            final ListenableFuture<QueuedBuildList> buildQueueFuture = cancelledWith( ackFuture, _apiRequestController.sendRequest( getApiVersion( ), "buildQueue", QueuedBuildList.class ) );
             addCallback( buildQueueFuture, new FutureCallback<QueuedBuildList>( ) {
                 @Override
                 public void onSuccess( final QueuedBuildList queuedBuildList ) {
@@ -191,6 +470,8 @@ final class ApiController implements IApiController {
                 @Override
                 public void onFailure( final Throwable throwable ) {
                     ackFuture.setException( throwable );
+                    if ( isExpectedFailure( throwable ) )
+                        return;
                     LOGGER.error( "Error during loading build queue:", throwable );
                 }
             } );
@@ -201,15 +482,19 @@ final class ApiController implements IApiController {
 
     @Override
     public ListenableFuture<Void> requestLastBuildStatus( final BuildTypeData buildType ) {
+        return requestLastBuildStatus( buildType, ApiRequestPriority.VISIBLE );
+    }
+
+    private ListenableFuture<Void> requestLastBuildStatus( final BuildTypeData buildType, final ApiRequestPriority priority ) {
         if ( !getApiVersion( ).isSupported( ApiFeature.BUILD_TYPE_STATUS ) )
             return Futures.immediateFuture( null );
 
-        _buildRequestErrorCounter.cleanUp( );
-
         final SettableFuture<Void> ackFuture = SettableFuture.create( );
 
         runInWorkerThread( ( ) -> {
-            final ListenableFuture<BuildList> buildListFuture = _apiRequestController.sendRequest( getApiVersion( ), "builds/?locator=buildType:" + buildType.getId( ) + ",running:any,count:" + MAX_BUILDS_TO_CONSIDER, BuildList.class );
+            if ( ackFuture.isCancelled( ) )
+                return;
+            final ListenableFuture<BuildList> buildListFuture = cancelledWith( ackFuture, _apiRequestController.sendRequest( getApiVersion( ), "builds/?locator=buildType:" + buildType.getId( ) + ",running:any,count:" + MAX_BUILDS_TO_CONSIDER, BuildList.class, priority ) );
             addCallback( buildListFuture, new FutureCallback<BuildList>( ) {
                 @Override
                 public void onSuccess( final BuildList result ) {
@@ -225,12 +510,6 @@ final class ApiController implements IApiController {
                         return previousBuildStatus.isPresent( ) && previousBuildStatus.get( ).getState( ) == BuildState.finished;
                     } );
 
-                    // We ignore builds which status is in error
-                    buildToRequest.removeIf( buildId -> {
-                        final Integer errorCount = _buildRequestErrorCounter.getIfPresent( buildId );
-                        return errorCount != null && errorCount >= ERROR_COUNT_BEFORE_IGNORING;
-                    } );
-
                     // We add all builds that are always in state running into data
                     buildToRequest.addAll(
                             buildType.getLastBuilds( BuildState.running, Integer.MAX_VALUE ).stream( )
@@ -239,7 +518,7 @@ final class ApiController implements IApiController {
 
                     final List<ListenableFuture<Build>> futures = Lists.newArrayList( );
                     for ( final int buildId : buildToRequest ) {
-                        final ListenableFuture<Build> buildStatusFuture = _apiRequestController.sendRequest( getApiVersion( ), "builds/id:" + buildId, Build.class );
+                        final ListenableFuture<Build> buildStatusFuture = cancelledWith( ackFuture, _apiRequestController.sendRequest( getApiVersion( ), "builds/id:" + buildId, Build.class, priority ) );
                         addCallback( buildStatusFuture, registerBuildStatus( buildType, buildId ) );
                         futures.add( buildStatusFuture );
                     }
@@ -260,6 +539,8 @@ final class ApiController implements IApiController {
                 @Override
                 public void onFailure( final Throwable t ) {
                     ackFuture.setException( t );
+                    if ( isExpectedFailure( t ) )
+                        return;
                     LOGGER.error( "Error during loading builds list for build type: " + buildType.getId( ), t );
                 }
             } );
@@ -268,6 +549,358 @@ final class ApiController implements IApiController {
         return ackFuture;
     }
 
+    @Override
+    public ListenableFuture<Void> requestLastBuildStatus( final Collection<BuildTypeData> buildTypes ) {
+        return requestLastBuildStatus( buildTypes, ApiRequestPriority.VISIBLE );
+    }
+
+    @Override
+    public ListenableFuture<Void> requestLastBuildStatus( final Collection<BuildTypeData> buildTypes, final ApiRequestPriority priority ) {
+        final int maxParallelRequests = Math.max( 1, _configuration.getMaxParallelRequests( ) );
+
+        if ( !getApiVersion( ).isSupported( ApiFeature.MULTIPLE_BUILD_TYPE_STATUS ) ) {
+            final ApiRequestPipeline<BuildTypeData> pipeline = new ApiRequestPipeline<>( "Last build status of " + buildTypes.size( ) + " build types", buildTypes, maxParallelRequests,
+                    buildType -> requestLastBuildStatus( buildType, priority ) );
+            return pipeline.start( );
+        }
+
+        final List<List<BuildTypeData>> batches = Lists.newArrayList( Iterables.partition( buildTypes, MAX_BUILD_TYPES_BY_BATCH ) );
+        final ApiRequestPipeline<List<BuildTypeData>> pipeline = new ApiRequestPipeline<>( "Last build status of " + buildTypes.size( ) + " build types by batch", batches, maxParallelRequests,
+                batch -> requestLastBuildStatusByBatch( batch, priority ) );
+        return pipeline.start( );
+    }
+
+    private ListenableFuture<Void> requestLastBuildStatusByBatch( final List<BuildTypeData> buildTypes, final ApiRequestPriority priority ) {
+        final SettableFuture<Void> ackFuture = SettableFuture.create( );
+
+        runInWorkerThread( ( ) -> {
+            if ( ackFuture.isCancelled( ) )
+                return;
+            final ListenableFuture<BuildTypeList> buildTypeListFuture = cancelledWith( ackFuture, _apiRequestController.sendRequest( getApiVersion( ), lastBuildStatusBatchPath( buildTypes ), BuildTypeList.class, priority ) );
+            addCallback( buildTypeListFuture, new FutureCallback<BuildTypeList>( ) {
+                @Override
+                public void onSuccess( final BuildTypeList result ) {
+                    registerLastBuildStatus( result, buildTypes, priority, ackFuture );
+                }
+
+                @Override
+                public void onFailure( final Throwable t ) {
+                    final int statusCode = t instanceof ApiException ? ( (ApiException) t ).getStatusCode( ) : 0;
+                    if ( buildTypes.size( ) > 1 && ( statusCode == 400 || statusCode == 404 ) ) {
+                        // Server rejects the whole batch as soon as one of its build types is unknown, batch is split to isolate it
+                        final int half = buildTypes.size( ) / 2;
+                        final ListenableFuture<List<Void>> splitFuture = Futures.allAsList( ImmutableList.of(
+                                cancelledWith( ackFuture, requestLastBuildStatusByBatch( buildTypes.subList( 0, half ), priority ) ),
+                                cancelledWith( ackFuture, requestLastBuildStatusByBatch( buildTypes.subList( half, buildTypes.size( ) ), priority ) ) ) );
+                        relay( Futures.transform( splitFuture, Functions.<Void>constant( null ) ), ackFuture );
+                        return;
+                    }
+                    if ( statusCode == 404 ) {
+                        // May be transient or a permission matter: build type is only removed by topology synchronization
+                        LOGGER.warn( "Build type {} is not found on server, its status is skipped", buildTypes.get( 0 ).getId( ) );
+                        ackFuture.set( null );
+                        return;
+                    }
+                    ackFuture.setException( t );
+                    if ( isExpectedFailure( t ) )
+                        return;
+                    LOGGER.error( "Error during loading builds list for build types: " + buildTypes.stream( ).map( BuildTypeData::getId ).collect( Collectors.joining( ", " ) ), t );
+                }
+            } );
+        } );
+
+        return ackFuture;
+    }
+
+    @Override
+    public ListenableFuture<Void> requestProjectStatus( final ProjectData project ) {
+        return requestProjectStatus( project, ApiRequestPriority.VISIBLE );
+    }
+
+    @Override
+    public ListenableFuture<Void> requestProjectStatus( final ProjectData project, final ApiRequestPriority priority ) {
+        final List<BuildTypeData> buildTypes = getAllBuildTypesOf( project );
+        if ( !getApiVersion( ).isSupported( ApiFeature.MULTIPLE_BUILD_TYPE_STATUS, ApiFeature.FIELDS_PROJECTION ) )
+            return requestLastBuildStatus( buildTypes, priority );
+
+        final SettableFuture<Void> ackFuture = SettableFuture.create( );
+
+        runInWorkerThread( ( ) -> {
+            if ( ackFuture.isCancelled( ) )
+                return;
+            final ListenableFuture<BuildTypeList> buildTypeListFuture = cancelledWith( ackFuture, _apiRequestController.sendRequest( getApiVersion( ), projectStatusPath( project ), BuildTypeList.class, priority ) );
+            addCallback( buildTypeListFuture, new FutureCallback<BuildTypeList>( ) {
+                @Override
+                public void onSuccess( final BuildTypeList result ) {
+                    registerLastBuildStatus( result, buildTypes, priority, ackFuture );
+                }
+
+                @Override
+                public void onFailure( final Throwable t ) {
+                    ackFuture.setException( t );
+                    if ( isExpectedFailure( t ) )
+                        return;
+                    LOGGER.error( "Error during loading builds list for project: " + project.getId( ), t );
+                }
+            } );
+        } );
+
+        return ackFuture;
+    }
+
+    private List<BuildTypeData> getAllBuildTypesOf( final ProjectData project ) {
+        final List<BuildTypeData> buildTypes = Lists.newArrayList( project.getBuildTypes( ) );
+        for ( final ProjectData child : _projectManager.getAllChildrenOf( project ) )
+            buildTypes.addAll( child.getBuildTypes( ) );
+        return buildTypes;
+    }
+
+    /**
+     * Registers last builds of each build type of list, then requests one by one running builds which are no more in last builds
+     */
+    private void registerLastBuildStatus( final BuildTypeList result, final Collection<BuildTypeData> buildTypes, final ApiRequestPriority priority, final SettableFuture<Void> ackFuture ) {
+        final Map<String, BuildTypeData> buildTypesById = buildTypes.stream( )
+                .collect( Collectors.toMap( BuildTypeData::getId, Function.identity( ), ( bt1, bt2 ) -> bt1 ) );
+        final Set<ProjectData> projectsToUpdate = Sets.newLinkedHashSet( );
+        final List<ListenableFuture<Build>> futures = Lists.newArrayList( );
+
+        for ( final BuildType btype : result.getBuildTypes( ) ) {
+            final BuildTypeData buildType = buildTypesById.get( btype.getId( ) );
+            if ( buildType == null )
+                continue;
+
+            final List<Build> lastBuilds = btype.getBuilds( ).getBuilds( ).stream( )
+                    .limit( MAX_BUILDS_TO_CONSIDER )
+                    .collect( Collectors.toList( ) );
+            final Set<Integer> receivedBuildIds = lastBuilds.stream( ).map( Build::getId ).collect( Collectors.toSet( ) );
+
+            // Running builds which are no more in last builds are still requested one by one
+            for ( final BuildData runningBuild : buildType.getLastBuilds( BuildState.running, Integer.MAX_VALUE ) ) {
+                if ( receivedBuildIds.contains( runningBuild.getId( ) ) )
+                    continue;
+                final ListenableFuture<Build> buildStatusFuture = cancelledWith( ackFuture, _apiRequestController.sendRequest( getApiVersion( ), "builds/id:" + runningBuild.getId( ), Build.class, priority ) );
+                addCallback( buildStatusFuture, registerBuildStatus( buildType, runningBuild.getId( ) ) );
+                futures.add( buildStatusFuture );
+            }
+
+            for ( final Build build : lastBuilds )
+                buildType.registerBuild( _buildProvider.get( getApiVersion( ) ).apply( build ) );
+            _eventBus.post( buildType );
+
+            final Optional<ProjectData> project = _projectManager.getProject( buildType.getProjectId( ) );
+            if ( project.isPresent( ) )
+                projectsToUpdate.add( project.get( ) );
+        }
+
+        for ( final ProjectData project : projectsToUpdate )
+            _eventBus.post( project );
+
+        addCallback( Futures.successfulAsList( futures ), new FutureCallback<List<Build>>( ) {
+            @Override
+            public void onSuccess( final List<Build> build ) {
+                ackFuture.set( null );
+            }
+
+            @Override
+            public void onFailure( final Throwable throwable ) {
+                ackFuture.setException( throwable );
+            }
+        } );
+    }
+
+    @Override
+    public ListenableFuture<Void> requestBuildChanges( final Collection<BuildTypeData> buildTypes ) {
+        if ( !getApiVersion( ).isSupported( ApiFeature.BUILD_CHANGE_FEED ) )
+            return requestLastBuildStatus( buildTypes );
+
+        final int sinceBuildId = _lastSeenBuildId.get( );
+        if ( sinceBuildId == 0 ) {
+            // Start point of the feed is the last build known once all status have been requested
+            final ListenableFuture<Void> future = requestLastBuildStatus( buildTypes );
+            future.addListener( ( ) -> _lastSeenBuildId.accumulateAndGet( getLastKnownBuildId( buildTypes ), Math::max ), MoreExecutors.sameThreadExecutor( ) );
+            return future;
+        }
+
+        final SettableFuture<Void> ackFuture = SettableFuture.create( );
+
+        runInWorkerThread( ( ) -> {
+            if ( ackFuture.isCancelled( ) )
+                return;
+            final SettableFuture<List<Build>> changedBuildsFuture = SettableFuture.create( );
+            cancelledWith( ackFuture, changedBuildsFuture );
+            requestBuildChangesPage( sinceBuildId, 0, Lists.newArrayList( ), changedBuildsFuture );
+            final ListenableFuture<BuildList> runningBuildsFuture = cancelledWith( ackFuture, _apiRequestController.sendRequest( getApiVersion( ), runningBuildsPath( ), BuildList.class, ApiRequestPriority.VISIBLE ) );
+            addCallback( Futures.allAsList( ImmutableList.<ListenableFuture<?>>of( changedBuildsFuture, runningBuildsFuture ) ), new FutureCallback<List<Object>>( ) {
+                @Override
+                public void onSuccess( final List<Object> result ) {
+                    final List<Build> changedBuilds = Futures.getUnchecked( changedBuildsFuture );
+                    final Map<String, BuildTypeData> buildTypesById = buildTypes.stream( )
+                            .collect( Collectors.toMap( BuildTypeData::getId, Function.identity( ), ( bt1, bt2 ) -> bt1 ) );
+                    final Set<BuildTypeData> buildTypesToUpdate = Sets.newLinkedHashSet( );
+                    final Set<Integer> receivedBuildIds = Sets.newHashSet( );
+                    final List<ListenableFuture<Build>> futures = Lists.newArrayList( );
+
+                    for ( final List<Build> buildList : ImmutableList.of( changedBuilds, Futures.getUnchecked( runningBuildsFuture ).getBuilds( ) ) ) {
+                        for ( final Build build : buildList ) {
+                            receivedBuildIds.add( build.getId( ) );
+                            final BuildTypeData buildType = build.getBuildType( ) == null ? null : buildTypesById.get( build.getBuildType( ).getId( ) );
+                            if ( buildType == null )
+                                continue;
+                            buildType.registerBuild( _buildProvider.get( getApiVersion( ) ).apply( build ) );
+                            buildTypesToUpdate.add( buildType );
+                        }
+                    }
+
+                    // Running builds which are neither started since last feed nor still running have just finished
+                    for ( final BuildTypeData buildType : buildTypes ) {
+                        for ( final BuildData runningBuild : buildType.getLastBuilds( BuildState.running, Integer.MAX_VALUE ) ) {
+                            if ( receivedBuildIds.contains( runningBuild.getId( ) ) )
+                                continue;
+                            final ListenableFuture<Build> buildStatusFuture = cancelledWith( ackFuture, _apiRequestController.sendRequest( getApiVersion( ), "builds/id:" + runningBuild.getId( ), Build.class, ApiRequestPriority.VISIBLE ) );
+                            addCallback( buildStatusFuture, registerBuildStatus( buildType, runningBuild.getId( ) ) );
+                            futures.add( buildStatusFuture );
+                        }
+                    }
+
+                    final Set<ProjectData> projectsToUpdate = Sets.newLinkedHashSet( );
+                    for ( final BuildTypeData buildType : buildTypesToUpdate ) {
+                        _eventBus.post( buildType );
+                        final Optional<ProjectData> project = _projectManager.getProject( buildType.getProjectId( ) );
+                        if ( project.isPresent( ) )
+                            projectsToUpdate.add( project.get( ) );
+                    }
+                    for ( final ProjectData project : projectsToUpdate )
+                        _eventBus.post( project );
+
+                    // All builds since last feed were read, so feed can start after them next time
+                    changedBuilds.stream( )
+                            .mapToInt( Build::getId )
+                            .max( )
+                            .ifPresent( lastBuildId -> _lastSeenBuildId.accumulateAndGet( lastBuildId, Math::max ) );
+
+                    addCallback( Futures.successfulAsList( futures ), new FutureCallback<List<Build>>( ) {
+                        @Override
+                        public void onSuccess( final List<Build> build ) {
+                            ackFuture.set( null );
+                        }
+
+                        @Override
+                        public void onFailure( final Throwable throwable ) {
+                            ackFuture.setException( throwable );
+                        }
+                    } );
+                }
+
+                @Override
+                public void onFailure( final Throwable t ) {
+                    ackFuture.setException( t );
+                    if ( isExpectedFailure( t ) )
+                        return;
+                    LOGGER.error( "Error during loading builds since build " + sinceBuildId + ":", t );
+                }
+            } );
+        } );
+
+        return ackFuture;
+    }
+
+    /**
+     * Feed pages are read until one is not full, so that no build is skipped whatever the activity since last feed.
+     * Beyond the max page count, feed is restarted from a full status request on next call.
+     */
+    private void requestBuildChangesPage( final int sinceBuildId, final int start, final List<Build> changedBuilds, final SettableFuture<List<Build>> changedBuildsFuture ) {
+        if ( changedBuildsFuture.isCancelled( ) )
+            return;
+        final ListenableFuture<BuildList> pageFuture = cancelledWith( changedBuildsFuture, _apiRequestController.sendRequest( getApiVersion( ), buildChangesPath( sinceBuildId, start ), BuildList.class, ApiRequestPriority.VISIBLE ) );
+        addCallback( pageFuture, new FutureCallback<BuildList>( ) {
+            @Override
+            public void onSuccess( final BuildList page ) {
+                changedBuilds.addAll( page.getBuilds( ) );
+                if ( page.getBuilds( ).size( ) < MAX_BUILDS_BY_CHANGE_FEED ) {
+                    changedBuildsFuture.set( changedBuilds );
+                    return;
+                }
+                final int nextStart = start + MAX_BUILDS_BY_CHANGE_FEED;
+                if ( nextStart >= MAX_BUILDS_BY_CHANGE_FEED * MAX_CHANGE_FEED_PAGES ) {
+                    _lastSeenBuildId.set( 0 );
+                    changedBuildsFuture.setException( new ApiException( "More than " + nextStart + " builds since build " + sinceBuildId + ", build status will be fully requested" ) );
+                    return;
+                }
+                requestBuildChangesPage( sinceBuildId, nextStart, changedBuilds, changedBuildsFuture );
+            }
+
+            @Override
+            public void onFailure( final Throwable t ) {
+                changedBuildsFuture.setException( t );
+            }
+        } );
+    }
+
+    /**
+     * Running builds are considered as well, so that feed can start even if no build is finished yet
+     */
+    private static int getLastKnownBuildId( final Collection<BuildTypeData> buildTypes ) {
+        return buildTypes.stream( )
+                .flatMap( buildType -> Stream.concat( buildType.getLastBuilds( BuildState.finished, 1 ).stream( ), buildType.getLastBuilds( BuildState.running, 1 ).stream( ) ) )
+                .mapToInt( BuildData::getId )
+                .max( )
+                .orElse( 0 );
+    }
+
+    static String buildChangesPath( final int sinceBuildId, final int start ) {
+        return "builds?locator=sinceBuild:(id:" + sinceBuildId + "),running:any,start:" + start + ",count:" + MAX_BUILDS_BY_CHANGE_FEED
+                + "&fields=build(" + Build.FIELDS + ",buildType(id))";
+    }
+
+    static String runningBuildsPath( ) {
+        return "builds?locator=running:true&fields=build(" + Build.FIELDS + ",buildType(id))";
+    }
+
+    static String lastBuildStatusBatchPath( final Collection<BuildTypeData> buildTypes ) {
+        final String buildTypeLocator = buildTypes.stream( )
+                .map( buildType -> "item:(id:" + buildType.getId( ) + ")" )
+                .collect( Collectors.joining( "," ) );
+        return "buildTypes?locator=" + buildTypeLocator
+                + "&fields=buildType(id,builds($locator(running:any,count:" + MAX_BUILDS_TO_CONSIDER + "),build(" + Build.FIELDS + ")))";
+    }
+
+    static String projectStatusPath( final ProjectData project ) {
+        return "buildTypes?locator=affectedProject:(id:" + project.getId( ) + ")"
+                + "&fields=buildType(id,builds($locator(running:any,count:" + MAX_BUILDS_TO_CONSIDER + "),build(" + Build.FIELDS + ")))";
+    }
+
+    /**
+     * Request is cancelled as soon as the operation which sent it is cancelled, e.g. when monitoring cycle is over its deadline
+     */
+    /**
+     * Cancelled requests and requests not sent while server is unavailable are not errors: circuit breaker reports unavailability once
+     */
+    private static boolean isExpectedFailure( final Throwable t ) {
+        return t instanceof CancellationException || t instanceof ApiCircuitOpenException;
+    }
+
+    private static <T> ListenableFuture<T> cancelledWith( final ListenableFuture<?> operation, final ListenableFuture<T> request ) {
+        operation.addListener( ( ) -> {
+            if ( operation.isCancelled( ) )
+                request.cancel( true );
+        }, MoreExecutors.sameThreadExecutor( ) );
+        return request;
+    }
+
+    private static <T> void relay( final ListenableFuture<T> source, final SettableFuture<T> target ) {
+        addCallback( source, new FutureCallback<T>( ) {
+            @Override
+            public void onSuccess( final T result ) {
+                target.set( result );
+            }
+
+            @Override
+            public void onFailure( final Throwable t ) {
+                target.setException( t );
+            }
+        } );
+    }
+
     private FutureCallback<Build> registerBuildStatus( final BuildTypeData buildType, final int buildId ) {
         return new FutureCallback<Build>( ) {
             @Override
@@ -283,13 +916,9 @@ final class ApiController implements IApiController {
 
             @Override
             public void onFailure( final Throwable t ) {
+                if ( isExpectedFailure( t ) )
+                    return;
                 LOGGER.error( "Error during loading full information for build with id " + buildId + ", build type: " + buildType.getId( ), t );
-
-                final Integer errorCount = _buildRequestErrorCounter.getIfPresent( buildId );
-                final int newErrorCount = errorCount == null ? 1 : errorCount + 1;
-                _buildRequestErrorCounter.put( buildId, newErrorCount );
-                if ( newErrorCount >= ERROR_COUNT_BEFORE_IGNORING )
-                    LOGGER.info( "Build {} is now temporary ignored for about {} minutes due to {} failures.", buildId, IGNORING_TIME_IN_MINUTES, ERROR_COUNT_BEFORE_IGNORING );
             }
         };
     }
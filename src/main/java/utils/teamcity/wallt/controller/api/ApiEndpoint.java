@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+enum ApiEndpoint {
+
+    PROJECTS( "projects" ),
+    BUILD_TYPES( "buildTypes" ),
+    BUILD_QUEUE( "buildQueue" ),
+    BUILDS( "builds" ),
+    OTHER( "" );
+
+    private final String _path;
+
+    ApiEndpoint( final String path ) {
+        _path = path;
+    }
+
+    /**
+     * Returns endpoint of request path, given by its first segment
+     */
+    static ApiEndpoint fromPath( final String path ) {
+        final String rootPath = path.split( "[/?]", 2 )[0];
+        for ( final ApiEndpoint endpoint : values( ) )
+            if ( endpoint != OTHER && endpoint._path.equals( rootPath ) )
+                return endpoint;
+        return OTHER;
+    }
+
+}
@@ -20,9 +20,23 @@ package utils.teamcity.wallt.controller.api;
  *
  * @author Cedric Longo
  */
-public final class ApiException extends RuntimeException {
+public class ApiException extends RuntimeException {
+
+    private final int _statusCode;
 
     public ApiException( final String message ) {
+        this( message, 0 );
+    }
+
+    public ApiException( final String message, final int statusCode ) {
         super( message );
+        _statusCode = statusCode;
+    }
+
+    /**
+     * @return Http status code answered by server, 0 when error does not come from a http response
+     */
+    public int getStatusCode( ) {
+        return _statusCode;
     }
 }
@@ -24,6 +24,10 @@ enum ApiFeature {
 
     PROJECT_STATUS,
     BUILD_TYPE_STATUS,
-    QUEUE_STATUS
+    QUEUE_STATUS,
+    FIELDS_PROJECTION,
+    MULTIPLE_BUILD_TYPE_STATUS,
+    BUILD_CHANGE_FEED,
+    PAGED_LOCATOR
 
 }
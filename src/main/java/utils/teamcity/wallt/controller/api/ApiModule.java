@@ -43,25 +43,32 @@ import java.util.function.Function;
  */
 public final class ApiModule extends AbstractModule {
 
+    static final String USER_AGENT = "TeamCity Wall Client";
+    static final int CONNECTION_TIMEOUT_IN_MS = 60000;
+    static final int REQUEST_TIMEOUT_IN_MS = 30000;
+
     @Override
     protected void configure( ) {
         bind( IApiController.class ).to( ApiController.class ).in( Scopes.SINGLETON );
         bind( IApiMonitoringService.class ).to( ApiMonitoringService.class ).asEagerSingleton( );
+        bind( ApiPushListener.class ).in( Scopes.SINGLETON );
     }
 
     @Provides
     @Singleton
     public AsyncHttpClientConfig httpClientConfig( ) {
         return new AsyncHttpClientConfig.Builder( )
-                .setUserAgent( "TeamCity Wall Client" )
+                .setUserAgent( USER_AGENT )
                 .setFollowRedirects( true )
                 .setRemoveQueryParamsOnRedirect( false )
                 .setAllowPoolingConnection( true )
                 .setAllowSslConnectionPool( true )
+                // Responses are decompressed by ApiRequestController, which accounts transferred bytes
+                .setCompressionEnabled( false )
                 .setMaximumNumberOfRedirects( 5 )
                 .setMaximumConnectionsPerHost( 10 )
-                .setConnectionTimeoutInMs( 60000 )
-                .setRequestTimeoutInMs( 30000 )
+                .setConnectionTimeoutInMs( CONNECTION_TIMEOUT_IN_MS )
+                .setRequestTimeoutInMs( REQUEST_TIMEOUT_IN_MS )
                 .setIdleConnectionInPoolTimeoutInMs( 600000 ) // 10 min idle
                 .build( );
     }
@@ -86,6 +93,9 @@ public final class ApiModule extends AbstractModule {
                 btype -> new BuildTypeData( btype.getId( ), btype.getName( ), btype.getProjectId( ), btype.getProjectName( ) ),
 
                 ApiVersion.API_8_1,
+                btype -> new BuildTypeData( btype.getId( ), btype.getName( ), btype.getProjectId( ), btype.getProjectName( ) ),
+
+                ApiVersion.API_2017_2,
                 btype -> new BuildTypeData( btype.getId( ), btype.getName( ), btype.getProjectId( ), btype.getProjectName( ) )
         );
     }
@@ -104,6 +114,9 @@ public final class ApiModule extends AbstractModule {
                 project -> new ProjectData( project.getId( ), project.getName( ), Optional.empty( ) ),
 
                 ApiVersion.API_8_1,
+                project -> new ProjectData( project.getId( ), project.getName( ), Optional.ofNullable( project.getParentId( ) ) ),
+
+                ApiVersion.API_2017_2,
                 project -> new ProjectData( project.getId( ), project.getName( ), Optional.ofNullable( project.getParentId( ) ) )
         );
     }
@@ -135,6 +148,13 @@ public final class ApiModule extends AbstractModule {
                         build.isRunning( ) ? Duration.of( build.getRunningInformation( ).getEstimatedTotalTime( ) - build.getRunningInformation( ).getElapsedTime( ), ChronoUnit.SECONDS ) : Duration.ZERO ),
 
                 ApiVersion.API_8_1,
+                build -> new BuildData( build.getId( ), build.getStatus( ),
+                        build.getState( ),
+                        build.getState( ) == BuildState.running ? build.getRunningInformation( ).getPercentageComplete( ) : 100,
+                        Optional.ofNullable( build.getFinishDate( ) ),
+                        build.getState( ) == BuildState.running ? Duration.of( build.getRunningInformation( ).getEstimatedTotalTime( ) - build.getRunningInformation( ).getElapsedTime( ), ChronoUnit.SECONDS ) : Duration.ZERO ),
+
+                ApiVersion.API_2017_2,
                 build -> new BuildData( build.getId( ), build.getStatus( ),
                         build.getState( ),
                         build.getState( ) == BuildState.running ? build.getRunningInformation( ).getPercentageComplete( ) : 100,
@@ -15,27 +15,41 @@
 
 package utils.teamcity.wallt.controller.api;
 
+import com.google.common.base.Functions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import utils.teamcity.wallt.model.build.BuildTypeData;
 import utils.teamcity.wallt.model.build.IBuildTypeManager;
 import utils.teamcity.wallt.model.build.IProjectManager;
 import utils.teamcity.wallt.model.build.ProjectData;
+import utils.teamcity.wallt.model.configuration.Configuration;
+import utils.teamcity.wallt.model.event.WallScreenEvent;
 import utils.teamcity.wallt.model.logger.Loggers;
 
 import javax.inject.Inject;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -46,30 +60,190 @@ import java.util.stream.Collectors;
 public final class ApiMonitoringService implements IApiMonitoringService {
 
     public static final Logger LOGGER = LoggerFactory.getLogger( Loggers.MAIN );
+    static final int BUILD_STATUS_TICK_IN_SECONDS = 1;
+    static final int BUILD_CHANGES_DELAY_IN_SECONDS = 20;
+    static final int CYCLE_DEADLINE_IN_SECONDS = 60;
+    static final int STALLED_CHECK_DELAY_IN_SECONDS = 300;
+    static final int WATCHDOG_DELAY_IN_SECONDS = 30;
+    static final int STATISTICS_DELAY_IN_SECONDS = 300;
+    static final int TOPOLOGY_DELAY_IN_SECONDS = 300;
+    static final double PROJECT_AGGREGATION_RATIO = 0.5;
+
     private final ScheduledExecutorService _executorService;
     private final IApiController _apiController;
     private final IProjectManager _projectManager;
     private final IBuildTypeManager _buildManager;
+    private final Configuration _configuration;
+    private final ApiRequestBudget _requestBudget;
+    private final ApiPushListener _pushListener;
+    private final ApiTransferStatistics _transferStatistics;
+    private final ApiResponseCache _responseCache;
+    private final ApiRequestSingleFlight _singleFlight;
+    private final ApiSession _session;
+    private final ApiRequestHedging _hedging;
+    private final ApiResponseExecutor _responseExecutor;
+    private final BuildStatusScheduler _buildStatusScheduler = new BuildStatusScheduler( Clock.systemDefaultZone( ) );
+    private final PollCycleWatchdog _watchdog = new PollCycleWatchdog( Clock.systemDefaultZone( ) );
+    // Check name -> last time it was done while build events are pushed
+    private final ConcurrentMap<String, Instant> _lastReconciliations = Maps.newConcurrentMap( );
 
     private boolean _active;
 
 
     @Inject
-    public ApiMonitoringService( final ScheduledExecutorService executorService, final IApiController apiController, final IProjectManager projectManager, final IBuildTypeManager buildManager ) {
+    public ApiMonitoringService( final ScheduledExecutorService executorService, final IApiController apiController, final IProjectManager projectManager, final IBuildTypeManager buildManager, final Configuration configuration, final ApiRequestBudget requestBudget, final ApiPushListener pushListener, final ApiTransferStatistics transferStatistics, final ApiResponseCache responseCache, final ApiRequestSingleFlight singleFlight, final ApiSession session, final ApiRequestHedging hedging, final ApiResponseExecutor responseExecutor ) {
         _executorService = executorService;
         _apiController = apiController;
         _projectManager = projectManager;
         _buildManager = buildManager;
+        _configuration = configuration;
+        _requestBudget = requestBudget;
+        _pushListener = pushListener;
+        _transferStatistics = transferStatistics;
+        _responseCache = responseCache;
+        _singleFlight = singleFlight;
+        _session = session;
+        _hedging = hedging;
+        _responseExecutor = responseExecutor;
     }
 
     @Override
     public void start( ) {
-        _executorService.scheduleWithFixedDelay( checkIdleBuildStatus( ), 10, 60, TimeUnit.SECONDS );
-        _executorService.scheduleWithFixedDelay( checkRunningBuildStatus( ), 10, 20, TimeUnit.SECONDS );
-        _executorService.scheduleWithFixedDelay( checkQueuedBuildStatus( ), 10, 60, TimeUnit.SECONDS );
+        // Configuration may have been saved against another server version: checks below follow detected one
+        if ( _configuration.isAutoDetectApiVersion( ) )
+            _apiController.detectApiVersion( );
+        scheduleWithFixedDelay( "Build status", checkDueBuildStatus( ), 10, BUILD_STATUS_TICK_IN_SECONDS, TimeUnit.SECONDS );
+        scheduleWithFixedDelay( "Build changes", checkBuildChanges( ), 10, BUILD_CHANGES_DELAY_IN_SECONDS, TimeUnit.SECONDS );
+        scheduleWithFixedDelay( "Queued builds", checkQueuedBuildStatus( ), 10, 60, TimeUnit.SECONDS );
+        scheduleWithFixedDelay( "Topology", checkTopology( ), 60, TOPOLOGY_DELAY_IN_SECONDS, TimeUnit.SECONDS );
+        _executorService.scheduleWithFixedDelay( this::reportStalledChecks, WATCHDOG_DELAY_IN_SECONDS, WATCHDOG_DELAY_IN_SECONDS, TimeUnit.SECONDS );
+        _executorService.scheduleWithFixedDelay( this::reportNetworkStatistics, STATISTICS_DELAY_IN_SECONDS, STATISTICS_DELAY_IN_SECONDS, TimeUnit.SECONDS );
+        // Pushed started builds are checked at once to know their progress
+        _pushListener.start( _buildStatusScheduler::refresh );
         LOGGER.info( "Monitoring service configured." );
     }
 
+    @Override
+    public void stop( ) {
+        _pushListener.stop( );
+    }
+
+    /**
+     * While build events are pushed, polling check is only done as a reconciliation from time to time
+     */
+    private boolean isReconciliationPending( final String checkName ) {
+        if ( !_pushListener.isHealthy( ) ) {
+            _lastReconciliations.remove( checkName );
+            return false;
+        }
+        final Instant now = Instant.now( );
+        final Instant lastReconciliation = _lastReconciliations.get( checkName );
+        if ( lastReconciliation != null && Duration.between( lastReconciliation, now ).compareTo( BuildStatusScheduler.RECONCILIATION_DELAY ) < 0 )
+            return true;
+        _lastReconciliations.put( checkName, now );
+        return false;
+    }
+
+    /**
+     * Schedules check again once its future is done, so no scheduler thread waits for network responses.
+     * A cycle which is not done before its deadline is cancelled, with all its outstanding requests, so that next cycle can start.
+     */
+    private void scheduleWithFixedDelay( final String checkName, final Supplier<ListenableFuture<Void>> check, final long initialDelay, final long delay, final TimeUnit unit ) {
+        try {
+            _executorService.schedule( ( ) -> {
+                _watchdog.started( checkName );
+                ListenableFuture<Void> future;
+                try {
+                    future = isActive( ) ? check.get( ) : Futures.<Void>immediateFuture( null );
+                } catch ( RuntimeException e ) {
+                    LOGGER.error( "Error during monitoring check:", e );
+                    future = Futures.immediateFuture( null );
+                }
+                final ListenableFuture<Void> cycle = future;
+                final Optional<ScheduledFuture<?>> deadline = scheduleDeadline( checkName, cycle );
+                cycle.addListener( ( ) -> {
+                    deadline.ifPresent( d -> d.cancel( false ) );
+                    _watchdog.done( checkName, cycle.isCancelled( ) );
+                    scheduleWithFixedDelay( checkName, check, nextDelay( delay, unit ), delay, unit );
+                }, MoreExecutors.sameThreadExecutor( ) );
+            }, initialDelay, unit );
+        } catch ( RejectedExecutionException ignored ) {
+            // Executor is shut down: monitoring is over
+        }
+    }
+
+    private Optional<ScheduledFuture<?>> scheduleDeadline( final String checkName, final ListenableFuture<Void> cycle ) {
+        if ( cycle.isDone( ) )
+            return Optional.empty( );
+        try {
+            return Optional.of( _executorService.schedule( ( ) -> {
+                if ( cycle.cancel( true ) )
+                    LOGGER.warn( "{}: cycle overran its deadline of {} s, outstanding requests are cancelled ({} overruns so far)", checkName, CYCLE_DEADLINE_IN_SECONDS, _watchdog.getOverrunCount( ) + 1 );
+            }, CYCLE_DEADLINE_IN_SECONDS, TimeUnit.SECONDS ) );
+        } catch ( RejectedExecutionException ignored ) {
+            return Optional.empty( );
+        }
+    }
+
+    /**
+     * Wall data is stale when a check is stuck or stopped cycling, whatever the reason
+     */
+    private void reportStalledChecks( ) {
+        LOGGER.debug( "Requests sent during last minute: {} requests/s, rate variation {}", String.format( "%.1f", _requestBudget.getMeanRate( ) ), String.format( "%.2f", _requestBudget.getRateVariation( ) ) );
+        final List<String> stalledChecks = _watchdog.findStalledChecks( Duration.ofSeconds( STALLED_CHECK_DELAY_IN_SECONDS ) );
+        if ( !stalledChecks.isEmpty( ) )
+            LOGGER.error( "Monitoring is stalled: no cycle of {} completed for {} s, displayed data may be stale", stalledChecks, STALLED_CHECK_DELAY_IN_SECONDS );
+    }
+
+    /**
+     * Network savings are only known from counters, so they are reported from time to time: figures are totals since start
+     */
+    private void reportNetworkStatistics( ) {
+        for ( final ApiEndpoint endpoint : ApiEndpoint.values( ) ) {
+            final long responseCount = _transferStatistics.getResponseCount( endpoint );
+            if ( responseCount == 0 )
+                continue;
+            LOGGER.info( "Responses of {}: {} received, {} KB transferred for {} KB decoded ({}% saved by compression), {} ms spent decoding",
+                    endpoint, responseCount, _transferStatistics.getWireBytes( endpoint ) / 1024, _transferStatistics.getDecodedBytes( endpoint ) / 1024,
+                    Math.round( ( 1 - _transferStatistics.getCompressionRatio( endpoint ) ) * 100 ), _transferStatistics.getDecodingTime( endpoint ).toMillis( ) );
+        }
+        LOGGER.info( "Response cache: {} responses not modified, {} received ({}% hit rate), {} responses cached",
+                _responseCache.getHitCount( ), _responseCache.getMissCount( ), Math.round( _responseCache.getHitRate( ) * 100 ), _responseCache.size( ) );
+        LOGGER.info( "Identical requests: {} shared an outstanding request, {} sent ({}% deduplicated)",
+                _singleFlight.getHitCount( ), _singleFlight.getMissCount( ), Math.round( _singleFlight.getHitRate( ) * 100 ) );
+        LOGGER.info( "Server session: {} requests sent within session, {} authenticated ({}% reused), {} sessions expired by server",
+                _session.getReusedCount( ), _session.getAuthenticatedCount( ), Math.round( _session.getReuseRatio( ) * 100 ), _session.getExpiredCount( ) );
+        // Latencies are observed even while hedging is off, so they tell whether turning it on would help
+        final String statusLatencies = Arrays.stream( ApiRequestKind.values( ) )
+                .filter( kind -> _hedging.getHedgeDelay( kind ).isPresent( ) )
+                .map( kind -> kind + " " + _hedging.getHedgeDelay( kind ).get( ).toMillis( ) + " ms" )
+                .collect( Collectors.joining( ", " ) );
+        LOGGER.info( "Hedged requests ({}): {} status requests, {} hedges sent ({}%), {} won, {} capped, p95 latency by kind: [{}]",
+                _configuration.isHedgedRequests( ) ? "on" : "off", _hedging.getRequestCount( ), _hedging.getHedgeCount( ), Math.round( _hedging.getHedgeRate( ) * 100 ),
+                _hedging.getHedgeWinCount( ), _hedging.getCappedCount( ), statusLatencies );
+        LOGGER.info( "Response queue: {} queued, up to {}, {} ms average wait, {} responses processed on network thread because queue was full",
+                _responseExecutor.getQueueDepth( ), _responseExecutor.getMaxQueueDepth( ), _responseExecutor.getAverageQueueTime( ).toMillis( ), _responseExecutor.getCallerRunCount( ) );
+    }
+
+    @Subscribe
+    public void updateScreenVisibility( final WallScreenEvent event ) {
+        _buildStatusScheduler.updateVisibility( event.getDisplayedBuildTypes( ), event.getNextBuildTypes( ), event.getNextScreenDelay( ) );
+    }
+
+    PollCycleWatchdog getWatchdog( ) {
+        return _watchdog;
+    }
+
+    /**
+     * Checks are spaced out while request budget is exhausted
+     */
+    private long nextDelay( final long delay, final TimeUnit unit ) {
+        final long nextDelay = _requestBudget.stretch( delay, unit );
+        if ( nextDelay != delay )
+            LOGGER.info( "Request budget is exhausted (utilisation {}%), next check delayed to {} s", Math.round( _requestBudget.getUtilisation( ) * 100 ), unit.toSeconds( nextDelay ) );
+        return nextDelay;
+    }
+
     public synchronized boolean isActive( ) {
         return _active;
     }
@@ -90,69 +264,106 @@ public final class ApiMonitoringService implements IApiMonitoringService {
         final Set<BuildTypeData> allMonitoredBuildTypes = Sets.newLinkedHashSet( );
         allMonitoredBuildTypes.addAll( _buildManager.getMonitoredBuildTypes( ) );
 
-        for ( final ProjectData projectData : _projectManager.getMonitoredProjects( ) ) {
-            allMonitoredBuildTypes.addAll( projectData.getBuildTypes( ) );
-            for ( final ProjectData child : _projectManager.getAllChildrenOf( projectData ) ) {
-                allMonitoredBuildTypes.addAll( child.getBuildTypes( ) );
-            }
-        }
+        for ( final ProjectData projectData : _projectManager.getMonitoredProjects( ) )
+            allMonitoredBuildTypes.addAll( getAllBuildTypesOf( projectData ) );
 
         return allMonitoredBuildTypes;
     }
 
-    private Runnable checkIdleBuildStatus( ) {
+    /**
+     * Only build types which are due are checked: each one is rescheduled according to its own activity
+     */
+    private Supplier<ListenableFuture<Void>> checkDueBuildStatus( ) {
         return ( ) -> {
-            if ( !isActive( ) )
-                return;
+            if ( _configuration.getPollingStrategy( ) != PollingStrategy.LAST_BUILD_STATUS )
+                return Futures.immediateFuture( null );
 
-            final Instant before = Instant.now( );
-            final List<BuildTypeData> monitoredBuilds = getAllMonitoredBuildTypes( ).stream( )
-                    .filter( b -> !b.hasRunningBuild( ) )
-                    .collect( Collectors.toList( ) );
+            _buildStatusScheduler.setPushHealthy( _pushListener.isHealthy( ) );
+            final List<BuildTypeData> dueBuildTypes = _buildStatusScheduler.pollDueBuildTypes( getAllMonitoredBuildTypes( ) );
+            if ( dueBuildTypes.isEmpty( ) )
+                return Futures.immediateFuture( null );
 
-            checkBuildStatus( monitoredBuilds );
-            LOGGER.info( "Checking idle build status: done in {} s", Duration.between( before, Instant.now( ) ).getSeconds( ) );
+            final Set<BuildTypeData> remainingBuildTypes = Sets.newLinkedHashSet( dueBuildTypes );
+            final Set<BuildTypeData> checkedBuildTypes = Sets.newLinkedHashSet( dueBuildTypes );
+            final List<ListenableFuture<Void>> futures = Lists.newArrayList( );
+
+            // Projects are checked as a whole with a single request, instead of one by build type, once enough of their
+            // build types are due: otherwise the whole tree would be fetched each time its busiest build type is due
+            if ( _configuration.getApiVersion( ).isSupported( ApiFeature.MULTIPLE_BUILD_TYPE_STATUS, ApiFeature.FIELDS_PROJECTION ) ) {
+                for ( final ProjectData project : _projectManager.getMonitoredProjects( ) ) {
+                    final List<BuildTypeData> projectBuildTypes = getAllBuildTypesOf( project );
+                    final long dueCount = projectBuildTypes.stream( ).filter( remainingBuildTypes::contains ).count( );
+                    if ( dueCount == 0 || dueCount < PROJECT_AGGREGATION_RATIO * projectBuildTypes.size( ) )
+                        continue;
+                    remainingBuildTypes.removeAll( projectBuildTypes );
+                    checkedBuildTypes.addAll( projectBuildTypes );
+                    final ApiRequestPriority priority = projectBuildTypes.stream( ).allMatch( _buildStatusScheduler::isHidden ) ? ApiRequestPriority.BACKGROUND : ApiRequestPriority.VISIBLE;
+                    futures.add( logDuration( "Checking status of project " + project.getName( ), ( ) -> _apiController.requestProjectStatus( project, priority ) ) );
+                }
+            }
+
+            // Hidden build types are checked in background lane, so that they never delay displayed ones
+            final Map<Boolean, List<BuildTypeData>> remainingByHidden = remainingBuildTypes.stream( ).collect( Collectors.partitioningBy( _buildStatusScheduler::isHidden ) );
+            final List<BuildTypeData> visibleBuildTypes = remainingByHidden.get( false );
+            final List<BuildTypeData> hiddenBuildTypes = remainingByHidden.get( true );
+            if ( !visibleBuildTypes.isEmpty( ) )
+                futures.add( logDuration( "Checking status of " + visibleBuildTypes.size( ) + " build types", ( ) -> _apiController.requestLastBuildStatus( visibleBuildTypes, ApiRequestPriority.VISIBLE ) ) );
+            if ( !hiddenBuildTypes.isEmpty( ) )
+                futures.add( logDuration( "Checking status of " + hiddenBuildTypes.size( ) + " hidden build types", ( ) -> _apiController.requestLastBuildStatus( hiddenBuildTypes, ApiRequestPriority.BACKGROUND ) ) );
+
+            final ListenableFuture<Void> future = Futures.transform( Futures.successfulAsList( futures ), Functions.<Void>constant( null ) );
+            future.addListener( ( ) -> _buildStatusScheduler.reschedule( checkedBuildTypes ), MoreExecutors.sameThreadExecutor( ) );
+            return future;
         };
     }
 
-    private Runnable checkRunningBuildStatus( ) {
+    private List<BuildTypeData> getAllBuildTypesOf( final ProjectData project ) {
+        final List<BuildTypeData> buildTypes = Lists.newArrayList( project.getBuildTypes( ) );
+        for ( final ProjectData child : _projectManager.getAllChildrenOf( project ) )
+            buildTypes.addAll( child.getBuildTypes( ) );
+        return buildTypes;
+    }
+
+    /**
+     * All build types are checked at once, so the cost only depends on server activity
+     */
+    private Supplier<ListenableFuture<Void>> checkBuildChanges( ) {
         return ( ) -> {
-            if ( !isActive( ) )
-                return;
+            if ( _configuration.getPollingStrategy( ) != PollingStrategy.CHANGE_FEED || isReconciliationPending( "Build changes" ) )
+                return Futures.immediateFuture( null );
 
-            final Instant before = Instant.now( );
-            final List<BuildTypeData> monitoredBuilds = getAllMonitoredBuildTypes( ).stream( )
-                    .filter( BuildTypeData::hasRunningBuild )
-                    .collect( Collectors.toList( ) );
+            final Collection<BuildTypeData> monitoredBuildTypes = getAllMonitoredBuildTypes( );
+            return logDuration( "Checking build changes", ( ) -> _apiController.requestBuildChanges( monitoredBuildTypes ) );
+        };
+    }
 
-            checkBuildStatus( monitoredBuilds );
-            LOGGER.info( "Checking running build status: done in {} s", Duration.between( before, Instant.now( ) ).getSeconds( ) );
+    private Supplier<ListenableFuture<Void>> checkQueuedBuildStatus( ) {
+        return ( ) -> {
+            if ( isReconciliationPending( "Queued builds" ) )
+                return Futures.immediateFuture( null );
+            return logDuration( "Checking queued builds", _apiController::requestQueuedBuilds );
         };
     }
 
-    private void checkBuildStatus( final Iterable<BuildTypeData> monitoredBuilds ) {
-        try {
-            ListenableFuture<Void> future = Futures.immediateFuture( null );
-            for ( final BuildTypeData buildType : monitoredBuilds )
-                future = Futures.transform( future, (AsyncFunction<Void, Void>) o -> _apiController.requestLastBuildStatus( buildType ) );
-            future.get( );
-        } catch ( InterruptedException | ExecutionException ignored ) {
-        }
+    /**
+     * Projects and build types which come and go on server are applied without reloading the whole topology
+     */
+    private Supplier<ListenableFuture<Void>> checkTopology( ) {
+        return ( ) -> logDuration( "Synchronizing topology", _apiController::synchronizeTopology );
     }
 
-    private Runnable checkQueuedBuildStatus( ) {
-        return ( ) -> {
-            if ( !isActive( ) )
-                return;
-
-            try {
-                final Instant before = Instant.now( );
-                ListenableFuture<Void> future = _apiController.requestQueuedBuilds( );
-                future.get( );
-                LOGGER.info( "Checking queued builds: done in {} s", Duration.between( before, Instant.now( ) ).getSeconds( ) );
-            } catch ( InterruptedException | ExecutionException ignored ) {
-            }
-        };
+    /**
+     * Checks run every tick, so their duration is only logged at debug level: overruns and stalls are reported on their own
+     */
+    private ListenableFuture<Void> logDuration( final String checkName, final Supplier<ListenableFuture<Void>> check ) {
+        final Instant before = Instant.now( );
+        final ListenableFuture<Void> future = check.get( );
+        future.addListener( ( ) -> LOGGER.debug( "{}: done in {} s", checkName, Duration.between( before, Instant.now( ) ).getSeconds( ) ), MoreExecutors.sameThreadExecutor( ) );
+        return future;
     }
 
+    @Inject
+    public void registerToEventBus( final EventBus eventBus ) {
+        eventBus.register( this );
+    }
 }
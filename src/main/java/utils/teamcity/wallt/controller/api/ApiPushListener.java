@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.eventbus.EventBus;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.teamcity.wallt.controller.api.json.WebHookBuild;
+import utils.teamcity.wallt.controller.api.json.WebHookEvent;
+import utils.teamcity.wallt.model.build.BuildData;
+import utils.teamcity.wallt.model.build.BuildState;
+import utils.teamcity.wallt.model.build.BuildStatus;
+import utils.teamcity.wallt.model.build.BuildTypeData;
+import utils.teamcity.wallt.model.build.IBuildTypeManager;
+import utils.teamcity.wallt.model.build.IProjectManager;
+import utils.teamcity.wallt.model.build.ProjectData;
+import utils.teamcity.wallt.model.configuration.Configuration;
+import utils.teamcity.wallt.model.logger.Loggers;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Embedded http server receiving build events pushed by TeamCity webhooks, and applying them to model as soon as they come.
+ * Push is healthy while events keep coming: polling can then be reduced to a slow reconciliation sweep.
+ * Listener is bound to loopback unless another address is configured, and only accepts events carrying configured secret,
+ * either in {@link #PUSH_SECRET_HEADER} header or in secret query parameter of webhook url.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class ApiPushListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( Loggers.NETWORK );
+
+    static final String PUSH_PATH = "/push";
+    static final String PUSH_SECRET_HEADER = "X-Wall-T-Secret";
+    static final String PUSH_SECRET_PARAMETER = "secret";
+    static final Duration HEALTHY_PERIOD = Duration.ofHours( 1 );
+    static final int MAX_PAYLOAD_SIZE = 64 * 1024;
+
+    private final Configuration _configuration;
+    private final IBuildTypeManager _buildManager;
+    private final IProjectManager _projectManager;
+    private final EventBus _eventBus;
+    private final Clock _clock;
+    private final ApiResponseDecoder _decoder = new ApiResponseDecoder( );
+
+    private final AtomicLong _receivedCount = new AtomicLong( );
+    private final AtomicLong _appliedCount = new AtomicLong( );
+    private final AtomicLong _rejectedCount = new AtomicLong( );
+    private volatile Instant _lastEventTime;
+    private volatile Consumer<BuildTypeData> _onBuildStarted = buildType -> {
+    };
+
+    // Following fields are guarded by this
+    private HttpServer _server;
+    private ExecutorService _executorService;
+
+    @Inject
+    ApiPushListener( final Configuration configuration, final IBuildTypeManager buildManager, final IProjectManager projectManager, final EventBus eventBus ) {
+        this( configuration, buildManager, projectManager, eventBus, Clock.systemDefaultZone( ) );
+    }
+
+    @VisibleForTesting
+    ApiPushListener( final Configuration configuration, final IBuildTypeManager buildManager, final IProjectManager projectManager, final EventBus eventBus, final Clock clock ) {
+        _configuration = configuration;
+        _buildManager = buildManager;
+        _projectManager = projectManager;
+        _eventBus = eventBus;
+        _clock = clock;
+    }
+
+    /**
+     * Starts listening on configured push address and port, if any port and secret are configured
+     *
+     * @param onBuildStarted Called with build types which build has just started, as push does not tell its progress
+     */
+    synchronized void start( final Consumer<BuildTypeData> onBuildStarted ) {
+        final int port = _configuration.getPushPort( );
+        if ( port <= 0 || _server != null )
+            return;
+        if ( Strings.isNullOrEmpty( _configuration.getPushSecret( ) ) ) {
+            LOGGER.warn( "No secret is configured for pushed build events, build status will only be polled" );
+            return;
+        }
+
+        _onBuildStarted = onBuildStarted;
+        final String address = _configuration.getPushAddress( );
+        try {
+            final InetSocketAddress socketAddress = Strings.isNullOrEmpty( address ) ? new InetSocketAddress( InetAddress.getLoopbackAddress( ), port ) : new InetSocketAddress( address, port );
+            _server = HttpServer.create( socketAddress, 0 );
+        } catch ( IOException e ) {
+            LOGGER.error( "Unable to listen for pushed build events on " + address + ":" + port + ", build status will only be polled", e );
+            return;
+        }
+        _executorService = Executors.newSingleThreadExecutor( new ThreadFactoryBuilder( ).setNameFormat( "api-push-%d" ).setDaemon( true ).build( ) );
+        _server.setExecutor( _executorService );
+        _server.createContext( PUSH_PATH, this::handle );
+        _server.start( );
+        LOGGER.info( "Listening for pushed build events on {}{}", _server.getAddress( ), PUSH_PATH );
+    }
+
+    synchronized void stop( ) {
+        if ( _server == null )
+            return;
+        _server.stop( 0 );
+        _executorService.shutdownNow( );
+        _server = null;
+        _executorService = null;
+    }
+
+    synchronized boolean isListening( ) {
+        return _server != null;
+    }
+
+    /**
+     * Push is healthy when an event was received lately: otherwise webhooks may not reach the wall anymore
+     */
+    boolean isHealthy( ) {
+        final Instant lastEventTime = _lastEventTime;
+        return isListening( ) && lastEventTime != null && Duration.between( lastEventTime, _clock.instant( ) ).compareTo( HEALTHY_PERIOD ) < 0;
+    }
+
+    private void handle( final HttpExchange exchange ) throws IOException {
+        try {
+            if ( !"POST".equalsIgnoreCase( exchange.getRequestMethod( ) ) ) {
+                exchange.sendResponseHeaders( HttpURLConnection.HTTP_BAD_METHOD, -1 );
+                return;
+            }
+
+            _receivedCount.incrementAndGet( );
+            // Secret is checked before reading payload, so that nobody else has a say on build status
+            if ( !hasSecret( exchange ) ) {
+                _rejectedCount.incrementAndGet( );
+                LOGGER.warn( "Pushed build event rejected: secret is missing or wrong" );
+                exchange.sendResponseHeaders( HttpURLConnection.HTTP_UNAUTHORIZED, -1 );
+                return;
+            }
+
+            final WebHookEvent event;
+            try ( InputStream body = ByteStreams.limit( exchange.getRequestBody( ), MAX_PAYLOAD_SIZE ) ) {
+                event = _decoder.decode( body, WebHookEvent.class );
+            } catch ( JsonParseException e ) {
+                reject( exchange, "payload is not valid: " + e.getMessage( ) );
+                return;
+            }
+            if ( event == null || event.getBuild( ) == null ) {
+                reject( exchange, "payload has no build" );
+                return;
+            }
+
+            apply( event.getBuild( ) );
+            exchange.sendResponseHeaders( HttpURLConnection.HTTP_ACCEPTED, -1 );
+        } finally {
+            exchange.close( );
+        }
+    }
+
+    private boolean hasSecret( final HttpExchange exchange ) {
+        String secret = exchange.getRequestHeaders( ).getFirst( PUSH_SECRET_HEADER );
+        if ( secret == null ) {
+            final String query = exchange.getRequestURI( ).getQuery( );
+            if ( query != null )
+                for ( final String parameter : Splitter.on( '&' ).split( query ) )
+                    if ( parameter.startsWith( PUSH_SECRET_PARAMETER + "=" ) )
+                        secret = parameter.substring( PUSH_SECRET_PARAMETER.length( ) + 1 );
+        }
+        // Constant time comparison, which does not tell how much of secret was guessed
+        return secret != null && MessageDigest.isEqual( secret.getBytes( Charsets.UTF_8 ), _configuration.getPushSecret( ).getBytes( Charsets.UTF_8 ) );
+    }
+
+    private void reject( final HttpExchange exchange, final String reason ) throws IOException {
+        _rejectedCount.incrementAndGet( );
+        LOGGER.warn( "Pushed build event rejected: {}", reason );
+        exchange.sendResponseHeaders( HttpURLConnection.HTTP_BAD_REQUEST, -1 );
+    }
+
+    /**
+     * Applies event to matching build type. Events of unknown build types or of no interest are ignored.
+     */
+    void apply( final WebHookBuild build ) {
+        _lastEventTime = _clock.instant( );
+
+        if ( build.getBuildTypeId( ) == null || build.getNotifyType( ) == null )
+            return;
+        final Optional<BuildTypeData> buildType = _buildManager.getBuildType( build.getBuildTypeId( ) );
+        if ( !buildType.isPresent( ) )
+            return;
+
+        final Integer buildId = build.getBuildId( ) == null ? null : Ints.tryParse( build.getBuildId( ) );
+        switch ( build.getNotifyType( ) ) {
+            case WebHookBuild.BUILD_ADDED_TO_QUEUE:
+                buildType.get( ).setQueued( true );
+                break;
+            case WebHookBuild.BUILD_REMOVED_FROM_QUEUE:
+                buildType.get( ).setQueued( false );
+                break;
+            case WebHookBuild.BUILD_STARTED:
+                if ( buildId == null )
+                    return;
+                buildType.get( ).setQueued( false );
+                // Build progress may already be known from polling
+                if ( !buildType.get( ).getBuildById( buildId ).isPresent( ) )
+                    buildType.get( ).registerBuild( new BuildData( buildId, toStatus( build.getBuildResult( ) ), BuildState.running, 0, Optional.empty( ), Duration.ZERO ) );
+                break;
+            case WebHookBuild.BUILD_FINISHED:
+            case WebHookBuild.BUILD_INTERRUPTED:
+                if ( buildId == null )
+                    return;
+                buildType.get( ).registerBuild( new BuildData( buildId, toStatus( build.getBuildResult( ) ), BuildState.finished, 100, Optional.of( LocalDateTime.now( _clock ) ), Duration.ZERO ) );
+                break;
+            default:
+                return;
+        }
+
+        _appliedCount.incrementAndGet( );
+        _eventBus.post( buildType.get( ) );
+        final Optional<ProjectData> project = _projectManager.getProject( buildType.get( ).getProjectId( ) );
+        if ( project.isPresent( ) )
+            _eventBus.post( project.get( ) );
+
+        if ( WebHookBuild.BUILD_STARTED.equals( build.getNotifyType( ) ) )
+            _onBuildStarted.accept( buildType.get( ) );
+    }
+
+    private static BuildStatus toStatus( final String buildResult ) {
+        if ( "success".equalsIgnoreCase( buildResult ) )
+            return BuildStatus.SUCCESS;
+        if ( "failure".equalsIgnoreCase( buildResult ) )
+            return BuildStatus.FAILURE;
+        if ( "error".equalsIgnoreCase( buildResult ) )
+            return BuildStatus.ERROR;
+        return BuildStatus.UNKNOWN;
+    }
+
+    long getReceivedCount( ) {
+        return _receivedCount.get( );
+    }
+
+    long getAppliedCount( ) {
+        return _appliedCount.get( );
+    }
+
+    long getRejectedCount( ) {
+        return _rejectedCount.get( );
+    }
+}
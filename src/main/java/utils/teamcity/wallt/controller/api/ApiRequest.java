@@ -31,11 +31,17 @@ public final class ApiRequest {
     private final URI _serverUrl;
     private final String _username;
     private final String _password;
+    private final String _token;
 
     ApiRequest( final URI serverUrl, final String username, final String password ) {
+        this( serverUrl, username, password, "" );
+    }
+
+    ApiRequest( final URI serverUrl, final String username, final String password, final String token ) {
         _serverUrl = serverUrl;
         _username = username;
         _password = password;
+        _token = token;
     }
 
     public String getURI( ) {
@@ -50,12 +56,26 @@ public final class ApiRequest {
         return _password;
     }
 
+    /**
+     * @return Access token used instead of password, empty if none
+     */
+    public String getToken( ) {
+        return _token;
+    }
+
     public boolean isGuestMode( ) {
-        return GUEST_USER.equals( _username );
+        return GUEST_USER.equals( _username ) && isNullOrEmpty( _token );
+    }
+
+    /**
+     * @return Server and user which a session is opened for
+     */
+    String getSessionOwner( ) {
+        return _serverUrl.getScheme( ) + "://" + _serverUrl.getRawAuthority( ) + " " + _username;
     }
 
     @Override
     public String toString( ) {
-        return "ApiRequest{" + " '" + _serverUrl + "', user:" + _username + ( isNullOrEmpty( getPassword( ) ) || isGuestMode( ) ? " with no password" : " with password" ) + " }";
+        return "ApiRequest{" + " '" + _serverUrl + "', user:" + _username + ( isNullOrEmpty( getToken( ) ) ? "" : " with token" ) + ( isNullOrEmpty( getPassword( ) ) || isGuestMode( ) ? " with no password" : " with password" ) + " }";
     }
 }
@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.teamcity.wallt.model.configuration.Configuration;
+import utils.teamcity.wallt.model.logger.Loggers;
+
+import javax.inject.Inject;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class ApiRequestBudget {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( Loggers.NETWORK );
+
+    static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds( 30 );
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos( 1 );
+
+    private final Configuration _configuration;
+    private final ScheduledExecutorService _executorService;
+    private final Ticker _ticker;
+
+    private final Map<ApiRequestPriority, Lane> _lanes = Maps.newEnumMap( ApiRequestPriority.class );
+    private final AtomicInteger _drainRequests = new AtomicInteger( );
+    private final AtomicLong _throttledCount = new AtomicLong( );
+    private final ApiRequestRateMeter _rateMeter;
+
+    // Following fields are guarded by this
+    private double _tokens;
+    private long _lastRefillTime;
+    // Interactive requests in flight are not counted here, they have their own limit
+    private int _inFlightCount;
+    private long _blockedUntil;
+    private boolean _drainScheduled;
+    private long _windowStart;
+    private int _windowRequestCount;
+    private int _lastWindowRequestCount;
+
+    @Inject
+    ApiRequestBudget( final Configuration configuration, final ScheduledExecutorService executorService ) {
+        this( configuration, executorService, Ticker.systemTicker( ) );
+    }
+
+    @VisibleForTesting
+    ApiRequestBudget( final Configuration configuration, final ScheduledExecutorService executorService, final Ticker ticker ) {
+        _configuration = configuration;
+        _executorService = executorService;
+        _ticker = ticker;
+        _rateMeter = new ApiRequestRateMeter( ticker );
+        _lastRefillTime = ticker.read( );
+        _windowStart = _lastRefillTime;
+        _tokens = getMaxRequestsPerSecond( );
+        for ( final ApiRequestPriority priority : ApiRequestPriority.values( ) )
+            _lanes.put( priority, new Lane( ) );
+    }
+
+    <T> ListenableFuture<T> submit( final Supplier<ListenableFuture<T>> request ) {
+        return submit( ApiRequestPriority.BACKGROUND, request );
+    }
+
+    /**
+     * Sends request as soon as budget allows it: no more than max requests by second, no more than max concurrent requests
+     * of its lane, and nothing while server asked to retry later. Pending requests of a lane are sent before the ones of following lanes.
+     */
+    <T> ListenableFuture<T> submit( final ApiRequestPriority priority, final Supplier<ListenableFuture<T>> request ) {
+        final SettableFuture<T> future = SettableFuture.create( );
+        final Lane lane = _lanes.get( priority );
+        final long submitTime = _ticker.read( );
+        final PendingRequest pendingRequest = new PendingRequest( future, ( ) -> {
+            lane._waitTime.addAndGet( _ticker.read( ) - submitTime );
+            lane._sentCount.incrementAndGet( );
+            ListenableFuture<T> requestFuture;
+            try {
+                // Request cancelled while pending is not sent at all
+                requestFuture = future.isCancelled( ) ? Futures.<T>immediateCancelledFuture( ) : request.get( );
+            } catch ( RuntimeException e ) {
+                requestFuture = Futures.immediateFailedFuture( e );
+            }
+            requestFuture.addListener( ( ) -> onRequestDone( priority ), MoreExecutors.sameThreadExecutor( ) );
+            final ListenableFuture<T> sentRequest = requestFuture;
+            future.addListener( ( ) -> {
+                if ( future.isCancelled( ) )
+                    sentRequest.cancel( true );
+            }, MoreExecutors.sameThreadExecutor( ) );
+            Futures.addCallback( requestFuture, new FutureCallback<T>( ) {
+                @Override
+                public void onSuccess( final T result ) {
+                    future.set( result );
+                }
+
+                @Override
+                public void onFailure( final Throwable t ) {
+                    future.setException( t );
+                }
+            } );
+        } );
+        lane._pendingRequests.add( pendingRequest );
+        // Request cancelled while pending leaves its lane at once, so that it uses neither a token nor a place in queue
+        future.addListener( ( ) -> {
+            if ( future.isCancelled( ) )
+                lane._pendingRequests.remove( pendingRequest );
+        }, MoreExecutors.sameThreadExecutor( ) );
+        drain( );
+        return future;
+    }
+
+    /**
+     * Suspends all requests, when server answers it is overloaded
+     */
+    synchronized void throttle( final Duration retryAfter ) {
+        _throttledCount.incrementAndGet( );
+        _blockedUntil = Math.max( _blockedUntil, _ticker.read( ) + retryAfter.toNanos( ) );
+        _tokens = 0;
+        LOGGER.warn( "Server asks to slow down: requests are suspended for {} s", retryAfter.getSeconds( ) );
+    }
+
+    /**
+     * Stretches delay before next check while budget is exhausted, so checks do not pile up
+     */
+    synchronized long stretch( final long delay, final TimeUnit unit ) {
+        final long blockedTime = _blockedUntil - _ticker.read( );
+        if ( blockedTime > 0 )
+            return Math.max( delay * 2, unit.convert( blockedTime, TimeUnit.NANOSECONDS ) );
+        if ( getPendingCount( ) > 0 )
+            return delay * 2;
+        return delay;
+    }
+
+    private void drain( ) {
+        // Only one thread sends requests at a time, others only ask it to loop once more
+        if ( _drainRequests.getAndIncrement( ) != 0 )
+            return;
+        do {
+            Runnable request;
+            while ( ( request = acquire( ) ) != null )
+                request.run( );
+        } while ( _drainRequests.decrementAndGet( ) != 0 );
+    }
+
+    private synchronized Runnable acquire( ) {
+        final Optional<ApiRequestPriority> priority = nextLane( );
+        if ( !priority.isPresent( ) )
+            return null;
+
+        final long now = _ticker.read( );
+        refill( now );
+
+        final long tokenWaitTime = _tokens >= 1 ? 0 : (long) Math.ceil( ( 1 - _tokens ) * ONE_SECOND / getMaxRequestsPerSecond( ) );
+        final long waitTime = Math.max( _blockedUntil - now, tokenWaitTime );
+        if ( waitTime > 0 ) {
+            scheduleDrain( waitTime );
+            return null;
+        }
+
+        final Lane lane = _lanes.get( priority.get( ) );
+        final PendingRequest pendingRequest = lane._pendingRequests.poll( );
+        if ( pendingRequest == null || pendingRequest.isCancelled( ) )
+            // Cancelled between lane selection and now, next request is looked for without using budget
+            return ( ) -> {
+            };
+        _tokens -= 1;
+        _windowRequestCount++;
+        _rateMeter.record( );
+        lane._inFlightCount++;
+        if ( priority.get( ) != ApiRequestPriority.INTERACTIVE )
+            _inFlightCount++;
+        return pendingRequest;
+    }
+
+    /**
+     * @return First lane having a pending request and room for one more request in flight
+     */
+    private Optional<ApiRequestPriority> nextLane( ) {
+        for ( final ApiRequestPriority priority : ApiRequestPriority.values( ) ) {
+            final Lane lane = _lanes.get( priority );
+            if ( !lane._pendingRequests.isEmpty( ) && lane._inFlightCount < getMaxConcurrentRequests( priority )
+                    && ( priority == ApiRequestPriority.INTERACTIVE || _inFlightCount < getMaxConcurrentRequests( ) ) )
+                return Optional.of( priority );
+        }
+        return Optional.empty( );
+    }
+
+    private void refill( final long now ) {
+        final int maxRequestsPerSecond = getMaxRequestsPerSecond( );
+        _tokens = Math.min( maxRequestsPerSecond, _tokens + (double) ( now - _lastRefillTime ) * maxRequestsPerSecond / ONE_SECOND );
+        _lastRefillTime = now;
+        rollWindow( now );
+    }
+
+    private void rollWindow( final long now ) {
+        if ( now - _windowStart < ONE_SECOND )
+            return;
+        _lastWindowRequestCount = now - _windowStart < 2 * ONE_SECOND ? _windowRequestCount : 0;
+        _windowRequestCount = 0;
+        _windowStart = now;
+    }
+
+    private void scheduleDrain( final long waitTime ) {
+        if ( _drainScheduled )
+            return;
+        _drainScheduled = true;
+        try {
+            _executorService.schedule( ( ) -> {
+                synchronized ( this ) {
+                    _drainScheduled = false;
+                }
+                drain( );
+            }, waitTime, TimeUnit.NANOSECONDS );
+        } catch ( RejectedExecutionException ignored ) {
+            // Executor is shut down: application is stopping
+        }
+    }
+
+    private void onRequestDone( final ApiRequestPriority priority ) {
+        synchronized ( this ) {
+            _lanes.get( priority )._inFlightCount--;
+            if ( priority != ApiRequestPriority.INTERACTIVE )
+                _inFlightCount--;
+        }
+        drain( );
+    }
+
+    private int getMaxRequestsPerSecond( ) {
+        return Math.max( 1, _configuration.getMaxRequestsPerSecond( ) );
+    }
+
+    private int getMaxConcurrentRequests( ) {
+        return Math.max( 1, _configuration.getMaxConcurrentRequests( ) );
+    }
+
+    /**
+     * Interactive requests have their own limit, on top of max concurrent requests.
+     * Background requests only use half of max concurrent requests, so that visible tiles are updated even when background is busy.
+     */
+    private int getMaxConcurrentRequests( final ApiRequestPriority priority ) {
+        switch ( priority ) {
+            case INTERACTIVE:
+                return Math.max( 1, _configuration.getMaxInteractiveRequests( ) );
+            case BACKGROUND:
+                return Math.max( 1, getMaxConcurrentRequests( ) / 2 );
+            default:
+                return getMaxConcurrentRequests( );
+        }
+    }
+
+    /**
+     * Parses Retry-After header value, which is either a number of seconds or a http date
+     */
+    static Duration parseRetryAfter( final String retryAfter, final Instant now ) {
+        if ( isNullOrEmpty( retryAfter ) )
+            return DEFAULT_RETRY_AFTER;
+        try {
+            return Duration.ofSeconds( Math.max( 0, Long.parseLong( retryAfter.trim( ) ) ) );
+        } catch ( NumberFormatException ignored ) {
+            // Not a number of seconds
+        }
+        try {
+            final Duration duration = Duration.between( now, ZonedDateTime.parse( retryAfter.trim( ), DateTimeFormatter.RFC_1123_DATE_TIME ) );
+            return duration.isNegative( ) ? Duration.ZERO : duration;
+        } catch ( DateTimeParseException ignored ) {
+            return DEFAULT_RETRY_AFTER;
+        }
+    }
+
+    synchronized boolean isExhausted( ) {
+        return getPendingCount( ) > 0 || _blockedUntil > _ticker.read( );
+    }
+
+    /**
+     * Highest usage of budget, between requests sent during last second and concurrent requests, interactive ones excepted
+     */
+    synchronized double getUtilisation( ) {
+        rollWindow( _ticker.read( ) );
+        return Math.max( (double) _lastWindowRequestCount / getMaxRequestsPerSecond( ), (double) _inFlightCount / getMaxConcurrentRequests( ) );
+    }
+
+    synchronized int getInFlightCount( ) {
+        return _inFlightCount;
+    }
+
+    synchronized int getInFlightCount( final ApiRequestPriority priority ) {
+        return _lanes.get( priority )._inFlightCount;
+    }
+
+    int getPendingCount( ) {
+        int pendingCount = 0;
+        for ( final Lane lane : _lanes.values( ) )
+            pendingCount += lane._pendingRequests.size( );
+        return pendingCount;
+    }
+
+    int getPendingCount( final ApiRequestPriority priority ) {
+        return _lanes.get( priority )._pendingRequests.size( );
+    }
+
+    /**
+     * Mean time spent by requests of lane waiting for budget before being sent
+     */
+    Duration getAverageWaitTime( final ApiRequestPriority priority ) {
+        final Lane lane = _lanes.get( priority );
+        final long sentCount = lane._sentCount.get( );
+        return sentCount == 0 ? Duration.ZERO : Duration.ofNanos( lane._waitTime.get( ) / sentCount );
+    }
+
+    long getThrottledCount( ) {
+        return _throttledCount.get( );
+    }
+
+    /**
+     * Coefficient of variation of requests sent by second during last minute, 0 when requests are perfectly spread
+     */
+    double getRateVariation( ) {
+        return _rateMeter.getRateVariation( );
+    }
+
+    double getMeanRate( ) {
+        return _rateMeter.getMeanRate( );
+    }
+
+    private static final class PendingRequest implements Runnable {
+        private final ListenableFuture<?> _future;
+        private final Runnable _send;
+
+        PendingRequest( final ListenableFuture<?> future, final Runnable send ) {
+            _future = future;
+            _send = send;
+        }
+
+        boolean isCancelled( ) {
+            return _future.isCancelled( );
+        }
+
+        @Override
+        public void run( ) {
+            _send.run( );
+        }
+    }
+
+    private static final class Lane {
+        private final Queue<PendingRequest> _pendingRequests = Queues.newConcurrentLinkedQueue( );
+        private final AtomicLong _sentCount = new AtomicLong( );
+        private final AtomicLong _waitTime = new AtomicLong( );
+        // Guarded by budget
+        private int _inFlightCount;
+    }
+}
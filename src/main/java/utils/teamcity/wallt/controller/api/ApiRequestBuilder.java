@@ -38,7 +38,9 @@ public final class ApiRequestBuilder {
     private String _path = "";
     private String _username = ApiRequest.GUEST_USER;
     private String _password = "";
+    private String _token = "";
     private ApiVersion _version;
+    private String _fields = "";
 
     private ApiRequestBuilder( ) {
     }
@@ -69,23 +71,38 @@ public final class ApiRequestBuilder {
         return this;
     }
 
+    public ApiRequestBuilder withToken( final String token ) {
+        _token = nullToEmpty( token );
+        return this;
+    }
+
     public ApiRequestBuilder apiVersion( final ApiVersion version ) {
         _version = version;
         return this;
     }
 
+    public ApiRequestBuilder fields( final String fields ) {
+        _fields = nullToEmpty( fields );
+        return this;
+    }
+
+    public ApiRequestBuilder projection( final Class<? extends ApiResponse> responseType ) {
+        final ApiFields fields = checkNotNull( responseType, "Response type is not specified" ).getAnnotation( ApiFields.class );
+        return fields( fields == null ? null : fields.value( ) );
+    }
+
     public ApiRequest build( ) {
         checkNotNull( _version, "Api version is not defined." );
 
         final String apiAuthMode = isGuestMode( ) ? "guestAuth" : "httpAuth";
-        final String url = String.format( API_URL_FORMAT, _serverUrl, apiAuthMode, _version.getIdentifier( ), _path );
+        final String url = String.format( API_URL_FORMAT, _serverUrl, apiAuthMode, _version.getIdentifier( ), withFields( _path ) );
 
         try {
             final URI uri = new URI( url );
             final String s = uri.getScheme( );
             checkArgument( "http".equalsIgnoreCase( s ) || "https".equalsIgnoreCase( s ), "Only HTTP & HTTPS protocols are supported for API" );
 
-            return new ApiRequest( uri, _username, _password );
+            return new ApiRequest( uri, _username, _password, _token );
 
         } catch ( URISyntaxException e ) {
             throw new IllegalArgumentException( "Unable to build api request: format is not uri-valid for '" + url + "'", e );
@@ -93,8 +110,15 @@ public final class ApiRequestBuilder {
 
     }
 
+    private String withFields( final String path ) {
+        // Path may already define its own fields projection
+        if ( _fields.isEmpty( ) || !_version.isSupported( ApiFeature.FIELDS_PROJECTION ) || path.contains( "fields=" ) )
+            return path;
+        return path + ( path.contains( "?" ) ? "&" : "?" ) + "fields=" + _fields;
+    }
+
     private boolean isGuestMode( ) {
-        return ApiRequest.GUEST_USER.equals( _username );
+        return ApiRequest.GUEST_USER.equals( _username ) && _token.isEmpty( );
     }
 
 }
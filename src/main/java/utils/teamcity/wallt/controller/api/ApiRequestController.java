@@ -16,20 +16,25 @@
 package utils.teamcity.wallt.controller.api;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
 import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.ning.http.client.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import utils.teamcity.wallt.model.configuration.Configuration;
 import utils.teamcity.wallt.model.logger.Loggers;
 
 import javax.inject.Inject;
-
-import static com.google.common.base.Preconditions.checkNotNull;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Date: 17/02/14
@@ -40,74 +45,100 @@ final class ApiRequestController implements IApiRequestController {
 
     public static final Logger LOGGER = LoggerFactory.getLogger( Loggers.NETWORK );
     private final Configuration _configuration;
-    private final AsyncHttpClient _httpClient;
+    private final Map<HttpTransport, IApiTransport> _transports;
+    private final ApiResponseCache _responseCache;
+    private final ApiResponseDecoder _responseDecoder;
+    private final ApiRequestSingleFlight _singleFlight;
+    private final ApiRequestBudget _requestBudget;
+    private final ApiCircuitBreaker _circuitBreaker;
+    private final ApiTransferStatistics _transferStatistics;
+    private final ApiSession _session;
+    private final ApiRequestHedging _hedging;
+    private final ApiResponseExecutor _responseExecutor;
 
     @Inject
-    ApiRequestController( final Configuration configuration, final AsyncHttpClient httpClient ) {
+    ApiRequestController( final Configuration configuration, final Map<HttpTransport, IApiTransport> transports, final ApiResponseCache responseCache, final ApiResponseDecoder responseDecoder, final ApiRequestSingleFlight singleFlight, final ApiRequestBudget requestBudget, final ApiCircuitBreaker circuitBreaker, final ApiTransferStatistics transferStatistics, final ApiSession session, final ApiRequestHedging hedging, final ApiResponseExecutor responseExecutor ) {
         _configuration = configuration;
-        _httpClient = httpClient;
+        _transports = transports;
+        _responseCache = responseCache;
+        _responseDecoder = responseDecoder;
+        _singleFlight = singleFlight;
+        _requestBudget = requestBudget;
+        _circuitBreaker = circuitBreaker;
+        _transferStatistics = transferStatistics;
+        _session = session;
+        _hedging = hedging;
+        _responseExecutor = responseExecutor;
     }
 
     @Override
     public <T extends ApiResponse> ListenableFuture<T> sendRequest( final ApiVersion version, final String path, final Class<T> expectedType ) {
+        return sendRequest( version, path, expectedType, ApiRequestPriority.BACKGROUND );
+    }
+
+    @Override
+    public <T extends ApiResponse> ListenableFuture<T> sendRequest( final ApiVersion version, final String path, final Class<T> expectedType, final ApiRequestPriority priority ) {
+        // Identical requests sent at the same time share a single round trip
+        return _singleFlight.share( version, path, expectedType,
+                ( ) -> _circuitBreaker.call( path, ( ) -> _hedging.call( path, send -> _requestBudget.submit( priority, send ), ( ) -> sendHttpRequest( version, path, expectedType, true ) ) ) );
+    }
+
+    private <T extends ApiResponse> ListenableFuture<T> sendHttpRequest( final ApiVersion version, final String path, final Class<T> expectedType, final boolean reloginAllowed ) {
         final SettableFuture<T> apiResponseFuture = SettableFuture.create( );
         try {
             final ApiRequest request = ApiRequestBuilder.newRequest( )
                     .to( _configuration.getServerUrl( ) )
                     .forUser( _configuration.getCredentialsUser( ) )
                     .withPassword( _configuration.getCredentialsPassword( ) )
+                    .withToken( _configuration.getCredentialsToken( ) )
                     .request( path )
                     .apiVersion( version )
+                    .projection( expectedType )
                     .build( );
 
             LOGGER.info( "<< REQUEST: to {}", request );
 
-            final AsyncHttpClient.BoundRequestBuilder httpRequest = _httpClient
-                    .prepareGet( request.getURI( ) )
-                    .addHeader( HttpHeaders.ACCEPT, "application/json" );
-
-            if ( !request.isGuestMode( ) ) {
-                final Realm realm = new Realm.RealmBuilder( )
-                        .setPrincipal( request.getUsername( ) )
-                        .setPassword( request.getPassword( ) )
-                        .setUsePreemptiveAuth( true )
-                        .setScheme( Realm.AuthScheme.BASIC )
-                        .build( );
-                httpRequest.setRealm( realm );
-            }
+            final Map<String, String> headers = Maps.newLinkedHashMap( );
+            headers.put( HttpHeaders.ACCEPT, "application/json" );
+            headers.put( HttpHeaders.ACCEPT_ENCODING, ApiResponseDecoder.ACCEPTED_ENCODINGS );
 
-            if ( _configuration.isUseProxy( ) ) {
-                // CODEREVIEW Let the user choose the protocol ?
-                final ProxyServer proxyServer = new ProxyServer( ProxyServer.Protocol.HTTP, checkNotNull( _configuration.getProxyHost( ), "Proxy hostname is not defined" ), _configuration.getProxyPort( ), _configuration.getProxyCredentialsUser( ), _configuration.getProxyCredentialsPassword( ) );
-                httpRequest.setProxyServer( proxyServer );
+            final boolean withSession = _session.authenticate( request, headers );
+
+            final Optional<ApiResponseCache.CachedResponse> cachedResponse = _responseCache.getValidators( request.getURI( ) );
+            if ( cachedResponse.isPresent( ) ) {
+                cachedResponse.get( ).getETag( ).ifPresent( eTag -> headers.put( HttpHeaders.IF_NONE_MATCH, eTag ) );
+                cachedResponse.get( ).getLastModified( ).ifPresent( lastModified -> headers.put( HttpHeaders.IF_MODIFIED_SINCE, lastModified ) );
             }
 
-            httpRequest.execute( new AsyncCompletionHandler<Void>( ) {
+            final ListenableFuture<ApiTransportResponse> responseFuture = getTransport( ).get( request, headers );
+            apiResponseFuture.addListener( ( ) -> {
+                if ( apiResponseFuture.isCancelled( ) )
+                    responseFuture.cancel( true );
+            }, MoreExecutors.sameThreadExecutor( ) );
+            // Response is decoded, and then applied by callers of this request, on response executor instead of network thread
+            Futures.addCallback( responseFuture, new FutureCallback<ApiTransportResponse>( ) {
                 @Override
-                public void onThrowable( final Throwable t ) {
-                    super.onThrowable( t );
-                    apiResponseFuture.setException( t );
+                public void onSuccess( final ApiTransportResponse response ) {
+                    try {
+                        _session.capture( request, response.getHeaders( HttpHeaders.SET_COOKIE ) );
+                        if ( response.getStatusCode( ) == 401 && withSession && reloginAllowed ) {
+                            // Session expired on server side, request is sent again with credentials to open a new one
+                            LOGGER.info( ">> RESPONSE: for {} rejects session, login again", request );
+                            _session.expire( request );
+                            relay( sendHttpRequest( version, path, expectedType, false ), apiResponseFuture );
+                            return;
+                        }
+                        onResponse( request, path, expectedType, response, apiResponseFuture );
+                    } catch ( Exception e ) {
+                        apiResponseFuture.setException( e );
+                    }
                 }
 
                 @Override
-                public Void onCompleted( final Response response ) throws Exception {
-
-                    if ( response.getStatusCode( ) != 200 ) {
-                        LOGGER.error( ">> RESPONSE: for {} has status code {}", request, response.getStatusCode( ) );
-                        apiResponseFuture.setException( new ApiException( "Http status code is " + response.getStatusCode( ) + " when requesting uri: " + response.getUri( ) ) );
-                        return null;
-                    }
-
-                    final String content = response.getResponseBody( Charsets.UTF_8.name( ) );
-                    LOGGER.debug( ">> RESPONSE: for {} has content: {}", request, content );
-
-                    final Gson gson = new GsonBuilder( ).create( );
-                    final T jsonResponse = gson.fromJson( content, expectedType );
-                    apiResponseFuture.set( jsonResponse );
-
-                    return null;
+                public void onFailure( final Throwable t ) {
+                    apiResponseFuture.setException( t );
                 }
-            } );
+            }, _responseExecutor );
         } catch ( Exception e ) {
             apiResponseFuture.setException( e );
         }
@@ -115,5 +146,67 @@ final class ApiRequestController implements IApiRequestController {
         return apiResponseFuture;
     }
 
+    private static <T> void relay( final ListenableFuture<T> source, final SettableFuture<T> target ) {
+        Futures.addCallback( source, new FutureCallback<T>( ) {
+            @Override
+            public void onSuccess( final T result ) {
+                target.set( result );
+            }
+
+            @Override
+            public void onFailure( final Throwable t ) {
+                target.setException( t );
+            }
+        } );
+    }
+
+    private IApiTransport getTransport( ) {
+        final IApiTransport transport = _transports.get( _configuration.getHttpTransport( ) );
+        return transport == null ? _transports.get( HttpTransport.NING ) : transport;
+    }
+
+    private <T extends ApiResponse> void onResponse( final ApiRequest request, final String path, final Class<T> expectedType, final ApiTransportResponse response, final SettableFuture<T> apiResponseFuture ) throws Exception {
+        if ( response.getStatusCode( ) == 429 || response.getStatusCode( ) == 503 ) {
+            final Duration retryAfter = ApiRequestBudget.parseRetryAfter( response.getHeader( HttpHeaders.RETRY_AFTER ), Instant.now( ) );
+            _requestBudget.throttle( retryAfter );
+            apiResponseFuture.setException( new ApiException( "Http status code is " + response.getStatusCode( ) + " when requesting uri: " + request.getURI( ) + ", retry after " + retryAfter.getSeconds( ) + " s", response.getStatusCode( ) ) );
+            return;
+        }
+
+        if ( response.getStatusCode( ) == 304 ) {
+            final Optional<T> notModifiedResponse = _responseCache.notModified( request.getURI( ), expectedType );
+            if ( notModifiedResponse.isPresent( ) ) {
+                LOGGER.debug( ">> RESPONSE: for {} is not modified", request );
+                apiResponseFuture.set( notModifiedResponse.get( ) );
+                return;
+            }
+        }
+
+        if ( response.getStatusCode( ) != 200 ) {
+            LOGGER.error( ">> RESPONSE: for {} has status code {}", request, response.getStatusCode( ) );
+            apiResponseFuture.setException( new ApiException( "Http status code is " + response.getStatusCode( ) + " when requesting uri: " + request.getURI( ), response.getStatusCode( ) ) );
+            return;
+        }
+
+        final long decodingStart = System.nanoTime( );
+        final CountingInputStream wireContent = new CountingInputStream( response.getBody( ) );
+        final CountingInputStream decodedContent = new CountingInputStream( ApiResponseDecoder.decompress( wireContent, response.getHeader( HttpHeaders.CONTENT_ENCODING ) ) );
+
+        final T jsonResponse;
+        if ( LOGGER.isDebugEnabled( ) ) {
+            final String content = new String( ByteStreams.toByteArray( decodedContent ), Charsets.UTF_8 );
+            LOGGER.debug( ">> RESPONSE: for {} has content: {}", request, content );
+            jsonResponse = _responseDecoder.decode( content, expectedType );
+        } else {
+            // Body is decompressed and decoded from its bytes without being copied into a string
+            jsonResponse = _responseDecoder.decode( decodedContent, expectedType );
+        }
+
+        _transferStatistics.record( ApiEndpoint.fromPath( path ), wireContent.getCount( ), decodedContent.getCount( ), System.nanoTime( ) - decodingStart );
+        LOGGER.debug( ">> RESPONSE: for {} has {} bytes, {} bytes once decompressed", request, wireContent.getCount( ), decodedContent.getCount( ) );
+
+        _responseCache.modified( request.getURI( ), response.getHeader( HttpHeaders.ETAG ), response.getHeader( HttpHeaders.LAST_MODIFIED ), jsonResponse );
+        apiResponseFuture.set( jsonResponse );
+    }
 
 }
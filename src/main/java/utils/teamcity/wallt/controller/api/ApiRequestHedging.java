@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.teamcity.wallt.model.configuration.Configuration;
+import utils.teamcity.wallt.model.logger.Loggers;
+
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Sends a duplicate of status requests taking longer than usual for their kind, first response wins and the other one is cancelled.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class ApiRequestHedging {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( Loggers.NETWORK );
+
+    static final int LATENCY_SAMPLES = 100;
+    static final int MIN_LATENCY_SAMPLES = 20;
+    static final double HEDGE_PERCENTILE = 0.95;
+    static final double MAX_HEDGE_RATE = 0.05;
+    static final long MIN_HEDGE_DELAY = TimeUnit.MILLISECONDS.toNanos( 50 );
+
+    private final Configuration _configuration;
+    private final ScheduledExecutorService _executorService;
+    private final Ticker _ticker;
+    private final Map<ApiRequestKind, RequestLatency> _latencies = Maps.newEnumMap( ApiRequestKind.class );
+
+    private final AtomicLong _requestCount = new AtomicLong( );
+    private final AtomicLong _hedgeCount = new AtomicLong( );
+    private final AtomicLong _hedgeWinCount = new AtomicLong( );
+    private final AtomicLong _cappedCount = new AtomicLong( );
+
+    @Inject
+    ApiRequestHedging( final Configuration configuration, final ScheduledExecutorService executorService ) {
+        this( configuration, executorService, Ticker.systemTicker( ) );
+    }
+
+    @VisibleForTesting
+    ApiRequestHedging( final Configuration configuration, final ScheduledExecutorService executorService, final Ticker ticker ) {
+        _configuration = configuration;
+        _executorService = executorService;
+        _ticker = ticker;
+        for ( final ApiRequestKind kind : ApiRequestKind.values( ) )
+            _latencies.put( kind, new RequestLatency( ) );
+    }
+
+    /**
+     * Sends status request through budget, and a duplicate of it once it takes longer than p95 latency observed for its kind.
+     * Latency, as hedge delay, is counted from the moment request is sent, not while it waits for budget.
+     */
+    <T> ListenableFuture<T> call( final String path, final Function<Supplier<ListenableFuture<T>>, ListenableFuture<T>> budget, final Supplier<ListenableFuture<T>> request ) {
+        final ApiRequestKind kind = ApiRequestKind.fromPath( path );
+        if ( !kind.isStatus( ) )
+            return budget.apply( request );
+
+        final RequestLatency latency = _latencies.get( kind );
+        _requestCount.incrementAndGet( );
+
+        final HedgedCall<T> call = new HedgedCall<>( );
+        call.add( budget.apply( ( ) -> {
+            final ListenableFuture<T> attempt = timed( latency, request.get( ) );
+            scheduleHedge( path, call, latency, budget, request );
+            return attempt;
+        } ), false );
+        return call._result;
+    }
+
+    private <T> void scheduleHedge( final String path, final HedgedCall<T> call, final RequestLatency latency, final Function<Supplier<ListenableFuture<T>>, ListenableFuture<T>> budget, final Supplier<ListenableFuture<T>> request ) {
+        final Optional<Long> hedgeDelay = _configuration.isHedgedRequests( ) ? latency.getPercentile( HEDGE_PERCENTILE ) : Optional.empty( );
+        if ( !hedgeDelay.isPresent( ) )
+            return;
+        try {
+            _executorService.schedule( ( ) -> hedge( path, call, latency, budget, request ), Math.max( MIN_HEDGE_DELAY, hedgeDelay.get( ) ), TimeUnit.NANOSECONDS );
+        } catch ( RejectedExecutionException ignored ) {
+            // Executor is shut down: application is stopping
+        }
+    }
+
+    private <T> void hedge( final String path, final HedgedCall<T> call, final RequestLatency latency, final Function<Supplier<ListenableFuture<T>>, ListenableFuture<T>> budget, final Supplier<ListenableFuture<T>> request ) {
+        if ( call._result.isDone( ) )
+            return;
+        if ( _hedgeCount.get( ) + 1 > MAX_HEDGE_RATE * _requestCount.get( ) ) {
+            _cappedCount.incrementAndGet( );
+            return;
+        }
+        _hedgeCount.incrementAndGet( );
+        LOGGER.debug( "Request to {} is slower than usual, sending it again", path );
+        ListenableFuture<T> hedgeFuture;
+        try {
+            hedgeFuture = budget.apply( ( ) -> timed( latency, request.get( ) ) );
+        } catch ( RuntimeException e ) {
+            hedgeFuture = Futures.immediateFailedFuture( e );
+        }
+        call.add( hedgeFuture, true );
+    }
+
+    private <T> ListenableFuture<T> timed( final RequestLatency latency, final ListenableFuture<T> attempt ) {
+        final long start = _ticker.read( );
+        Futures.addCallback( attempt, new FutureCallback<T>( ) {
+            @Override
+            public void onSuccess( final T result ) {
+                latency.record( _ticker.read( ) - start );
+            }
+
+            @Override
+            public void onFailure( final Throwable t ) {
+                // Latency of failures and cancelled attempts says nothing about usual response time
+            }
+        } );
+        return attempt;
+    }
+
+    Optional<Duration> getHedgeDelay( final ApiRequestKind kind ) {
+        return _latencies.get( kind ).getPercentile( HEDGE_PERCENTILE ).map( Duration::ofNanos );
+    }
+
+    long getRequestCount( ) {
+        return _requestCount.get( );
+    }
+
+    long getHedgeCount( ) {
+        return _hedgeCount.get( );
+    }
+
+    long getHedgeWinCount( ) {
+        return _hedgeWinCount.get( );
+    }
+
+    /**
+     * Hedges not sent because hedge rate reached its cap
+     */
+    long getCappedCount( ) {
+        return _cappedCount.get( );
+    }
+
+    double getHedgeRate( ) {
+        final long requestCount = _requestCount.get( );
+        return requestCount == 0 ? 0 : (double) _hedgeCount.get( ) / requestCount;
+    }
+
+    private final class HedgedCall<T> {
+
+        private final SettableFuture<T> _result = SettableFuture.create( );
+        private final List<ListenableFuture<T>> _attempts = Lists.newCopyOnWriteArrayList( );
+        private final AtomicInteger _pendingCount = new AtomicInteger( );
+
+        HedgedCall( ) {
+            // Loser, or every attempt when caller cancels, is cancelled as soon as result is known
+            _result.addListener( ( ) -> {
+                for ( final ListenableFuture<T> attempt : _attempts )
+                    attempt.cancel( true );
+            }, MoreExecutors.sameThreadExecutor( ) );
+        }
+
+        void add( final ListenableFuture<T> attempt, final boolean hedge ) {
+            _pendingCount.incrementAndGet( );
+            _attempts.add( attempt );
+            if ( _result.isDone( ) )
+                attempt.cancel( true );
+
+            Futures.addCallback( attempt, new FutureCallback<T>( ) {
+                @Override
+                public void onSuccess( final T result ) {
+                    if ( _result.set( result ) && hedge )
+                        _hedgeWinCount.incrementAndGet( );
+                }
+
+                @Override
+                public void onFailure( final Throwable t ) {
+                    // Call fails only once every attempt failed
+                    if ( _pendingCount.decrementAndGet( ) == 0 )
+                        _result.setException( t );
+                }
+            } );
+        }
+    }
+
+    private static final class RequestLatency {
+
+        // Following fields are guarded by this
+        private final long[] _samples = new long[LATENCY_SAMPLES];
+        private int _count;
+        private int _next;
+
+        synchronized void record( final long latency ) {
+            _samples[_next] = latency;
+            _next = ( _next + 1 ) % LATENCY_SAMPLES;
+            _count = Math.min( _count + 1, LATENCY_SAMPLES );
+        }
+
+        synchronized Optional<Long> getPercentile( final double percentile ) {
+            if ( _count < MIN_LATENCY_SAMPLES )
+                return Optional.empty( );
+            final long[] sorted = Arrays.copyOf( _samples, _count );
+            Arrays.sort( sorted );
+            return Optional.of( sorted[(int) Math.ceil( percentile * _count ) - 1] );
+        }
+    }
+}
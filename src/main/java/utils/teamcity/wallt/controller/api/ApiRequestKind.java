@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+/**
+ * Kind of api request, finer than its endpoint: a batch of build types and a whole project tree are both requested
+ * to buildTypes endpoint, but they do not answer in the same time.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+enum ApiRequestKind {
+
+    BUILD_TYPES_STATUS( "buildTypes?locator=item:" ),
+    PROJECT_STATUS( "buildTypes?locator=affectedProject:" ),
+    LAST_BUILDS( "builds/?locator=buildType:" ),
+    BUILD_STATUS( "builds/id:" ),
+    BUILD_CHANGES( "builds?locator=sinceBuild:" ),
+    RUNNING_BUILDS( "builds?locator=running:true" ),
+    QUEUE_STATUS( "buildQueue" ),
+    OTHER( "" );
+
+    private final String _pathPrefix;
+
+    ApiRequestKind( final String pathPrefix ) {
+        _pathPrefix = pathPrefix;
+    }
+
+    /**
+     * Returns kind of request path, given by its prefix
+     */
+    static ApiRequestKind fromPath( final String path ) {
+        for ( final ApiRequestKind kind : values( ) )
+            if ( kind != OTHER && path.startsWith( kind._pathPrefix ) )
+                return kind;
+        return OTHER;
+    }
+
+    /**
+     * Status requests are the ones updating wall, any other request (server topology, version...) is not worth a duplicate
+     */
+    boolean isStatus( ) {
+        return this != OTHER;
+    }
+
+}
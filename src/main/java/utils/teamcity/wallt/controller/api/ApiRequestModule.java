@@ -15,8 +15,13 @@
 
 package utils.teamcity.wallt.controller.api;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
 import com.google.inject.Scopes;
+import com.google.inject.Singleton;
+
+import java.util.Map;
 
 /**
  * Date: 16/03/14
@@ -28,5 +33,23 @@ public class ApiRequestModule extends AbstractModule {
     @Override
     protected void configure( ) {
         bind( IApiRequestController.class ).to( ApiRequestController.class ).in( Scopes.SINGLETON );
+        bind( ApiResponseCache.class ).in( Scopes.SINGLETON );
+        bind( ApiResponseDecoder.class ).in( Scopes.SINGLETON );
+        bind( ApiRequestSingleFlight.class ).in( Scopes.SINGLETON );
+        bind( ApiRequestBudget.class ).in( Scopes.SINGLETON );
+        bind( ApiCircuitBreaker.class ).in( Scopes.SINGLETON );
+        bind( ApiTransferStatistics.class ).in( Scopes.SINGLETON );
+        bind( ApiSession.class ).in( Scopes.SINGLETON );
+        bind( ApiRequestHedging.class ).in( Scopes.SINGLETON );
+        bind( ApiResponseExecutor.class ).in( Scopes.SINGLETON );
+    }
+
+    @Provides
+    @Singleton
+    Map<HttpTransport, IApiTransport> transports( final NingApiTransport ningTransport, final JdkApiTransport jdkTransport ) {
+        return ImmutableMap.of(
+                HttpTransport.NING, ningTransport,
+                HttpTransport.JDK, jdkTransport
+        );
     }
 }
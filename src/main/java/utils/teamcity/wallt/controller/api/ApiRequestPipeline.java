@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.teamcity.wallt.model.logger.Loggers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class ApiRequestPipeline<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( Loggers.MAIN );
+
+    private final String _name;
+    private final int _maxInFlight;
+    private final int _requestCount;
+    private final Function<T, ListenableFuture<?>> _request;
+    private final Queue<T> _pending;
+    private final Set<ListenableFuture<?>> _inFlightRequests = Sets.newConcurrentHashSet( );
+
+    private final AtomicInteger _inFlightCount = new AtomicInteger( );
+    private final AtomicInteger _maxInFlightCount = new AtomicInteger( );
+    private final AtomicInteger _completedCount = new AtomicInteger( );
+    private final AtomicInteger _failureCount = new AtomicInteger( );
+    private final AtomicInteger _drainRequests = new AtomicInteger( );
+    private final SettableFuture<Void> _completion = SettableFuture.create( );
+
+    private volatile Instant _start;
+    private volatile Instant _end;
+
+    ApiRequestPipeline( final String name, final Collection<T> items, final int maxInFlight, final Function<T, ListenableFuture<?>> request ) {
+        checkArgument( maxInFlight > 0, "Max requests in flight must be positive" );
+        _name = name;
+        _maxInFlight = maxInFlight;
+        _request = request;
+        _pending = Queues.newConcurrentLinkedQueue( items );
+        _requestCount = items.size( );
+        // Cancelling pipeline drops pending requests and cancels the ones in flight
+        _completion.addListener( ( ) -> {
+            if ( !_completion.isCancelled( ) )
+                return;
+            _pending.clear( );
+            for ( final ListenableFuture<?> inFlightRequest : _inFlightRequests )
+                inFlightRequest.cancel( true );
+        }, MoreExecutors.sameThreadExecutor( ) );
+    }
+
+    /**
+     * Starts requests, with at most the max requests in flight at the same time
+     *
+     * @return Future which is done when all requests are done, even if some of them failed
+     */
+    ListenableFuture<Void> start( ) {
+        _start = Instant.now( );
+        if ( _requestCount == 0 )
+            complete( );
+        else
+            drain( );
+        return _completion;
+    }
+
+    private void drain( ) {
+        // Only one thread sends requests at a time, others only ask it to loop once more
+        if ( _drainRequests.getAndIncrement( ) != 0 )
+            return;
+        do {
+            while ( _inFlightCount.get( ) < _maxInFlight ) {
+                final T item = _pending.poll( );
+                if ( item == null )
+                    break;
+                send( item );
+            }
+        } while ( _drainRequests.decrementAndGet( ) != 0 );
+    }
+
+    private void send( final T item ) {
+        final int inFlight = _inFlightCount.incrementAndGet( );
+        _maxInFlightCount.accumulateAndGet( inFlight, Math::max );
+
+        ListenableFuture<?> future;
+        try {
+            future = _request.apply( item );
+        } catch ( RuntimeException e ) {
+            future = Futures.immediateFailedFuture( e );
+        }
+
+        final ListenableFuture<?> requestFuture = future == null ? Futures.immediateFuture( null ) : future;
+        _inFlightRequests.add( requestFuture );
+        if ( _completion.isCancelled( ) )
+            requestFuture.cancel( true );
+        requestFuture.addListener( ( ) -> onRequestDone( requestFuture ), MoreExecutors.sameThreadExecutor( ) );
+    }
+
+    private void onRequestDone( final ListenableFuture<?> future ) {
+        _inFlightRequests.remove( future );
+        try {
+            future.get( );
+        } catch ( InterruptedException | ExecutionException | RuntimeException e ) {
+            _failureCount.incrementAndGet( );
+        }
+
+        _inFlightCount.decrementAndGet( );
+        if ( _completedCount.incrementAndGet( ) == _requestCount )
+            complete( );
+        else
+            drain( );
+    }
+
+    private void complete( ) {
+        _end = Instant.now( );
+        // Pipelines run on every status check: summary is only useful while investigating
+        LOGGER.debug( "{}: {} requests done in {} ms ({} requests/s, up to {} in flight, {} failures)",
+                _name, _requestCount, getDuration( ).toMillis( ), String.format( "%.1f", getThroughput( ) ), getMaxInFlightCount( ), getFailureCount( ) );
+        _completion.set( null );
+    }
+
+    int getRequestCount( ) {
+        return _requestCount;
+    }
+
+    int getInFlightCount( ) {
+        return _inFlightCount.get( );
+    }
+
+    int getMaxInFlightCount( ) {
+        return _maxInFlightCount.get( );
+    }
+
+    int getFailureCount( ) {
+        return _failureCount.get( );
+    }
+
+    Duration getDuration( ) {
+        if ( _start == null )
+            return Duration.ZERO;
+        return Duration.between( _start, _end == null ? Instant.now( ) : _end );
+    }
+
+    /**
+     * @return Completed requests by second since pipeline start
+     */
+    double getThroughput( ) {
+        final long durationInMs = getDuration( ).toMillis( );
+        return _completedCount.get( ) * 1000.0 / Math.max( durationInMs, 1 );
+    }
+}
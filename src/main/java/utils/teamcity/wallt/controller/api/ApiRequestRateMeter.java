@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts requests sent during each second of last minute, to tell how evenly they are spread.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class ApiRequestRateMeter {
+
+    static final int WINDOW_IN_SECONDS = 60;
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos( 1 );
+
+    private final Ticker _ticker;
+    private final long _start;
+
+    // Following fields are guarded by this
+    private final int[] _counts = new int[WINDOW_IN_SECONDS];
+    private long _currentSecond;
+
+    ApiRequestRateMeter( final Ticker ticker ) {
+        _ticker = ticker;
+        _start = ticker.read( );
+    }
+
+    synchronized void record( ) {
+        roll( );
+        _counts[(int) ( _currentSecond % WINDOW_IN_SECONDS )]++;
+    }
+
+    private void roll( ) {
+        final long second = ( _ticker.read( ) - _start ) / ONE_SECOND;
+        // Seconds without any request are reset to zero
+        for ( long s = Math.max( _currentSecond + 1, second - WINDOW_IN_SECONDS + 1 ); s <= second; s++ )
+            _counts[(int) ( s % WINDOW_IN_SECONDS )] = 0;
+        _currentSecond = Math.max( _currentSecond, second );
+    }
+
+    /**
+     * Coefficient of variation of requests by second over last complete seconds of window: 0 when requests are perfectly spread,
+     * higher when they come in bursts
+     */
+    synchronized double getRateVariation( ) {
+        final double mean = getMeanRate( );
+        if ( mean == 0 )
+            return 0;
+
+        final int seconds = getCompleteSeconds( );
+        double squares = 0;
+        for ( int i = 1; i <= seconds; i++ ) {
+            final double deviation = getCount( i ) - mean;
+            squares += deviation * deviation;
+        }
+        return Math.sqrt( squares / seconds ) / mean;
+    }
+
+    /**
+     * Mean requests by second over last complete seconds of window
+     */
+    synchronized double getMeanRate( ) {
+        roll( );
+        final int seconds = getCompleteSeconds( );
+        if ( seconds == 0 )
+            return 0;
+        double sum = 0;
+        for ( int i = 1; i <= seconds; i++ )
+            sum += getCount( i );
+        return sum / seconds;
+    }
+
+    private int getCompleteSeconds( ) {
+        return (int) Math.min( _currentSecond, WINDOW_IN_SECONDS - 1 );
+    }
+
+    private int getCount( final int secondsAgo ) {
+        return _counts[(int) ( ( _currentSecond - secondsAgo ) % WINDOW_IN_SECONDS )];
+    }
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class ApiRequestSingleFlight {
+
+    // (Api version, path, expected type) -> outstanding request
+    private final ConcurrentMap<List<Object>, SharedRequest<? extends ApiResponse>> _inFlightRequests = Maps.newConcurrentMap( );
+
+    private final AtomicLong _hitCount = new AtomicLong( );
+    private final AtomicLong _missCount = new AtomicLong( );
+
+    /**
+     * Attaches caller to the outstanding identical request if any, otherwise sends it.
+     * Each caller gets its own future, so cancelling it does not affect other callers: request is only cancelled once all its callers cancelled.
+     */
+    @SuppressWarnings( "unchecked" )
+    <T extends ApiResponse> ListenableFuture<T> share( final ApiVersion version, final String path, final Class<T> expectedType, final Supplier<ListenableFuture<T>> request ) {
+        final List<Object> key = ImmutableList.of( version, path, expectedType );
+        final SharedRequest<T> sharedRequest = new SharedRequest<>( );
+
+        SharedRequest<T> inFlightRequest;
+        while ( ( inFlightRequest = (SharedRequest<T>) _inFlightRequests.putIfAbsent( key, sharedRequest ) ) != null ) {
+            final Optional<ListenableFuture<T>> callerFuture = inFlightRequest.attach( );
+            if ( callerFuture.isPresent( ) ) {
+                _hitCount.incrementAndGet( );
+                return callerFuture.get( );
+            }
+            // Outstanding request is being cancelled by its last caller, a new one takes its place
+            _inFlightRequests.remove( key, inFlightRequest );
+        }
+
+        _missCount.incrementAndGet( );
+        sharedRequest._future.addListener( ( ) -> _inFlightRequests.remove( key, sharedRequest ), MoreExecutors.sameThreadExecutor( ) );
+        final ListenableFuture<T> callerFuture = sharedRequest.attach( ).get( );
+
+        ListenableFuture<T> requestFuture;
+        try {
+            requestFuture = request.get( );
+        } catch ( RuntimeException e ) {
+            requestFuture = Futures.immediateFailedFuture( e );
+        }
+        sharedRequest.send( requestFuture );
+
+        return callerFuture;
+    }
+
+    private static <T> FutureCallback<T> relayTo( final SettableFuture<T> target ) {
+        return new FutureCallback<T>( ) {
+            @Override
+            public void onSuccess( final T result ) {
+                target.set( result );
+            }
+
+            @Override
+            public void onFailure( final Throwable t ) {
+                target.setException( t );
+            }
+        };
+    }
+
+    private static final class SharedRequest<T> {
+
+        private static final int CLOSED = -1;
+
+        private final SettableFuture<T> _future = SettableFuture.create( );
+        // Count of callers still waiting for request, CLOSED once the last one cancelled: no caller can attach anymore
+        private final AtomicInteger _callerCount = new AtomicInteger( );
+
+        /**
+         * @return Future of new caller, absent when request is cancelled because all its callers cancelled
+         */
+        Optional<ListenableFuture<T>> attach( ) {
+            int callerCount;
+            do {
+                callerCount = _callerCount.get( );
+                if ( callerCount == CLOSED )
+                    return Optional.empty( );
+            } while ( !_callerCount.compareAndSet( callerCount, callerCount + 1 ) );
+
+            final SettableFuture<T> callerFuture = SettableFuture.create( );
+            Futures.addCallback( _future, relayTo( callerFuture ) );
+            callerFuture.addListener( ( ) -> {
+                // A caller attaching between last cancellation and closing keeps request alive
+                if ( callerFuture.isCancelled( ) && _callerCount.decrementAndGet( ) == 0 && _callerCount.compareAndSet( 0, CLOSED ) )
+                    _future.cancel( true );
+            }, MoreExecutors.sameThreadExecutor( ) );
+            return Optional.of( callerFuture );
+        }
+
+        void send( final ListenableFuture<T> request ) {
+            Futures.addCallback( request, relayTo( _future ) );
+            _future.addListener( ( ) -> {
+                if ( _future.isCancelled( ) )
+                    request.cancel( true );
+            }, MoreExecutors.sameThreadExecutor( ) );
+        }
+    }
+
+    int getInFlightCount( ) {
+        return _inFlightRequests.size( );
+    }
+
+    long getHitCount( ) {
+        return _hitCount.get( );
+    }
+
+    long getMissCount( ) {
+        return _missCount.get( );
+    }
+
+    /**
+     * Ratio of requests which were attached to an outstanding identical request
+     */
+    double getHitRate( ) {
+        final long requestCount = _hitCount.get( ) + _missCount.get( );
+        return requestCount == 0 ? 0 : (double) _hitCount.get( ) / requestCount;
+    }
+}
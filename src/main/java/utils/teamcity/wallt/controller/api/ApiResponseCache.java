@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class ApiResponseCache {
+
+    static final int MAX_CACHED_RESPONSES = 10000;
+    private static final int EXPIRATION_TIME_IN_MINUTES = 60;
+
+    // Request uri -> last validated response
+    private final Cache<String, CachedResponse> _responses = CacheBuilder.newBuilder( )
+            .concurrencyLevel( Runtime.getRuntime( ).availableProcessors( ) * 2 )
+            .maximumSize( MAX_CACHED_RESPONSES )
+            .expireAfterAccess( EXPIRATION_TIME_IN_MINUTES, TimeUnit.MINUTES )
+            .build( );
+
+    private final AtomicLong _hitCount = new AtomicLong( );
+    private final AtomicLong _missCount = new AtomicLong( );
+
+    Optional<CachedResponse> getValidators( final String uri ) {
+        return Optional.ofNullable( _responses.getIfPresent( uri ) );
+    }
+
+    /**
+     * Returns the cached response for uri when server answered it is not modified
+     */
+    <T extends ApiResponse> Optional<T> notModified( final String uri, final Class<T> expectedType ) {
+        final CachedResponse cachedResponse = _responses.getIfPresent( uri );
+        if ( cachedResponse == null || !expectedType.isInstance( cachedResponse.getResponse( ) ) ) {
+            _responses.invalidate( uri );
+            return Optional.empty( );
+        }
+        _hitCount.incrementAndGet( );
+        return Optional.of( expectedType.cast( cachedResponse.getResponse( ) ) );
+    }
+
+    /**
+     * Records a fully received response, which is kept only if server gave validators for it
+     */
+    void modified( final String uri, final String eTag, final String lastModified, final ApiResponse response ) {
+        _missCount.incrementAndGet( );
+        if ( isNullOrEmpty( eTag ) && isNullOrEmpty( lastModified ) ) {
+            _responses.invalidate( uri );
+            return;
+        }
+        _responses.put( uri, new CachedResponse( eTag, lastModified, response ) );
+    }
+
+    long getHitCount( ) {
+        return _hitCount.get( );
+    }
+
+    long getMissCount( ) {
+        return _missCount.get( );
+    }
+
+    /**
+     * Ratio of responses which server answered as not modified, so that cached response was used
+     */
+    double getHitRate( ) {
+        final long responseCount = _hitCount.get( ) + _missCount.get( );
+        return responseCount == 0 ? 0 : (double) _hitCount.get( ) / responseCount;
+    }
+
+    long size( ) {
+        return _responses.size( );
+    }
+
+    static final class CachedResponse {
+
+        private final String _eTag;
+        private final String _lastModified;
+        private final ApiResponse _response;
+
+        CachedResponse( final String eTag, final String lastModified, final ApiResponse response ) {
+            _eTag = eTag;
+            _lastModified = lastModified;
+            _response = response;
+        }
+
+        Optional<String> getETag( ) {
+            return Optional.ofNullable( isNullOrEmpty( _eTag ) ? null : _eTag );
+        }
+
+        Optional<String> getLastModified( ) {
+            return Optional.ofNullable( isNullOrEmpty( _lastModified ) ? null : _lastModified );
+        }
+
+        ApiResponse getResponse( ) {
+            return _response;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.base.Charsets;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class ApiResponseDecoder {
+
+    static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+
+    // Gson is thread safe, so only one instance is shared by all responses
+    private final Gson _gson = new GsonBuilder( ).create( );
+
+    <T extends ApiResponse> T decode( final InputStream content, final Class<T> expectedType ) throws IOException {
+        try ( JsonReader reader = new JsonReader( new InputStreamReader( content, Charsets.UTF_8 ) ) ) {
+            return _gson.fromJson( reader, expectedType );
+        }
+    }
+
+    <T extends ApiResponse> T decode( final String content, final Class<T> expectedType ) {
+        return _gson.fromJson( content, expectedType );
+    }
+
+    /**
+     * Returns response body decompressed according to its Content-Encoding header value
+     */
+    static InputStream decompress( final InputStream content, final String contentEncoding ) throws IOException {
+        if ( isNullOrEmpty( contentEncoding ) || "identity".equalsIgnoreCase( contentEncoding.trim( ) ) )
+            return content;
+        if ( "gzip".equalsIgnoreCase( contentEncoding.trim( ) ) || "x-gzip".equalsIgnoreCase( contentEncoding.trim( ) ) )
+            return new GZIPInputStream( content );
+        if ( "deflate".equalsIgnoreCase( contentEncoding.trim( ) ) )
+            return new InflaterInputStream( content );
+        throw new ApiException( "Unsupported content encoding: " + contentEncoding );
+    }
+
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor decoding responses and applying them to model, so that http I/O threads only move bytes.
+ * When its queue is full, the response is processed by the thread which received it, which slows down further responses.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class ApiResponseExecutor implements Executor {
+
+    static final int PROCESSING_THREADS = 2;
+    static final int MAX_QUEUED_RESPONSES = 256;
+
+    private final ThreadPoolExecutor _executor;
+    private final AtomicInteger _maxQueueDepth = new AtomicInteger( );
+    private final AtomicLong _processedCount = new AtomicLong( );
+    private final AtomicLong _callerRunCount = new AtomicLong( );
+    private final AtomicLong _queueTime = new AtomicLong( );
+
+    ApiResponseExecutor( ) {
+        this( PROCESSING_THREADS, MAX_QUEUED_RESPONSES );
+    }
+
+    @VisibleForTesting
+    ApiResponseExecutor( final int threads, final int maxQueuedResponses ) {
+        _executor = new ThreadPoolExecutor( threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>( maxQueuedResponses ),
+                new ThreadFactoryBuilder( ).setNameFormat( "api-response-%d" ).setDaemon( true ).build( ),
+                ( task, executor ) -> {
+                    // Reported with queue metrics by monitoring service
+                    _callerRunCount.incrementAndGet( );
+                    task.run( );
+                } );
+    }
+
+    @Override
+    public void execute( final Runnable command ) {
+        final long queuedTime = System.nanoTime( );
+        _executor.execute( ( ) -> {
+            _queueTime.addAndGet( System.nanoTime( ) - queuedTime );
+            _processedCount.incrementAndGet( );
+            command.run( );
+        } );
+        _maxQueueDepth.accumulateAndGet( _executor.getQueue( ).size( ), Math::max );
+    }
+
+    int getQueueDepth( ) {
+        return _executor.getQueue( ).size( );
+    }
+
+    int getMaxQueueDepth( ) {
+        return _maxQueueDepth.get( );
+    }
+
+    /**
+     * Responses processed on network thread because queue was full
+     */
+    long getCallerRunCount( ) {
+        return _callerRunCount.get( );
+    }
+
+    /**
+     * Mean time spent by responses in queue before being processed
+     */
+    Duration getAverageQueueTime( ) {
+        final long processedCount = _processedCount.get( );
+        return processedCount == 0 ? Duration.ZERO : Duration.ofNanos( _queueTime.get( ) / processedCount );
+    }
+}
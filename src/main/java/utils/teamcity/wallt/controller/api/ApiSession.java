@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.base.Charsets;
+import com.google.common.net.HttpHeaders;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Keeps session opened by server on first authenticated response, so that following requests send session cookie
+ * instead of being authenticated again.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class ApiSession {
+
+    static final String SESSION_COOKIE = "TCSESSIONID";
+
+    private final AtomicReference<Session> _session = new AtomicReference<>( );
+    private final AtomicLong _reusedCount = new AtomicLong( );
+    private final AtomicLong _authenticatedCount = new AtomicLong( );
+    private final AtomicLong _expiredCount = new AtomicLong( );
+
+    /**
+     * Adds session cookie to headers when a session is opened for server and user of request, credentials otherwise
+     *
+     * @return true if request is sent within opened session
+     */
+    boolean authenticate( final ApiRequest request, final Map<String, String> headers ) {
+        final Optional<String> sessionCookie = getSessionCookie( request );
+        if ( sessionCookie.isPresent( ) ) {
+            headers.put( HttpHeaders.COOKIE, sessionCookie.get( ) );
+            _reusedCount.incrementAndGet( );
+            return true;
+        }
+
+        final Optional<String> authorization = getAuthorization( request );
+        if ( authorization.isPresent( ) ) {
+            headers.put( HttpHeaders.AUTHORIZATION, authorization.get( ) );
+            _authenticatedCount.incrementAndGet( );
+        }
+        return false;
+    }
+
+    Optional<String> getSessionCookie( final ApiRequest request ) {
+        final Session session = _session.get( );
+        if ( session == null || !session._owner.equals( request.getSessionOwner( ) ) )
+            return Optional.empty( );
+        return Optional.of( SESSION_COOKIE + "=" + session._id );
+    }
+
+    static Optional<String> getAuthorization( final ApiRequest request ) {
+        if ( !isNullOrEmpty( request.getToken( ) ) )
+            return Optional.of( "Bearer " + request.getToken( ) );
+        if ( request.isGuestMode( ) )
+            return Optional.empty( );
+        return Optional.of( basicCredentials( request.getUsername( ), request.getPassword( ) ) );
+    }
+
+    static String basicCredentials( final String user, final String password ) {
+        return "Basic " + Base64.getEncoder( ).encodeToString( ( user + ":" + password ).getBytes( Charsets.UTF_8 ) );
+    }
+
+    /**
+     * Keeps session set by server in response to request, if any
+     */
+    void capture( final ApiRequest request, final List<String> setCookieHeaders ) {
+        for ( final String setCookie : setCookieHeaders ) {
+            final String cookie = setCookie.split( ";", 2 )[0].trim( );
+            if ( cookie.startsWith( SESSION_COOKIE + "=" ) && cookie.length( ) > SESSION_COOKIE.length( ) + 1 )
+                _session.set( new Session( request.getSessionOwner( ), cookie.substring( SESSION_COOKIE.length( ) + 1 ) ) );
+        }
+    }
+
+    /**
+     * Forgets session rejected by server, next request is authenticated again
+     */
+    void expire( final ApiRequest request ) {
+        final Session session = _session.get( );
+        if ( session != null && session._owner.equals( request.getSessionOwner( ) ) && _session.compareAndSet( session, null ) )
+            _expiredCount.incrementAndGet( );
+    }
+
+    long getReusedCount( ) {
+        return _reusedCount.get( );
+    }
+
+    long getAuthenticatedCount( ) {
+        return _authenticatedCount.get( );
+    }
+
+    long getExpiredCount( ) {
+        return _expiredCount.get( );
+    }
+
+    /**
+     * Ratio of authenticated requests sent within an opened session
+     */
+    double getReuseRatio( ) {
+        final long reused = getReusedCount( );
+        final long total = reused + getAuthenticatedCount( );
+        return total == 0 ? 0 : (double) reused / total;
+    }
+
+    private static final class Session {
+        private final String _owner;
+        private final String _id;
+
+        Session( final String owner, final String id ) {
+            _owner = owner;
+            _id = id;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.collect.Maps;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class ApiTransferStatistics {
+
+    private final Map<ApiEndpoint, EndpointStatistics> _statistics = Maps.newEnumMap( ApiEndpoint.class );
+
+    ApiTransferStatistics( ) {
+        for ( final ApiEndpoint endpoint : ApiEndpoint.values( ) )
+            _statistics.put( endpoint, new EndpointStatistics( ) );
+    }
+
+    /**
+     * Records size of a response, as transferred and once decompressed, and time spent to decompress and decode it
+     */
+    void record( final ApiEndpoint endpoint, final long wireBytes, final long decodedBytes, final long decodingTimeInNanos ) {
+        final EndpointStatistics statistics = _statistics.get( endpoint );
+        statistics._responseCount.incrementAndGet( );
+        statistics._wireBytes.addAndGet( wireBytes );
+        statistics._decodedBytes.addAndGet( decodedBytes );
+        statistics._decodingTime.addAndGet( decodingTimeInNanos );
+    }
+
+    long getResponseCount( final ApiEndpoint endpoint ) {
+        return _statistics.get( endpoint )._responseCount.get( );
+    }
+
+    long getWireBytes( final ApiEndpoint endpoint ) {
+        return _statistics.get( endpoint )._wireBytes.get( );
+    }
+
+    long getDecodedBytes( final ApiEndpoint endpoint ) {
+        return _statistics.get( endpoint )._decodedBytes.get( );
+    }
+
+    long getSavedBytes( final ApiEndpoint endpoint ) {
+        return getDecodedBytes( endpoint ) - getWireBytes( endpoint );
+    }
+
+    /**
+     * Ratio of transferred bytes to decompressed bytes, 1 when nothing is compressed
+     */
+    double getCompressionRatio( final ApiEndpoint endpoint ) {
+        final long decodedBytes = getDecodedBytes( endpoint );
+        return decodedBytes == 0 ? 1 : (double) getWireBytes( endpoint ) / decodedBytes;
+    }
+
+    Duration getDecodingTime( final ApiEndpoint endpoint ) {
+        return Duration.ofNanos( _statistics.get( endpoint )._decodingTime.get( ) );
+    }
+
+    private static final class EndpointStatistics {
+        private final AtomicLong _responseCount = new AtomicLong( );
+        private final AtomicLong _wireBytes = new AtomicLong( );
+        private final AtomicLong _decodedBytes = new AtomicLong( );
+        private final AtomicLong _decodingTime = new AtomicLong( );
+    }
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+interface ApiTransportResponse {
+
+    int getStatusCode( );
+
+    /**
+     * @return Value of header, ignoring case of its name, or null if header is not present
+     */
+    String getHeader( final String name );
+
+    /**
+     * @return All values of header, ignoring case of its name, empty if header is not present
+     */
+    List<String> getHeaders( final String name );
+
+    /**
+     * @return Body bytes as received, still compressed when server used a content encoding
+     */
+    InputStream getBody( ) throws IOException;
+
+}
@@ -15,9 +15,11 @@
 
 package utils.teamcity.wallt.controller.api;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import static utils.teamcity.wallt.controller.api.ApiFeature.*;
@@ -29,6 +31,7 @@ import static utils.teamcity.wallt.controller.api.ApiFeature.*;
  */
 public enum ApiVersion {
 
+    API_2017_2( "2017.2", "2017.2", PROJECT_STATUS, BUILD_TYPE_STATUS, QUEUE_STATUS, FIELDS_PROJECTION, MULTIPLE_BUILD_TYPE_STATUS, BUILD_CHANGE_FEED, PAGED_LOCATOR ),
     API_8_1( "8.1", "8.0", PROJECT_STATUS, BUILD_TYPE_STATUS, QUEUE_STATUS ),
     API_8_0( "8.0", "8.0", PROJECT_STATUS, BUILD_TYPE_STATUS ),
     API_7_0( "7.0", "7.0", PROJECT_STATUS, BUILD_TYPE_STATUS ),
@@ -40,11 +43,37 @@ public enum ApiVersion {
     private final String _identifier;
     private final String _name;
     private final Set<ApiFeature> _supportedFeatures;
+    private final int _major;
+    private final int _minor;
 
     ApiVersion( final String name, final String identifier, final ApiFeature... features ) {
         _name = name;
         _identifier = identifier;
         _supportedFeatures = Sets.newEnumSet( Arrays.asList( features ), ApiFeature.class );
+        _major = Integer.parseInt( name.substring( 0, name.indexOf( '.' ) ) );
+        _minor = Integer.parseInt( name.substring( name.indexOf( '.' ) + 1 ) );
+    }
+
+    /**
+     * @return Most recent version which server of given version supports, the oldest one for older servers
+     */
+    public static ApiVersion bestFor( final int serverMajor, final int serverMinor ) {
+        for ( final ApiVersion v : values( ) )
+            if ( v._major < serverMajor || ( v._major == serverMajor && v._minor <= serverMinor ) )
+                return v;
+        return values( )[values( ).length - 1];
+    }
+
+    /**
+     * @return One version by url identifier, from most recent one: a server answers to its own identifier and to older ones
+     */
+    static List<ApiVersion> probingOrder( ) {
+        final ImmutableList.Builder<ApiVersion> versions = ImmutableList.builder( );
+        final Set<String> identifiers = Sets.newHashSet( );
+        for ( final ApiVersion v : values( ) )
+            if ( identifiers.add( v.getIdentifier( ) ) )
+                versions.add( v );
+        return versions.build( );
     }
 
     public static ApiVersion fromName( final String string ) {
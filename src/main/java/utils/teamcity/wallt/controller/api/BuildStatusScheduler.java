@@ -0,0 +1,275 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import utils.teamcity.wallt.model.build.BuildData;
+import utils.teamcity.wallt.model.build.BuildState;
+import utils.teamcity.wallt.model.build.BuildStatus;
+import utils.teamcity.wallt.model.build.BuildTypeData;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Schedules status checks of each build type according to its activity.
+ * Checks of build types with a steady delay are spread over their delay, at a phase which is stable for each build type,
+ * so that server receives a constant flow of requests instead of bursts.
+ * Once wall tells which build types are displayed, hidden ones are checked less often, and those of next screen are
+ * refreshed just before it is displayed. While build events are pushed, only running builds are checked at their usual
+ * delay, other build types are only reconciled from time to time.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class BuildStatusScheduler {
+
+    static final Duration MIN_DELAY = Duration.ofSeconds( 5 );
+    static final Duration MAX_RUNNING_DELAY = Duration.ofSeconds( 60 );
+    static final Duration QUEUED_DELAY = Duration.ofSeconds( 15 );
+    static final Duration FAILURE_DELAY = Duration.ofSeconds( 30 );
+    static final Duration RECENT_ACTIVITY_DELAY = Duration.ofSeconds( 60 );
+    static final Duration DAILY_ACTIVITY_DELAY = Duration.ofMinutes( 2 );
+    static final Duration WEEKLY_ACTIVITY_DELAY = Duration.ofMinutes( 5 );
+    static final Duration NO_ACTIVITY_DELAY = Duration.ofMinutes( 10 );
+    static final double DELAY_JITTER = 0.1;
+    static final int HIDDEN_DELAY_FACTOR = 4;
+    static final Duration PREFETCH_LEAD = Duration.ofSeconds( 3 );
+    static final Duration RECONCILIATION_DELAY = Duration.ofMinutes( 10 );
+
+    private final Clock _clock;
+    private final int _phaseSeed;
+    private final DoubleSupplier _random;
+
+    private final PriorityQueue<ScheduledCheck> _checks = new PriorityQueue<>( Comparator.comparing( ScheduledCheck::getDueTime ) );
+    // Build type -> its current scheduled check, older checks still in queue are ignored
+    private final Map<BuildTypeData, ScheduledCheck> _scheduledChecks = Maps.newIdentityHashMap( );
+    private final Set<BuildTypeData> _inProgress = Sets.newIdentityHashSet( );
+    // Build types on displayed and next screens, all build types are considered visible until wall tells otherwise
+    private final Set<BuildTypeData> _visible = Sets.newIdentityHashSet( );
+    private boolean _visibilityKnown;
+    private boolean _pushHealthy;
+
+    BuildStatusScheduler( final Clock clock ) {
+        // Seed differs from one wall to another, so that walls started together do not check same build types at the same time
+        this( clock, ThreadLocalRandom.current( ).nextInt( ), ( ) -> ThreadLocalRandom.current( ).nextDouble( ) );
+    }
+
+    @VisibleForTesting
+    BuildStatusScheduler( final Clock clock, final int phaseSeed, final DoubleSupplier random ) {
+        _clock = clock;
+        _phaseSeed = phaseSeed;
+        _random = random;
+    }
+
+    /**
+     * Returns monitored build types which status has to be checked now. Build types never seen before are always due.
+     * Returned build types are not due anymore until they are rescheduled.
+     */
+    synchronized List<BuildTypeData> pollDueBuildTypes( final Collection<BuildTypeData> monitoredBuildTypes ) {
+        final Instant now = _clock.instant( );
+
+        final Set<BuildTypeData> monitored = Sets.newIdentityHashSet( );
+        monitored.addAll( monitoredBuildTypes );
+        _scheduledChecks.keySet( ).retainAll( monitored );
+        _inProgress.retainAll( monitored );
+
+        for ( final BuildTypeData buildType : monitored )
+            if ( !_scheduledChecks.containsKey( buildType ) && !_inProgress.contains( buildType ) )
+                schedule( buildType, now );
+
+        final ImmutableList.Builder<BuildTypeData> dueBuildTypes = ImmutableList.builder( );
+        while ( !_checks.isEmpty( ) && !_checks.peek( ).getDueTime( ).isAfter( now ) ) {
+            final ScheduledCheck check = _checks.poll( );
+            if ( _scheduledChecks.get( check.getBuildType( ) ) != check )
+                continue;
+            _scheduledChecks.remove( check.getBuildType( ) );
+            _inProgress.add( check.getBuildType( ) );
+            dueBuildTypes.add( check.getBuildType( ) );
+        }
+        return dueBuildTypes.build( );
+    }
+
+    /**
+     * Schedules next status check of build types, according to their last known status
+     */
+    synchronized void reschedule( final Collection<BuildTypeData> buildTypes ) {
+        final Instant now = _clock.instant( );
+        for ( final BuildTypeData buildType : buildTypes ) {
+            _inProgress.remove( buildType );
+            schedule( buildType, nextCheckTime( buildType, now ) );
+        }
+    }
+
+    /**
+     * Build types newly displayed are due now, and those of next screen are due just before it is displayed,
+     * unless they are already due earlier. Other ones are hidden, and checked less often from their next check.
+     */
+    synchronized void updateVisibility( final Collection<BuildTypeData> displayed, final Collection<BuildTypeData> next, final Duration nextScreenDelay ) {
+        final Instant now = _clock.instant( );
+        final Instant prefetchTime = nextScreenDelay.compareTo( PREFETCH_LEAD ) > 0 ? now.plus( nextScreenDelay ).minus( PREFETCH_LEAD ) : now;
+
+        for ( final BuildTypeData buildType : next )
+            if ( !_visible.contains( buildType ) )
+                scheduleNoLaterThan( buildType, prefetchTime );
+        for ( final BuildTypeData buildType : displayed )
+            if ( !_visible.contains( buildType ) )
+                scheduleNoLaterThan( buildType, now );
+
+        _visible.clear( );
+        _visible.addAll( displayed );
+        _visible.addAll( next );
+        _visibilityKnown = true;
+    }
+
+    private void scheduleNoLaterThan( final BuildTypeData buildType, final Instant dueTime ) {
+        final ScheduledCheck check = _scheduledChecks.get( buildType );
+        // Build types being checked or never seen are refreshed anyway
+        if ( check != null && check.getDueTime( ).isAfter( dueTime ) )
+            schedule( buildType, dueTime );
+    }
+
+    /**
+     * When push stops being healthy, checks postponed to reconciliation are brought back to their usual delay
+     */
+    synchronized void setPushHealthy( final boolean pushHealthy ) {
+        if ( _pushHealthy == pushHealthy )
+            return;
+        _pushHealthy = pushHealthy;
+        if ( pushHealthy )
+            return;
+
+        final Instant now = _clock.instant( );
+        for ( final BuildTypeData buildType : ImmutableList.copyOf( _scheduledChecks.keySet( ) ) )
+            scheduleNoLaterThan( buildType, nextCheckTime( buildType, now ) );
+    }
+
+    /**
+     * Build type is due now, unless it is already being checked
+     */
+    synchronized void refresh( final BuildTypeData buildType ) {
+        scheduleNoLaterThan( buildType, _clock.instant( ) );
+    }
+
+    synchronized boolean isHidden( final BuildTypeData buildType ) {
+        return _visibilityKnown && !_visible.contains( buildType );
+    }
+
+    /**
+     * Build types waiting for a running or queued build are checked after their delay.
+     * Other ones are checked at the next occurrence of their phase, between half and one and a half delay from now.
+     * Both are shifted by a jitter of a tenth of delay at most. Delay of hidden build types is longer, and build types
+     * without running build are only reconciled while build events are pushed.
+     */
+    Instant nextCheckTime( final BuildTypeData buildType, final Instant now ) {
+        final boolean running = buildType.getOldestBuild( BuildState.running ).isPresent( );
+        long delay = nextCheckDelay( buildType ).toMillis( ) * ( isHidden( buildType ) ? HIDDEN_DELAY_FACTOR : 1 );
+        if ( _pushHealthy && !running )
+            delay = Math.max( delay, RECONCILIATION_DELAY.toMillis( ) );
+        final long jitter = (long) ( delay * DELAY_JITTER * ( 2 * _random.getAsDouble( ) - 1 ) );
+        if ( ( !_pushHealthy && buildType.isQueued( ) ) || running )
+            return now.plusMillis( delay + jitter );
+
+        final long earliest = now.toEpochMilli( ) + delay / 2;
+        final long phasedTime = earliest + Math.floorMod( getPhase( buildType, delay ) - earliest, delay );
+        return Instant.ofEpochMilli( phasedTime + jitter );
+    }
+
+    /**
+     * @return Offset of checks of build type within their delay, always the same for a given build type and delay
+     */
+    long getPhase( final BuildTypeData buildType, final long delay ) {
+        return Math.floorMod( Hashing.murmur3_32( _phaseSeed ).hashString( buildType.getId( ), Charsets.UTF_8 ).asInt( ), delay );
+    }
+
+    private void schedule( final BuildTypeData buildType, final Instant dueTime ) {
+        final ScheduledCheck check = new ScheduledCheck( buildType, dueTime );
+        _scheduledChecks.put( buildType, check );
+        _checks.add( check );
+    }
+
+    Duration nextCheckDelay( final BuildTypeData buildType ) {
+        // Running build is checked when it should be finished
+        final Optional<BuildData> runningBuild = buildType.getOldestBuild( BuildState.running );
+        if ( runningBuild.isPresent( ) )
+            return clamp( runningBuild.get( ).getTimeLeft( ), MIN_DELAY, MAX_RUNNING_DELAY );
+
+        if ( buildType.isQueued( ) )
+            return QUEUED_DELAY;
+
+        final Optional<BuildData> lastFinishedBuild = buildType.getLastBuild( BuildState.finished );
+        if ( !lastFinishedBuild.isPresent( ) || !lastFinishedBuild.get( ).getFinishedDate( ).isPresent( ) )
+            return RECENT_ACTIVITY_DELAY;
+
+        // Someone is probably fixing it
+        if ( lastFinishedBuild.get( ).getStatus( ) != BuildStatus.SUCCESS )
+            return FAILURE_DELAY;
+
+        // The longer build type is inactive, the less it is checked
+        final Duration inactivity = Duration.between( lastFinishedBuild.get( ).getFinishedDate( ).get( ), LocalDateTime.now( _clock ) );
+        if ( inactivity.compareTo( Duration.ofHours( 1 ) ) < 0 )
+            return RECENT_ACTIVITY_DELAY;
+        if ( inactivity.compareTo( Duration.ofDays( 1 ) ) < 0 )
+            return DAILY_ACTIVITY_DELAY;
+        if ( inactivity.compareTo( Duration.ofDays( 7 ) ) < 0 )
+            return WEEKLY_ACTIVITY_DELAY;
+        return NO_ACTIVITY_DELAY;
+    }
+
+    private static Duration clamp( final Duration value, final Duration min, final Duration max ) {
+        if ( value.compareTo( min ) < 0 )
+            return min;
+        if ( value.compareTo( max ) > 0 )
+            return max;
+        return value;
+    }
+
+    private static final class ScheduledCheck {
+
+        private final BuildTypeData _buildType;
+        private final Instant _dueTime;
+
+        ScheduledCheck( final BuildTypeData buildType, final Instant dueTime ) {
+            _buildType = buildType;
+            _dueTime = dueTime;
+        }
+
+        BuildTypeData getBuildType( ) {
+            return _buildType;
+        }
+
+        Instant getDueTime( ) {
+            return _dueTime;
+        }
+    }
+}
@@ -17,6 +17,9 @@ package utils.teamcity.wallt.controller.api;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import utils.teamcity.wallt.model.build.BuildTypeData;
+import utils.teamcity.wallt.model.build.ProjectData;
+
+import java.util.Collection;
 
 /**
  * Date: 15/02/14
@@ -25,6 +28,14 @@ import utils.teamcity.wallt.model.build.BuildTypeData;
  */
 public interface IApiController {
 
+    /**
+     * Request server version, trying api versions from the most recent one, and configure the most recent api version
+     * it supports with the cheapest polling strategy of this version
+     *
+     * @return Future of detected api version, which can be listened for completion
+     */
+    ListenableFuture<ApiVersion> detectApiVersion( );
+
     /**
      * Request all project list, and populate {@link utils.teamcity.wallt.model.build.IProjectManager} with {@link utils.teamcity.wallt.model.build.ProjectData}
      * Moreover, this method must dispath to {@link EventBus} the {@link utils.teamcity.wallt.model.build.IProjectManager} if needs view update
@@ -41,6 +52,15 @@ public interface IApiController {
      */
     ListenableFuture<Void> loadBuildTypeList( );
 
+    /**
+     * Request project and build type lists, and apply to {@link utils.teamcity.wallt.model.build.IProjectManager} and {@link IBuildManager}
+     * only projects and build types which were added, removed, renamed or moved, so that others keep their data
+     * Moreover, this method must dispath to {@link EventBus} a {@link utils.teamcity.wallt.model.event.TopologyChangeEvent} when topology changed
+     *
+     * @return Future which can be listened for completion
+     */
+    ListenableFuture<Void> synchronizeTopology( );
+
 
     /**
      * Request last builds status for specified build type and register them on builtType
@@ -51,6 +71,54 @@ public interface IApiController {
      */
     ListenableFuture<Void> requestLastBuildStatus( final BuildTypeData buildType );
 
+    /**
+     * Request last builds status for all specified build types and register them on each builtType
+     * When api version supports it, status are requested by batch of build types instead of one request by build type
+     * Moreover, this method must dispath to {@link EventBus} all {@link BuildTypeData} which need view update
+     *
+     * @param buildTypes Build types which are concerned
+     * @return Future which can be listened for completion
+     */
+    ListenableFuture<Void> requestLastBuildStatus( final Collection<BuildTypeData> buildTypes );
+
+    /**
+     * Same as {@link #requestLastBuildStatus(Collection)}, with requests sent in given lane of request budget
+     *
+     * @param buildTypes Build types which are concerned
+     * @param priority   {@link ApiRequestPriority#BACKGROUND} when build types are not displayed, so that displayed ones are updated first
+     * @return Future which can be listened for completion
+     */
+    ListenableFuture<Void> requestLastBuildStatus( final Collection<BuildTypeData> buildTypes, final ApiRequestPriority priority );
+
+    /**
+     * Request last builds status for all build types of project and its children and register them on each builtType
+     * When api version supports it, status are requested for the whole project tree with a single request
+     * Moreover, this method must dispath to {@link EventBus} all {@link BuildTypeData} and {@link ProjectData} which need view update
+     *
+     * @param project Project which is concerned
+     * @return Future which can be listened for completion
+     */
+    ListenableFuture<Void> requestProjectStatus( final ProjectData project );
+
+    /**
+     * Same as {@link #requestProjectStatus(ProjectData)}, with requests sent in given lane of request budget
+     *
+     * @param project  Project which is concerned
+     * @param priority {@link ApiRequestPriority#BACKGROUND} when no build type of project is displayed
+     * @return Future which can be listened for completion
+     */
+    ListenableFuture<Void> requestProjectStatus( final ProjectData project, final ApiRequestPriority priority );
+
+    /**
+     * Request builds started since last known build and running builds, and register them on matching builtType
+     * First call, or when api version does not support it, falls back to {@link #requestLastBuildStatus(Collection)}
+     * Moreover, this method must dispath to {@link EventBus} all {@link BuildTypeData} which need view update
+     *
+     * @param buildTypes Build types which are concerned
+     * @return Future which can be listened for completion
+     */
+    ListenableFuture<Void> requestBuildChanges( final Collection<BuildTypeData> buildTypes );
+
     /**
      * Request build types in queue and flag them into IBuildManager
      * Moreover, this method must dispath to {@link EventBus} all {@link BuildTypeData} which need view update
@@ -24,6 +24,8 @@ public interface IApiMonitoringService {
 
     void start( );
 
+    void stop( );
+
     void pause( );
 
     void activate( );
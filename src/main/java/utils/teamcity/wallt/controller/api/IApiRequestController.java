@@ -24,6 +24,11 @@ import com.google.common.util.concurrent.ListenableFuture;
  */
 public interface IApiRequestController {
 
+    /**
+     * Sends request in {@link ApiRequestPriority#BACKGROUND} lane
+     */
     <T extends ApiResponse> ListenableFuture<T> sendRequest( final ApiVersion version, final String path, final Class<T> expectedType );
 
+    <T extends ApiResponse> ListenableFuture<T> sendRequest( final ApiVersion version, final String path, final Class<T> expectedType, final ApiRequestPriority priority );
+
 }
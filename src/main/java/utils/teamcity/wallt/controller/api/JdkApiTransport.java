@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import utils.teamcity.wallt.model.configuration.Configuration;
+
+import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class JdkApiTransport implements IApiTransport {
+
+    private final Configuration _configuration;
+    private final ExecutorService _executorService;
+
+    @Inject
+    JdkApiTransport( final Configuration configuration, final ExecutorService executorService ) {
+        _configuration = configuration;
+        _executorService = executorService;
+    }
+
+    @Override
+    public ListenableFuture<ApiTransportResponse> get( final ApiRequest request, final Map<String, String> headers ) {
+        final SettableFuture<ApiTransportResponse> responseFuture = SettableFuture.create( );
+        final Future<?> task = _executorService.submit( ( ) -> {
+            try {
+                responseFuture.set( execute( request, headers ) );
+            } catch ( IOException | RuntimeException e ) {
+                responseFuture.setException( e );
+            }
+        } );
+        responseFuture.addListener( ( ) -> {
+            if ( responseFuture.isCancelled( ) )
+                task.cancel( true );
+        }, MoreExecutors.sameThreadExecutor( ) );
+        return responseFuture;
+    }
+
+    private ApiTransportResponse execute( final ApiRequest request, final Map<String, String> headers ) throws IOException {
+        final URL url = new URL( request.getURI( ) );
+        final HttpURLConnection connection = (HttpURLConnection) ( _configuration.isUseProxy( ) ? url.openConnection( getProxy( ) ) : url.openConnection( ) );
+        connection.setConnectTimeout( ApiModule.CONNECTION_TIMEOUT_IN_MS );
+        connection.setReadTimeout( ApiModule.REQUEST_TIMEOUT_IN_MS );
+        connection.setInstanceFollowRedirects( true );
+        connection.setUseCaches( false );
+        connection.setRequestProperty( HttpHeaders.USER_AGENT, ApiModule.USER_AGENT );
+        headers.forEach( connection::setRequestProperty );
+
+        if ( _configuration.isUseProxy( ) && !isNullOrEmpty( _configuration.getProxyCredentialsUser( ) ) )
+            connection.setRequestProperty( HttpHeaders.PROXY_AUTHORIZATION, ApiSession.basicCredentials( _configuration.getProxyCredentialsUser( ), _configuration.getProxyCredentialsPassword( ) ) );
+
+        final int statusCode = connection.getResponseCode( );
+        // Body is fully read, so that connection goes back to keep alive pool
+        final byte[] body;
+        try ( InputStream content = statusCode >= 400 ? connection.getErrorStream( ) : connection.getInputStream( ) ) {
+            body = content == null ? new byte[0] : ByteStreams.toByteArray( content );
+        }
+        return new JdkResponse( connection, statusCode, body );
+    }
+
+    private Proxy getProxy( ) {
+        return new Proxy( Proxy.Type.HTTP, new InetSocketAddress( checkNotNull( _configuration.getProxyHost( ), "Proxy hostname is not defined" ), _configuration.getProxyPort( ) ) );
+    }
+
+    private static final class JdkResponse implements ApiTransportResponse {
+
+        private final HttpURLConnection _connection;
+        private final int _statusCode;
+        private final byte[] _body;
+
+        JdkResponse( final HttpURLConnection connection, final int statusCode, final byte[] body ) {
+            _connection = connection;
+            _statusCode = statusCode;
+            _body = body;
+        }
+
+        @Override
+        public int getStatusCode( ) {
+            return _statusCode;
+        }
+
+        @Override
+        public String getHeader( final String name ) {
+            return _connection.getHeaderField( name );
+        }
+
+        @Override
+        public List<String> getHeaders( final String name ) {
+            for ( final Map.Entry<String, List<String>> header : _connection.getHeaderFields( ).entrySet( ) )
+                if ( name.equalsIgnoreCase( header.getKey( ) ) )
+                    return header.getValue( );
+            return ImmutableList.of( );
+        }
+
+        @Override
+        public InputStream getBody( ) {
+            return new ByteArrayInputStream( _body );
+        }
+    }
+}
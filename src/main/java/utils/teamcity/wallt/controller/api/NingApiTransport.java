@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.ProxyServer;
+import com.ning.http.client.Response;
+import utils.teamcity.wallt.model.configuration.Configuration;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class NingApiTransport implements IApiTransport {
+
+    private final Configuration _configuration;
+    private final AsyncHttpClient _httpClient;
+
+    @Inject
+    NingApiTransport( final Configuration configuration, final AsyncHttpClient httpClient ) {
+        _configuration = configuration;
+        _httpClient = httpClient;
+    }
+
+    @Override
+    public ListenableFuture<ApiTransportResponse> get( final ApiRequest request, final Map<String, String> headers ) {
+        final SettableFuture<ApiTransportResponse> responseFuture = SettableFuture.create( );
+
+        final AsyncHttpClient.BoundRequestBuilder httpRequest = _httpClient.prepareGet( request.getURI( ) );
+        headers.forEach( httpRequest::addHeader );
+
+        if ( _configuration.isUseProxy( ) ) {
+            // CODEREVIEW Let the user choose the protocol ?
+            final ProxyServer proxyServer = new ProxyServer( ProxyServer.Protocol.HTTP, checkNotNull( _configuration.getProxyHost( ), "Proxy hostname is not defined" ), _configuration.getProxyPort( ), _configuration.getProxyCredentialsUser( ), _configuration.getProxyCredentialsPassword( ) );
+            httpRequest.setProxyServer( proxyServer );
+        }
+
+        try {
+            final Future<Void> httpFuture = httpRequest.execute( new AsyncCompletionHandler<Void>( ) {
+                @Override
+                public void onThrowable( final Throwable t ) {
+                    super.onThrowable( t );
+                    responseFuture.setException( t );
+                }
+
+                @Override
+                public Void onCompleted( final Response response ) throws Exception {
+                    responseFuture.set( new NingResponse( response ) );
+                    return null;
+                }
+            } );
+            responseFuture.addListener( ( ) -> {
+                if ( responseFuture.isCancelled( ) )
+                    httpFuture.cancel( true );
+            }, MoreExecutors.sameThreadExecutor( ) );
+        } catch ( IOException | RuntimeException e ) {
+            responseFuture.setException( e );
+        }
+
+        return responseFuture;
+    }
+
+    private static final class NingResponse implements ApiTransportResponse {
+
+        private final Response _response;
+
+        NingResponse( final Response response ) {
+            _response = response;
+        }
+
+        @Override
+        public int getStatusCode( ) {
+            return _response.getStatusCode( );
+        }
+
+        @Override
+        public String getHeader( final String name ) {
+            return _response.getHeader( name );
+        }
+
+        @Override
+        public List<String> getHeaders( final String name ) {
+            final List<String> values = _response.getHeaders( name );
+            return values == null ? ImmutableList.<String>of( ) : values;
+        }
+
+        @Override
+        public InputStream getBody( ) throws IOException {
+            return _response.getResponseBodyAsStream( );
+        }
+    }
+}
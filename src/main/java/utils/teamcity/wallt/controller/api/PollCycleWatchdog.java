@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.collect.Maps;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps track of monitoring cycles, to report the ones which overran their deadline and the loops which stopped cycling.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class PollCycleWatchdog {
+
+    private final Clock _clock;
+    private final Map<String, CheckCycles> _checks = Maps.newConcurrentMap( );
+    private final AtomicLong _overrunCount = new AtomicLong( );
+
+    PollCycleWatchdog( final Clock clock ) {
+        _clock = clock;
+    }
+
+    void started( final String check ) {
+        final CheckCycles cycles = _checks.computeIfAbsent( check, name -> new CheckCycles( _clock.instant( ) ) );
+        synchronized ( cycles ) {
+            cycles._startTime = _clock.instant( );
+            cycles._running = true;
+        }
+    }
+
+    void done( final String check, final boolean overran ) {
+        final CheckCycles cycles = _checks.computeIfAbsent( check, name -> new CheckCycles( _clock.instant( ) ) );
+        synchronized ( cycles ) {
+            cycles._running = false;
+            cycles._lastDoneTime = _clock.instant( );
+            if ( overran )
+                cycles._overrunCount++;
+        }
+        if ( overran )
+            _overrunCount.incrementAndGet( );
+    }
+
+    /**
+     * @return Checks which current cycle runs for more than max age, or which did not complete any cycle for more than max age
+     */
+    List<String> findStalledChecks( final Duration maxAge ) {
+        final Instant limit = _clock.instant( ).minus( maxAge );
+        return _checks.entrySet( ).stream( )
+                .filter( check -> check.getValue( ).isStalled( limit ) )
+                .map( Map.Entry::getKey )
+                .sorted( )
+                .collect( Collectors.toList( ) );
+    }
+
+    long getOverrunCount( ) {
+        return _overrunCount.get( );
+    }
+
+    long getOverrunCount( final String check ) {
+        final CheckCycles cycles = _checks.get( check );
+        if ( cycles == null )
+            return 0;
+        synchronized ( cycles ) {
+            return cycles._overrunCount;
+        }
+    }
+
+    Optional<Instant> getLastDoneTime( final String check ) {
+        final CheckCycles cycles = _checks.get( check );
+        if ( cycles == null )
+            return Optional.empty( );
+        synchronized ( cycles ) {
+            return Optional.ofNullable( cycles._lastDoneTime );
+        }
+    }
+
+    private static final class CheckCycles {
+
+        // Following fields are guarded by this
+        private final Instant _creationTime;
+        private Instant _startTime;
+        private Instant _lastDoneTime;
+        private boolean _running;
+        private long _overrunCount;
+
+        CheckCycles( final Instant creationTime ) {
+            _creationTime = creationTime;
+        }
+
+        synchronized boolean isStalled( final Instant limit ) {
+            if ( _running )
+                return _startTime.isBefore( limit );
+            return ( _lastDoneTime == null ? _creationTime : _lastDoneTime ).isBefore( limit );
+        }
+    }
+}
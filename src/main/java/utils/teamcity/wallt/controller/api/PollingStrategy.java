@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public enum PollingStrategy {
+
+    /**
+     * Last builds are requested for each monitored build type, when it is due
+     */
+    LAST_BUILD_STATUS,
+    /**
+     * Builds started since last known build and running builds are requested for all build types at once
+     */
+    CHANGE_FEED;
+
+    /**
+     * @return Strategy sending fewest requests among those supported by api version
+     */
+    public static PollingStrategy cheapestFor( final ApiVersion version ) {
+        return version.isSupported( ApiFeature.BUILD_CHANGE_FEED ) ? CHANGE_FEED : LAST_BUILD_STATUS;
+    }
+}
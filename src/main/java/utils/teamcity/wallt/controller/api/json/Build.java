@@ -16,6 +16,7 @@
 package utils.teamcity.wallt.controller.api.json;
 
 import com.google.gson.annotations.SerializedName;
+import utils.teamcity.wallt.controller.api.ApiFields;
 import utils.teamcity.wallt.controller.api.ApiResponse;
 import utils.teamcity.wallt.controller.api.ApiUtils;
 import utils.teamcity.wallt.model.build.BuildState;
@@ -28,8 +29,11 @@ import java.time.LocalDateTime;
  *
  * @author Cedric Longo
  */
+@ApiFields( Build.FIELDS )
 public final class Build implements ApiResponse {
 
+    public static final String FIELDS = "id,status,state,running,finishDate,running-info(" + BuildRunningInfo.FIELDS + ")";
+
     @SerializedName("id")
     private int _id;
 
@@ -18,6 +18,7 @@ package utils.teamcity.wallt.controller.api.json;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.gson.annotations.SerializedName;
+import utils.teamcity.wallt.controller.api.ApiFields;
 import utils.teamcity.wallt.controller.api.ApiResponse;
 
 import java.util.List;
@@ -27,6 +28,7 @@ import java.util.List;
  *
  * @author Cedric Longo
  */
+@ApiFields( "build(id)" )
 public final class BuildList implements ApiResponse {
 
     @SerializedName("build")
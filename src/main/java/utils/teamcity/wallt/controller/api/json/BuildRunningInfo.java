@@ -24,6 +24,8 @@ import com.google.gson.annotations.SerializedName;
  */
 public final class BuildRunningInfo {
 
+    public static final String FIELDS = "percentageComplete,estimatedTotalSeconds,elapsedSeconds";
+
     @SerializedName( "percentageComplete" )
     private int _percentageComplete;
 
@@ -15,6 +15,7 @@
 
 package utils.teamcity.wallt.controller.api.json;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.gson.annotations.SerializedName;
 
 /**
@@ -24,6 +25,8 @@ import com.google.gson.annotations.SerializedName;
  */
 public final class BuildType {
 
+    public static final String FIELDS = "id,name,projectName,projectId";
+
     @SerializedName("id")
     private String _id;
 
@@ -36,6 +39,8 @@ public final class BuildType {
     @SerializedName("projectId")
     private String _projectId;
 
+    @SerializedName("builds")
+    private BuildList _builds = new BuildList( );
 
     public String getId( ) {
         return _id;
@@ -53,6 +58,10 @@ public final class BuildType {
         return _projectId;
     }
 
+    public BuildList getBuilds( ) {
+        return _builds;
+    }
+
     public BuildType( ) {
     }
 
@@ -62,4 +71,9 @@ public final class BuildType {
         _projectName = projectName;
         _projectId = projectId;
     }
+
+    @VisibleForTesting
+    public void addBuild( final Build build ) {
+        _builds.addBuild( build );
+    }
 }
@@ -18,7 +18,8 @@ package utils.teamcity.wallt.controller.api.json;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.gson.annotations.SerializedName;
-import utils.teamcity.wallt.controller.api.ApiResponse;
+import utils.teamcity.wallt.controller.api.ApiFields;
+import utils.teamcity.wallt.controller.api.ApiPagedResponse;
 
 import java.util.List;
 
@@ -27,17 +28,31 @@ import java.util.List;
  *
  * @author Cedric Longo
  */
-public final class BuildTypeList implements ApiResponse {
+@ApiFields( "nextHref,buildType(" + BuildType.FIELDS + ")" )
+public final class BuildTypeList implements ApiPagedResponse {
 
     @SerializedName("buildType")
     private List<BuildType> _builds = Lists.newLinkedList( );
 
+    @SerializedName("nextHref")
+    private String _nextHref;
+
     public List<BuildType> getBuildTypes( ) {
         return _builds;
     }
 
+    @Override
+    public boolean hasNextPage( ) {
+        return _nextHref != null;
+    }
+
     @VisibleForTesting
     public void addBuildType( final BuildType buildType ) {
         _builds.add( buildType );
     }
+
+    @VisibleForTesting
+    public void setNextHref( final String nextHref ) {
+        _nextHref = nextHref;
+    }
 }
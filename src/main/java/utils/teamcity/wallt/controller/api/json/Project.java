@@ -25,6 +25,8 @@ import com.google.gson.annotations.SerializedName;
  */
 public final class Project {
 
+    public static final String FIELDS = "id,name,parentProjectId";
+
     @SerializedName("id")
     private String _id;
 
@@ -18,7 +18,8 @@ package utils.teamcity.wallt.controller.api.json;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.gson.annotations.SerializedName;
-import utils.teamcity.wallt.controller.api.ApiResponse;
+import utils.teamcity.wallt.controller.api.ApiFields;
+import utils.teamcity.wallt.controller.api.ApiPagedResponse;
 
 import java.util.List;
 
@@ -27,17 +28,31 @@ import java.util.List;
  *
  * @author Cedric Longo
  */
-public final class ProjectList implements ApiResponse {
+@ApiFields( "nextHref,project(" + Project.FIELDS + ")" )
+public final class ProjectList implements ApiPagedResponse {
 
     @SerializedName("project")
     private List<Project> _projects = Lists.newLinkedList( );
 
+    @SerializedName("nextHref")
+    private String _nextHref;
+
     public List<Project> getProjects( ) {
         return _projects;
     }
 
+    @Override
+    public boolean hasNextPage( ) {
+        return _nextHref != null;
+    }
+
     @VisibleForTesting
     public void addProject( final Project project ) {
         _projects.add( project );
     }
+
+    @VisibleForTesting
+    public void setNextHref( final String nextHref ) {
+        _nextHref = nextHref;
+    }
 }
@@ -24,6 +24,8 @@ import com.google.gson.annotations.SerializedName;
  */
 public final class QueueBuild {
 
+    public static final String FIELDS = "buildTypeId";
+
     @SerializedName("buildTypeId")
     private String _buildTypeId;
 
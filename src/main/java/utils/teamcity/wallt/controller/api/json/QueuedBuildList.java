@@ -17,6 +17,7 @@ package utils.teamcity.wallt.controller.api.json;
 
 import com.google.common.collect.Lists;
 import com.google.gson.annotations.SerializedName;
+import utils.teamcity.wallt.controller.api.ApiFields;
 import utils.teamcity.wallt.controller.api.ApiResponse;
 
 import java.util.List;
@@ -26,6 +27,7 @@ import java.util.List;
  *
  * @author Cedric Longo
  */
+@ApiFields( "build(" + QueueBuild.FIELDS + ")" )
 public final class QueuedBuildList implements ApiResponse {
 
     @SerializedName("build")
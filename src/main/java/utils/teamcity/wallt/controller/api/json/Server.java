@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api.json;
+
+import com.google.common.primitives.Ints;
+import com.google.gson.annotations.SerializedName;
+import utils.teamcity.wallt.controller.api.ApiFields;
+import utils.teamcity.wallt.controller.api.ApiResponse;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+@ApiFields( "version,versionMajor,versionMinor" )
+public final class Server implements ApiResponse {
+
+    @SerializedName("version")
+    private String _version;
+
+    @SerializedName("versionMajor")
+    private int _versionMajor;
+
+    @SerializedName("versionMinor")
+    private int _versionMinor;
+
+    public String getVersion( ) {
+        return _version;
+    }
+
+    /**
+     * @return Major version, read from version label when server does not give it, e.g. 7 for "7.1.5 (build 24400)"
+     */
+    public int getVersionMajor( ) {
+        return _versionMajor > 0 ? _versionMajor : parseVersionLabel( 0 );
+    }
+
+    public int getVersionMinor( ) {
+        return _versionMajor > 0 ? _versionMinor : parseVersionLabel( 1 );
+    }
+
+    private int parseVersionLabel( final int index ) {
+        if ( _version == null )
+            return 0;
+        final String[] numbers = _version.trim( ).split( "[^0-9]+" );
+        final Integer number = index < numbers.length ? Ints.tryParse( numbers[index] ) : null;
+        return number == null ? 0 : number;
+    }
+
+    public Server( ) {
+    }
+
+    public Server( final String version, final int versionMajor, final int versionMinor ) {
+        _version = version;
+        _versionMajor = versionMajor;
+        _versionMinor = versionMinor;
+    }
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api.json;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public final class WebHookBuild {
+
+    public static final String BUILD_ADDED_TO_QUEUE = "buildAddedToQueue";
+    public static final String BUILD_REMOVED_FROM_QUEUE = "buildRemovedFromQueue";
+    public static final String BUILD_STARTED = "buildStarted";
+    public static final String BUILD_FINISHED = "buildFinished";
+    public static final String BUILD_INTERRUPTED = "buildInterrupted";
+
+    @SerializedName("notifyType")
+    private String _notifyType;
+
+    @SerializedName("buildTypeId")
+    private String _buildTypeId;
+
+    @SerializedName("buildId")
+    private String _buildId;
+
+    @SerializedName("buildResult")
+    private String _buildResult;
+
+    public String getNotifyType( ) {
+        return _notifyType;
+    }
+
+    public String getBuildTypeId( ) {
+        return _buildTypeId;
+    }
+
+    public String getBuildId( ) {
+        return _buildId;
+    }
+
+    public String getBuildResult( ) {
+        return _buildResult;
+    }
+
+    public WebHookBuild( ) {
+    }
+
+    public WebHookBuild( final String notifyType, final String buildTypeId, final String buildId, final String buildResult ) {
+        _notifyType = notifyType;
+        _buildTypeId = buildTypeId;
+        _buildId = buildId;
+        _buildResult = buildResult;
+    }
+}
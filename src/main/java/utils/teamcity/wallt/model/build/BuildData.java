@@ -65,4 +65,22 @@ public final class BuildData {
     public Duration getTimeLeft( ) {
         return _timeLeft;
     }
+
+    /**
+     * @return Time left estimated once elapsed time has passed since this data was retrieved, negative when build is overdue
+     */
+    public Duration getTimeLeft( final Duration elapsed ) {
+        return _timeLeft.minus( elapsed );
+    }
+
+    /**
+     * @return Percentage complete estimated once elapsed time has passed since this data was retrieved,
+     * assuming remaining work goes on at a steady pace until estimated end
+     */
+    public int getPercentageComplete( final Duration elapsed ) {
+        if ( _state != BuildState.running || _timeLeft.isNegative( ) || _timeLeft.isZero( ) )
+            return _percentageComplete;
+        final double progress = Math.min( 1, (double) elapsed.toMillis( ) / _timeLeft.toMillis( ) );
+        return Math.max( _percentageComplete, (int) ( _percentageComplete + ( 100 - _percentageComplete ) * progress ) );
+    }
 }
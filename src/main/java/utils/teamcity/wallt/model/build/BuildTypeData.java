@@ -20,6 +20,7 @@ import com.google.common.collect.Lists;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -37,9 +38,9 @@ public final class BuildTypeData {
     private final LinkedList<BuildData> _lastBuilds = Lists.newLinkedList( );
 
     private final String _id;
-    private final String _name;
-    private final String _projectId;
-    private final String _projectName;
+    private String _name;
+    private String _projectId;
+    private String _projectName;
 
     private String _aliasName;
 
@@ -56,18 +57,32 @@ public final class BuildTypeData {
         return _id;
     }
 
-    public String getName( ) {
+    public synchronized String getName( ) {
         return _name;
     }
 
-    public String getProjectName( ) {
+    public synchronized String getProjectName( ) {
         return _projectName;
     }
 
-    public String getProjectId( ) {
+    public synchronized String getProjectId( ) {
         return _projectId;
     }
 
+    /**
+     * Takes name and project of same build type as seen on server, so that its cached builds are kept
+     *
+     * @return true if build type was renamed or moved to another project
+     */
+    synchronized boolean updateTopology( final BuildTypeData serverData ) {
+        if ( Objects.equals( _name, serverData.getName( ) ) && Objects.equals( _projectId, serverData.getProjectId( ) ) && Objects.equals( _projectName, serverData.getProjectName( ) ) )
+            return false;
+        _name = serverData.getName( );
+        _projectId = serverData.getProjectId( );
+        _projectName = serverData.getProjectName( );
+        return true;
+    }
+
     public String getAliasName( ) {
         return _aliasName;
     }
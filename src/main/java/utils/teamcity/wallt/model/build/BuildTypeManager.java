@@ -17,12 +17,17 @@ package utils.teamcity.wallt.model.build;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import utils.teamcity.wallt.model.configuration.Configuration;
 import utils.teamcity.wallt.model.configuration.SavedBuildTypeData;
 
 import javax.inject.Inject;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static java.lang.Math.min;
@@ -36,6 +41,7 @@ final class BuildTypeManager implements IBuildTypeManager {
 
     private final List<BuildTypeData> _buildTypes = Lists.newArrayList( );
     private final List<BuildTypeData> _monitoredBuildTypes = Lists.newArrayList( );
+    private final Map<String, BuildTypeData> _buildTypesById = Maps.newHashMap( );
 
     @Inject
     BuildTypeManager( final Configuration configuration ) {
@@ -45,6 +51,7 @@ final class BuildTypeManager implements IBuildTypeManager {
             _buildTypes.add( data );
             activateMonitoring( data );
         }
+        indexBuildTypes( );
     }
 
     @Override
@@ -56,6 +63,7 @@ final class BuildTypeManager implements IBuildTypeManager {
         _monitoredBuildTypes.clear( );
 
         _buildTypes.addAll( typeList );
+        indexBuildTypes( );
 
         final List<BuildTypeData> monitoredBuildTypes = _buildTypes.stream( )
                 .filter( ( t ) -> previousMonitoredIds.contains( t.getId( ) ) )
@@ -72,6 +80,55 @@ final class BuildTypeManager implements IBuildTypeManager {
         _monitoredBuildTypes.addAll( monitoredBuildTypes );
     }
 
+    @Override
+    public synchronized TopologyChange synchronizeBuildTypes( final List<BuildTypeData> typeList ) {
+        return applyTopology( typeList, true );
+    }
+
+    @Override
+    public synchronized TopologyChange mergeBuildTypes( final List<BuildTypeData> typeList ) {
+        return applyTopology( typeList, false );
+    }
+
+    private TopologyChange applyTopology( final List<BuildTypeData> typeList, final boolean removeMissing ) {
+        final Map<String, BuildTypeData> registeredById = _buildTypes.stream( )
+                .collect( Collectors.toMap( BuildTypeData::getId, Function.identity( ), ( bt1, bt2 ) -> bt1, Maps::newLinkedHashMap ) );
+        final List<BuildTypeData> synchronizedBuildTypes = Lists.newArrayList( );
+        final List<BuildTypeData> addedBuildTypes = Lists.newArrayList( );
+        final List<String> renamedIds = Lists.newArrayList( );
+        final Set<String> seenIds = Sets.newHashSet( );
+
+        for ( final BuildTypeData serverData : typeList ) {
+            // Pages of a list may overlap when server changes while they are requested
+            if ( !seenIds.add( serverData.getId( ) ) )
+                continue;
+            final BuildTypeData registered = registeredById.remove( serverData.getId( ) );
+            if ( registered == null ) {
+                synchronizedBuildTypes.add( serverData );
+                addedBuildTypes.add( serverData );
+                continue;
+            }
+            if ( registered.updateTopology( serverData ) )
+                renamedIds.add( registered.getId( ) );
+            synchronizedBuildTypes.add( registered );
+        }
+
+        final List<String> addedIds = addedBuildTypes.stream( ).map( BuildTypeData::getId ).collect( Collectors.toList( ) );
+        if ( !removeMissing ) {
+            // Registered ones keep their place, new ones are appended
+            _buildTypes.addAll( addedBuildTypes );
+            indexBuildTypes( );
+            return new TopologyChange( addedIds, ImmutableList.<String>of( ), renamedIds );
+        }
+
+        _buildTypes.clear( );
+        _buildTypes.addAll( synchronizedBuildTypes );
+        indexBuildTypes( );
+        _monitoredBuildTypes.removeAll( registeredById.values( ) );
+
+        return new TopologyChange( addedIds, registeredById.keySet( ), renamedIds );
+    }
+
     @Override
     public List<BuildTypeData> registerBuildTypesInQueue( final Set<String> buildTypesIdInQueue ) {
         final List<BuildTypeData> modifiedQueuedStatusBuilds = Lists.newLinkedList( );
@@ -116,6 +173,20 @@ final class BuildTypeManager implements IBuildTypeManager {
         return ImmutableList.copyOf( _buildTypes );
     }
 
+    @Override
+    public synchronized Optional<BuildTypeData> getBuildType( final String id ) {
+        return Optional.ofNullable( _buildTypesById.get( id ) );
+    }
+
+    /**
+     * Build types are looked up by id for each pushed build event, which must not depend on how many build types server has
+     */
+    private void indexBuildTypes( ) {
+        _buildTypesById.clear( );
+        for ( final BuildTypeData buildType : _buildTypes )
+            _buildTypesById.putIfAbsent( buildType.getId( ), buildType );
+    }
+
     @Override
     public synchronized List<BuildTypeData> getMonitoredBuildTypes( ) {
         return ImmutableList.copyOf( _monitoredBuildTypes );
@@ -17,6 +17,7 @@ package utils.teamcity.wallt.model.build;
 
 
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -28,8 +29,26 @@ public interface IBuildTypeManager {
 
     void registerBuildTypes( List<BuildTypeData> typeList );
 
+    /**
+     * Applies differences between registered build types and those of server, keeping registered instances with their builds
+     *
+     * @param typeList Build types as seen on server
+     * @return Build types which were added, removed, renamed or moved
+     */
+    TopologyChange synchronizeBuildTypes( List<BuildTypeData> typeList );
+
+    /**
+     * Same as {@link #synchronizeBuildTypes(List)}, except registered build types which are not in list are kept
+     *
+     * @param typeList Part of build types as seen on server
+     * @return Build types which were added, renamed or moved
+     */
+    TopologyChange mergeBuildTypes( List<BuildTypeData> typeList );
+
     List<BuildTypeData> getBuildTypes( );
 
+    Optional<BuildTypeData> getBuildType( String id );
+
     List<BuildTypeData> getMonitoredBuildTypes( );
 
     void activateMonitoring( BuildTypeData buildTypeData );
@@ -27,6 +27,22 @@ public interface IProjectManager {
 
     void registerProjects( List<ProjectData> projects );
 
+    /**
+     * Applies differences between registered projects and those of server, keeping registered instances with their build types
+     *
+     * @param projects Projects as seen on server
+     * @return Projects which were added, removed, renamed or moved
+     */
+    TopologyChange synchronizeProjects( List<ProjectData> projects );
+
+    /**
+     * Same as {@link #synchronizeProjects(List)}, except registered projects which are not in list are kept
+     *
+     * @param projects Part of projects as seen on server
+     * @return Projects which were added, renamed or moved
+     */
+    TopologyChange mergeProjects( List<ProjectData> projects );
+
     List<ProjectData> getProjects( );
 
     List<ProjectData> getMonitoredProjects( );
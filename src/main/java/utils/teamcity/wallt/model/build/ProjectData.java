@@ -19,6 +19,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
@@ -33,8 +34,8 @@ import static java.util.Arrays.asList;
 public final class ProjectData {
 
     private final String _id;
-    private final String _name;
-    private final Optional<String> _parentId;
+    private String _name;
+    private Optional<String> _parentId;
 
     private final List<BuildTypeData> _buildTypes = Lists.newArrayList( );
     private String _aliasName;
@@ -49,14 +50,27 @@ public final class ProjectData {
         return _id;
     }
 
-    public String getName( ) {
+    public synchronized String getName( ) {
         return _name;
     }
 
-    public Optional<String> getParentId( ) {
+    public synchronized Optional<String> getParentId( ) {
         return _parentId;
     }
 
+    /**
+     * Takes name and parent of same project as seen on server, so that its build types are kept
+     *
+     * @return true if project was renamed or moved to another parent
+     */
+    synchronized boolean updateTopology( final ProjectData serverData ) {
+        if ( Objects.equals( _name, serverData.getName( ) ) && _parentId.equals( serverData.getParentId( ) ) )
+            return false;
+        _name = serverData.getName( );
+        _parentId = serverData.getParentId( );
+        return true;
+    }
+
     public String getAliasName( ) {
         return _aliasName;
     }
@@ -70,6 +84,10 @@ public final class ProjectData {
         _buildTypes.add( buildTypeData );
     }
 
+    public synchronized void unregisterBuildType( final String buildTypeId ) {
+        _buildTypes.removeIf( bt -> bt.getId( ).equals( buildTypeId ) );
+    }
+
     public synchronized List<BuildTypeData> getBuildTypes( ) {
         return ImmutableList.copyOf( _buildTypes );
     }
@@ -17,12 +17,17 @@ package utils.teamcity.wallt.model.build;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import utils.teamcity.wallt.model.configuration.Configuration;
 import utils.teamcity.wallt.model.configuration.SavedProjectData;
 
 import javax.inject.Inject;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static java.lang.Math.min;
@@ -72,6 +77,52 @@ final class ProjectManager implements IProjectManager {
         _monitoredProjects.addAll( monitoredBuildTypes );
     }
 
+    @Override
+    public synchronized TopologyChange synchronizeProjects( final List<ProjectData> projects ) {
+        return applyTopology( projects, true );
+    }
+
+    @Override
+    public synchronized TopologyChange mergeProjects( final List<ProjectData> projects ) {
+        return applyTopology( projects, false );
+    }
+
+    private TopologyChange applyTopology( final List<ProjectData> projects, final boolean removeMissing ) {
+        final Map<String, ProjectData> registeredById = _projects.stream( )
+                .collect( Collectors.toMap( ProjectData::getId, Function.identity( ), ( p1, p2 ) -> p1, Maps::newLinkedHashMap ) );
+        final List<ProjectData> synchronizedProjects = Lists.newArrayList( );
+        final List<ProjectData> addedProjects = Lists.newArrayList( );
+        final List<String> renamedIds = Lists.newArrayList( );
+        final Set<String> seenIds = Sets.newHashSet( );
+
+        for ( final ProjectData serverData : projects ) {
+            // Pages of a list may overlap when server changes while they are requested
+            if ( !seenIds.add( serverData.getId( ) ) )
+                continue;
+            final ProjectData registered = registeredById.remove( serverData.getId( ) );
+            if ( registered == null ) {
+                synchronizedProjects.add( serverData );
+                addedProjects.add( serverData );
+                continue;
+            }
+            if ( registered.updateTopology( serverData ) )
+                renamedIds.add( registered.getId( ) );
+            synchronizedProjects.add( registered );
+        }
+
+        final List<String> addedIds = addedProjects.stream( ).map( ProjectData::getId ).collect( Collectors.toList( ) );
+        if ( !removeMissing ) {
+            // Registered ones keep their place, new ones are appended
+            _projects.addAll( addedProjects );
+            return new TopologyChange( addedIds, ImmutableList.<String>of( ), renamedIds );
+        }
+
+        _projects.clear( );
+        _projects.addAll( synchronizedProjects );
+        _monitoredProjects.removeAll( registeredById.values( ) );
+
+        return new TopologyChange( addedIds, registeredById.keySet( ), renamedIds );
+    }
 
     @Override
     public synchronized List<ProjectData> getProjects( ) {
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.model.build;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Ids of items added, removed, renamed or moved by a topology synchronization.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public final class TopologyChange {
+
+    private final List<String> _addedIds;
+    private final List<String> _removedIds;
+    private final List<String> _renamedIds;
+
+    public TopologyChange( final Collection<String> addedIds, final Collection<String> removedIds, final Collection<String> renamedIds ) {
+        _addedIds = ImmutableList.copyOf( addedIds );
+        _removedIds = ImmutableList.copyOf( removedIds );
+        _renamedIds = ImmutableList.copyOf( renamedIds );
+    }
+
+    public List<String> getAddedIds( ) {
+        return _addedIds;
+    }
+
+    public List<String> getRemovedIds( ) {
+        return _removedIds;
+    }
+
+    public List<String> getRenamedIds( ) {
+        return _renamedIds;
+    }
+
+    public boolean isEmpty( ) {
+        return _addedIds.isEmpty( ) && _removedIds.isEmpty( ) && _renamedIds.isEmpty( );
+    }
+
+    @Override
+    public String toString( ) {
+        return "+" + _addedIds.size( ) + " -" + _removedIds.size( ) + " ~" + _renamedIds.size( );
+    }
+}
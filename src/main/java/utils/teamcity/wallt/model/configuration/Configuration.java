@@ -19,6 +19,8 @@ import com.google.common.collect.Lists;
 import com.google.gson.annotations.SerializedName;
 import javafx.scene.text.FontWeight;
 import utils.teamcity.wallt.controller.api.ApiVersion;
+import utils.teamcity.wallt.controller.api.HttpTransport;
+import utils.teamcity.wallt.controller.api.PollingStrategy;
 
 import java.util.List;
 
@@ -53,9 +55,45 @@ public final class Configuration {
     @SerializedName("server.credentials.password")
     private String _credentialsPassword;
 
+    @SerializedName("server.credentials.token")
+    private String _credentialsToken;
+
     @SerializedName("api.version")
     private ApiVersion _apiVersion = ApiVersion.API_8_0;
 
+    @SerializedName("api.version.auto")
+    private boolean _autoDetectApiVersion = true;
+
+    @SerializedName("api.max.parallel.requests")
+    private int _maxParallelRequests = 8;
+
+    @SerializedName("api.max.requests.per.second")
+    private int _maxRequestsPerSecond = 20;
+
+    @SerializedName("api.max.concurrent.requests")
+    private int _maxConcurrentRequests = 10;
+
+    @SerializedName("api.max.interactive.requests")
+    private int _maxInteractiveRequests = 4;
+
+    @SerializedName("api.http.transport")
+    private HttpTransport _httpTransport = HttpTransport.NING;
+
+    @SerializedName("api.polling.strategy")
+    private PollingStrategy _pollingStrategy = PollingStrategy.LAST_BUILD_STATUS;
+
+    @SerializedName("api.hedged.requests")
+    private boolean _hedgedRequests;
+
+    @SerializedName("api.push.port")
+    private int _pushPort;
+
+    @SerializedName("api.push.address")
+    private String _pushAddress = "127.0.0.1";
+
+    @SerializedName("api.push.secret")
+    private String _pushSecret;
+
     @SerializedName("pref.max.tiles.by.column")
     private int _maxTilesByColumn = 4;
 
@@ -116,6 +154,14 @@ public final class Configuration {
         _credentialsPassword = credentialsPassword;
     }
 
+    public String getCredentialsToken( ) {
+        return _credentialsToken;
+    }
+
+    public void setCredentialsToken( final String credentialsToken ) {
+        _credentialsToken = credentialsToken;
+    }
+
     public List<SavedBuildTypeData> getSavedBuildTypes( ) {
         return _savedBuilds;
     }
@@ -148,6 +194,94 @@ public final class Configuration {
         _apiVersion = apiVersion;
     }
 
+    public boolean isAutoDetectApiVersion( ) {
+        return _autoDetectApiVersion;
+    }
+
+    public void setAutoDetectApiVersion( final boolean autoDetectApiVersion ) {
+        _autoDetectApiVersion = autoDetectApiVersion;
+    }
+
+    public int getMaxParallelRequests( ) {
+        return _maxParallelRequests;
+    }
+
+    public void setMaxParallelRequests( final int maxParallelRequests ) {
+        _maxParallelRequests = maxParallelRequests;
+    }
+
+    public int getMaxRequestsPerSecond( ) {
+        return _maxRequestsPerSecond;
+    }
+
+    public void setMaxRequestsPerSecond( final int maxRequestsPerSecond ) {
+        _maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    public int getMaxConcurrentRequests( ) {
+        return _maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests( final int maxConcurrentRequests ) {
+        _maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public int getMaxInteractiveRequests( ) {
+        return _maxInteractiveRequests;
+    }
+
+    public void setMaxInteractiveRequests( final int maxInteractiveRequests ) {
+        _maxInteractiveRequests = maxInteractiveRequests;
+    }
+
+    public HttpTransport getHttpTransport( ) {
+        return _httpTransport;
+    }
+
+    public void setHttpTransport( final HttpTransport httpTransport ) {
+        _httpTransport = httpTransport;
+    }
+
+    public PollingStrategy getPollingStrategy( ) {
+        return _pollingStrategy;
+    }
+
+    public void setPollingStrategy( final PollingStrategy pollingStrategy ) {
+        _pollingStrategy = pollingStrategy;
+    }
+
+    public boolean isHedgedRequests( ) {
+        return _hedgedRequests;
+    }
+
+    public void setHedgedRequests( final boolean hedgedRequests ) {
+        _hedgedRequests = hedgedRequests;
+    }
+
+    public int getPushPort( ) {
+        return _pushPort;
+    }
+
+    public void setPushPort( final int pushPort ) {
+        _pushPort = pushPort;
+    }
+
+    public String getPushAddress( ) {
+        return _pushAddress;
+    }
+
+    public void setPushAddress( final String pushAddress ) {
+        _pushAddress = pushAddress;
+    }
+
+    public String getPushSecret( ) {
+        return _pushSecret;
+    }
+
+    public void setPushSecret( final String pushSecret ) {
+        _pushSecret = pushSecret;
+    }
+
     public int getMaxTilesByRow( ) {
         return _maxTilesByRow;
     }
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.model.event;
+
+import utils.teamcity.wallt.model.build.TopologyChange;
+
+/**
+ * Posted when background topology synchronization found projects or build types added, removed, renamed or moved on server.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public final class TopologyChangeEvent {
+
+    private final TopologyChange _projectChange;
+    private final TopologyChange _buildTypeChange;
+
+    public TopologyChangeEvent( final TopologyChange projectChange, final TopologyChange buildTypeChange ) {
+        _projectChange = projectChange;
+        _buildTypeChange = buildTypeChange;
+    }
+
+    public TopologyChange getProjectChange( ) {
+        return _projectChange;
+    }
+
+    public TopologyChange getBuildTypeChange( ) {
+        return _buildTypeChange;
+    }
+
+    public boolean hasRemoval( ) {
+        return !_projectChange.getRemovedIds( ).isEmpty( ) || !_buildTypeChange.getRemovedIds( ).isEmpty( );
+    }
+
+    @Override
+    public String toString( ) {
+        return "projects " + _projectChange + ", build types " + _buildTypeChange;
+    }
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.model.event;
+
+import com.google.common.collect.ImmutableList;
+import utils.teamcity.wallt.model.build.BuildTypeData;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Posted each time wall displays a screen, with build types shown on it and on the screen displayed next.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public final class WallScreenEvent {
+
+    private final List<BuildTypeData> _displayedBuildTypes;
+    private final List<BuildTypeData> _nextBuildTypes;
+    private final Duration _nextScreenDelay;
+
+    public WallScreenEvent( final Collection<BuildTypeData> displayedBuildTypes, final Collection<BuildTypeData> nextBuildTypes, final Duration nextScreenDelay ) {
+        _displayedBuildTypes = ImmutableList.copyOf( displayedBuildTypes );
+        _nextBuildTypes = ImmutableList.copyOf( nextBuildTypes );
+        _nextScreenDelay = nextScreenDelay;
+    }
+
+    public List<BuildTypeData> getDisplayedBuildTypes( ) {
+        return _displayedBuildTypes;
+    }
+
+    public List<BuildTypeData> getNextBuildTypes( ) {
+        return _nextBuildTypes;
+    }
+
+    public Duration getNextScreenDelay( ) {
+        return _nextScreenDelay;
+    }
+}
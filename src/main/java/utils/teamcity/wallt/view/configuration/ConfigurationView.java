@@ -200,8 +200,16 @@ final class ConfigurationView extends BorderPane {
         } );
         apiVersionBox.getSelectionModel( ).select( _model.getApiVersion() );
         apiVersionBox.getSelectionModel( ).selectedItemProperty().addListener( ( o, oldValue, newValue ) -> _model.requestNewApiVersion( newValue ) );
+        _model.apiVersionProperty( ).addListener( ( o, oldValue, newValue ) -> apiVersionBox.getSelectionModel( ).select( newValue ) );
         lineLabel.setLabelFor( apiVersionBox );
-        parent.add( apiVersionBox, 1, 2 );
+
+        final CheckBox autoDetectCheckbox = new CheckBox( "Detect" );
+        autoDetectCheckbox.selectedProperty( ).bindBidirectional( _model.autoDetectApiVersionProperty( ) );
+        apiVersionBox.disableProperty( ).bind( autoDetectCheckbox.selectedProperty( ) );
+
+        final HBox apiVersionPane = new HBox( 10, apiVersionBox, autoDetectCheckbox );
+        apiVersionPane.setAlignment( Pos.CENTER_LEFT );
+        parent.add( apiVersionPane, 1, 2 );
     }
 
 
@@ -15,11 +15,13 @@
 
 package utils.teamcity.wallt.view.configuration;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Ordering;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import javafx.application.Platform;
 import javafx.beans.property.*;
@@ -30,16 +32,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import utils.teamcity.wallt.controller.api.ApiVersion;
 import utils.teamcity.wallt.controller.api.IApiController;
+import utils.teamcity.wallt.controller.api.PollingStrategy;
 import utils.teamcity.wallt.controller.configuration.IConfigurationController;
 import utils.teamcity.wallt.model.build.IBuildTypeManager;
 import utils.teamcity.wallt.model.build.IProjectManager;
 import utils.teamcity.wallt.model.configuration.Configuration;
 import utils.teamcity.wallt.model.event.SceneEvent;
+import utils.teamcity.wallt.model.event.TopologyChangeEvent;
 import utils.teamcity.wallt.model.logger.Loggers;
 import utils.teamcity.wallt.view.wall.WallScene;
 
 import javax.inject.Inject;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import static com.google.common.util.concurrent.Futures.addCallback;
@@ -57,6 +62,8 @@ final class ConfigurationViewModel {
     public static final Logger LOGGER = LoggerFactory.getLogger( Loggers.MAIN );
 
     private final BooleanProperty _proxyUse = new SimpleBooleanProperty( );
+    private final BooleanProperty _autoDetectApiVersion = new SimpleBooleanProperty( );
+    private final ObjectProperty<ApiVersion> _apiVersion = new SimpleObjectProperty<>( );
     private final StringProperty _proxyServerUrl = new SimpleStringProperty( );
     private final StringProperty _proxyServerPort = new SimpleStringProperty( );
     private final StringProperty _proxyCredentialsUser = new SimpleStringProperty( );
@@ -83,9 +90,13 @@ final class ConfigurationViewModel {
 
     private final ObservableList<BuildTypeViewModel> _buildTypes = FXCollections.observableArrayList( );
     private final ObservableList<ProjectViewModel> _project = FXCollections.observableArrayList( );
+    private final AtomicBoolean _buildTypeListUpdatePending = new AtomicBoolean( );
+    private final AtomicBoolean _projectListUpdatePending = new AtomicBoolean( );
 
     private final Configuration _configuration;
     private final IApiController _apiController;
+    private final IProjectManager _projectManager;
+    private final IBuildTypeManager _buildManager;
     private final BuildTypeViewModel.Factory _buildTypeViewModelFactory;
     private final ProjectViewModel.Factory _projectViewModelFactory;
     private final IConfigurationController _configurationController;
@@ -96,10 +107,20 @@ final class ConfigurationViewModel {
         _configuration = configuration;
         _eventBus = eventBus;
         _apiController = apiController;
+        _projectManager = projectManager;
+        _buildManager = buildManager;
         _buildTypeViewModelFactory = buildTypeViewModelFactory;
         _projectViewModelFactory = projectViewModelFactory;
         _configurationController = configurationController;
 
+        _autoDetectApiVersion.setValue( _configuration.isAutoDetectApiVersion( ) );
+        _autoDetectApiVersion.addListener( ( o, oldValue, newValue ) -> {
+            invalidateConnectInformation( );
+            configuration.setAutoDetectApiVersion( newValue );
+        } );
+
+        _apiVersion.setValue( _configuration.getApiVersion( ) );
+
         _proxyUse.setValue( _configuration.isUseProxy( ) );
         _proxyUse.addListener( ( o, oldValue, newValue ) -> {
             invalidateConnectInformation();
@@ -186,6 +207,14 @@ final class ConfigurationViewModel {
         _loadingFailure.setValue( true );
     }
 
+    BooleanProperty autoDetectApiVersionProperty( ) {
+        return _autoDetectApiVersion;
+    }
+
+    ObjectProperty<ApiVersion> apiVersionProperty( ) {
+        return _apiVersion;
+    }
+
     BooleanProperty proxyUseProperty( ) {
         return _proxyUse;
     }
@@ -287,10 +316,38 @@ final class ConfigurationViewModel {
         _loadingFailure.setValue( true );
         _loadingInformation.setValue( "Trying to connect..." );
 
-        final ListenableFuture<Void> loadProjectsFuture = _apiController.loadProjectList( );
-        final ListenableFuture<Void> loadBuildTypesfuture = transform( loadProjectsFuture, (AsyncFunction<Void, Void>) input -> _apiController.loadBuildTypeList( ) );
+        // Api version has to be known before anything else is requested
+        final ListenableFuture<?> detectApiVersionFuture = _configuration.isAutoDetectApiVersion( ) ? detectApiVersion( ) : Futures.immediateFuture( null );
+        // Projects and build types are loaded concurrently, and shown as soon as each of their pages is received
+        final ListenableFuture<Void> loadFuture = transform( detectApiVersionFuture, (AsyncFunction<Object, Void>) input ->
+                transform( Futures.allAsList( ImmutableList.of( _apiController.loadProjectList( ), _apiController.loadBuildTypeList( ) ) ), (AsyncFunction<List<Void>, Void>) loaded -> Futures.immediateFuture( null ) ) );
+
+        addCallback( loadFuture, loadingSuccessfulCallback( ) );
+    }
+
+    /**
+     * Shown while loading, as lists may take a while to be received from large servers
+     */
+    private void updateLoadingProgress( ) {
+        if ( !_loading.get( ) )
+            return;
+        _loadingInformation.setValue( "Loading... " + _project.size( ) + " projects, " + _buildTypes.size( ) + " build types" );
+    }
 
-        addCallback( loadBuildTypesfuture, loadingSuccessfulCallback( ) );
+    private ListenableFuture<ApiVersion> detectApiVersion( ) {
+        final ListenableFuture<ApiVersion> future = _apiController.detectApiVersion( );
+        addCallback( future, new FutureCallback<ApiVersion>( ) {
+            @Override
+            public void onSuccess( final ApiVersion result ) {
+                Platform.runLater( ( ) -> _apiVersion.setValue( result ) );
+            }
+
+            @Override
+            public void onFailure( final Throwable t ) {
+                // Reported as a connection failure
+            }
+        } );
+        return future;
     }
 
     private FutureCallback<Void> loadingSuccessfulCallback( ) {
@@ -318,7 +375,11 @@ final class ConfigurationViewModel {
 
     @Subscribe
     public void updateBuildTypeList( final IBuildTypeManager buildManager ) {
+        // Updates which come faster than they are displayed are merged
+        if ( !_buildTypeListUpdatePending.compareAndSet( false, true ) )
+            return;
         Platform.runLater( ( ) -> {
+            _buildTypeListUpdatePending.set( false );
             final List<BuildTypeViewModel> viewModels = buildManager.getBuildTypes( ).stream( )
                     .map( _buildTypeViewModelFactory::fromBuildTypeData )
                     .collect( Collectors.toList( ) );
@@ -329,13 +390,17 @@ final class ConfigurationViewModel {
                             .compound( comparing( ( BuildTypeViewModel value ) -> value.getName( ) ) );
 
             _buildTypes.setAll( ordering.sortedCopy( viewModels ) );
+            updateLoadingProgress( );
         } );
     }
 
 
     @Subscribe
     public void updateProjectList( final IProjectManager projectManager ) {
+        if ( !_projectListUpdatePending.compareAndSet( false, true ) )
+            return;
         Platform.runLater( ( ) -> {
+            _projectListUpdatePending.set( false );
             final List<ProjectViewModel> viewModels = projectManager.getProjects( ).stream( )
                     .map( _projectViewModelFactory::fromProjectData )
                     .collect( Collectors.toList( ) );
@@ -345,9 +410,16 @@ final class ConfigurationViewModel {
                             .compound( comparing( ( ProjectViewModel value ) -> value.getName( ) ) );
 
             _project.setAll( ordering.sortedCopy( viewModels ) );
+            updateLoadingProgress( );
         } );
     }
 
+    @Subscribe
+    public void updateTopology( final TopologyChangeEvent event ) {
+        updateProjectList( _projectManager );
+        updateBuildTypeList( _buildManager );
+    }
+
     public void requestSwithToWallScene( ) {
         _configurationController.saveConfiguration( );
         _eventBus.post( _configuration );
@@ -359,8 +431,13 @@ final class ConfigurationViewModel {
     }
 
     public void requestNewApiVersion( final ApiVersion newValue ) {
+        // Selection also follows detected version
+        if ( newValue == null || newValue == _configuration.getApiVersion( ) )
+            return;
         LOGGER.info( "Switching to api version: " + newValue );
         _configuration.setApiVersion( newValue );
+        _configuration.setPollingStrategy( PollingStrategy.cheapestFor( newValue ) );
+        _apiVersion.setValue( newValue );
     }
 
     @Inject
@@ -23,12 +23,15 @@ import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.scene.layout.Background;
 import utils.teamcity.wallt.model.build.BuildStatus;
+import utils.teamcity.wallt.model.build.BuildTypeData;
 import utils.teamcity.wallt.model.build.IProjectManager;
 import utils.teamcity.wallt.model.build.ProjectData;
 import utils.teamcity.wallt.model.configuration.Configuration;
 
 import javax.inject.Inject;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Date: 22/02/14
@@ -117,6 +120,15 @@ final class ProjectTileViewModel {
                 .build( );
     }
 
+    /**
+     * @return Build types which status is summarized by this tile
+     */
+    List<BuildTypeData> getBuildTypes( ) {
+        return getAllInterestingProjects( ).stream( )
+                .flatMap( project -> project.getBuildTypes( ).stream( ) )
+                .collect( Collectors.toList( ) );
+    }
+
     String getDisplayedName( ) {
         return _displayedName.get( );
     }
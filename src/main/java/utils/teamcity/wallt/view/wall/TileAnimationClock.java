@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.view.wall;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.util.Duration;
+
+import javax.inject.Inject;
+import java.time.Instant;
+
+/**
+ * Ticks every second on JavaFX thread, so that all tiles animate their progress between two status checks at the same pace.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class TileAnimationClock {
+
+    private static final Duration TICK = Duration.seconds( 1 );
+
+    private final ObjectProperty<Instant> _tick = new SimpleObjectProperty<>( Instant.now( ) );
+
+    @Inject
+    TileAnimationClock( ) {
+        final Timeline timeline = new Timeline( new KeyFrame( TICK, event -> _tick.set( Instant.now( ) ) ) );
+        timeline.setCycleCount( Animation.INDEFINITE );
+        timeline.play( );
+    }
+
+    Instant instant( ) {
+        return Instant.now( );
+    }
+
+    ReadOnlyObjectProperty<Instant> tickProperty( ) {
+        return _tick;
+    }
+}
@@ -20,6 +20,8 @@ import com.google.common.eventbus.Subscribe;
 import com.google.inject.assistedinject.Assisted;
 import javafx.application.Platform;
 import javafx.beans.property.*;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.WeakChangeListener;
 import javafx.scene.image.Image;
 import javafx.scene.layout.Background;
 import javafx.scene.text.FontWeight;
@@ -30,6 +32,7 @@ import utils.teamcity.wallt.model.configuration.Configuration;
 
 import javax.inject.Inject;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -61,14 +64,24 @@ final class TileViewModel {
 
     private final ViewConfig _viewConfig;
 
+    private final TileAnimationClock _animationClock;
+    // Kept as long as this model lives, clock only holds a weak reference to it
+    private final ChangeListener<Instant> _animationListener = ( observable, oldValue, newValue ) -> interpolateProgress( newValue );
+
+    // Running build progress was last retrieved from server at sync time, following fields are only accessed from JavaFX thread
+    private Optional<BuildData> _syncedBuild = Optional.empty( );
+    private Instant _syncTime = Instant.MIN;
+
     interface Factory {
         TileViewModel forBuildTypeData( final ViewConfig viewConfig,  final BuildTypeData buildTypeData );
     }
 
     @Inject
-    TileViewModel( final Configuration configuration, @Assisted final ViewConfig viewConfig, @Assisted final BuildTypeData buildTypeData ) {
+    TileViewModel( final Configuration configuration, final TileAnimationClock animationClock, @Assisted final ViewConfig viewConfig, @Assisted final BuildTypeData buildTypeData ) {
         _buildTypeData = buildTypeData;
         _viewConfig = viewConfig;
+        _animationClock = animationClock;
+        _animationClock.tickProperty( ).addListener( new WeakChangeListener<>( _animationListener ) );
         updateConfiguration( configuration );
         updateTileViewModel( buildTypeData );
     }
@@ -89,8 +102,7 @@ final class TileViewModel {
             _queued.setValue( data.isQueued( ) );
 
             updateLastFinishedDate( );
-            updateTimeLeft( );
-            updatePercentageComplete( );
+            syncProgress( );
             updateBackground( );
             updateIcon( );
         } );
@@ -106,9 +118,29 @@ final class TileViewModel {
     }
 
 
-    private void updateTimeLeft( ) {
-        final Optional<BuildData> lastBuild = _buildTypeData.getOldestBuild( BuildState.running );
-        _timeLeft.setValue( lastBuild.isPresent() ? lastBuild.get().getTimeLeft() : Duration.ZERO );
+    private void syncProgress( ) {
+        final Optional<BuildData> lastBuildRunning = _buildTypeData.getOldestBuild( BuildState.running );
+        if ( !lastBuildRunning.isPresent( ) ) {
+            _syncedBuild = Optional.empty( );
+            _timeLeft.setValue( Duration.ZERO );
+            return;
+        }
+
+        // A new build data is registered each time status is retrieved from server
+        if ( _syncedBuild.orElse( null ) != lastBuildRunning.get( ) ) {
+            _syncedBuild = lastBuildRunning;
+            _syncTime = _animationClock.instant( );
+        }
+        interpolateProgress( _animationClock.instant( ) );
+    }
+
+    private void interpolateProgress( final Instant now ) {
+        if ( !_syncedBuild.isPresent( ) )
+            return;
+
+        final Duration elapsed = now.isAfter( _syncTime ) ? Duration.between( _syncTime, now ) : Duration.ZERO;
+        _timeLeft.setValue( _syncedBuild.get( ).getTimeLeft( elapsed ) );
+        _percentageComplete.setValue( _syncedBuild.get( ).getPercentageComplete( elapsed ) );
     }
 
     private void updateLastFinishedDate( ) {
@@ -117,12 +149,6 @@ final class TileViewModel {
             _lastFinishedDate.setValue( lastBuild.get( ).getFinishedDate( ).get( ) );
     }
 
-    private void updatePercentageComplete( ) {
-        final Optional<BuildData> lastBuildRunning = _buildTypeData.getOldestBuild( BuildState.running );
-        if ( lastBuildRunning.isPresent( ) )
-            _percentageComplete.setValue( lastBuildRunning.get().getPercentageComplete() );
-    }
-
     private void updateBackground( ) {
         final Optional<BuildData> lastBuildFinished = _buildTypeData.getLastBuild( BuildState.finished );
         if ( !lastBuildFinished.isPresent( ) ) {
@@ -15,9 +15,11 @@
 
 package utils.teamcity.wallt.view.wall;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.eventbus.EventBus;
 import javafx.application.Platform;
 import javafx.collections.ListChangeListener;
 import javafx.geometry.Insets;
@@ -26,9 +28,12 @@ import javafx.scene.Node;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
+import utils.teamcity.wallt.model.build.BuildTypeData;
+import utils.teamcity.wallt.model.event.WallScreenEvent;
 
 import javax.inject.Inject;
 import javax.swing.text.View;
+import java.time.Duration;
 import java.util.*;
 
 import static com.google.common.collect.Iterables.size;
@@ -42,16 +47,21 @@ import static java.lang.Math.max;
 final class WallView extends StackPane {
 
     public static final int GAP_SPACE = 5;
+    static final Duration SCREEN_DELAY = Duration.ofSeconds( 10 );
 
     private final WallViewModel _model;
     private final Map<Class<?>, WallViewModule.TileViewProvider> _nodeFromModelFactory;
+    private final EventBus _eventBus;
 
     private Node _currentDisplayedScreen;
+    // Screen -> models of tiles it displays
+    private final Map<Node, List<Object>> _screenModels = Maps.newIdentityHashMap( );
 
     @Inject
-    WallView( final WallViewModel model, final Map<Class<?>, WallViewModule.TileViewProvider> nodeFromModelFactory ) {
+    WallView( final WallViewModel model, final Map<Class<?>, WallViewModule.TileViewProvider> nodeFromModelFactory, final EventBus eventBus ) {
         _model = model;
         _nodeFromModelFactory = nodeFromModelFactory;
+        _eventBus = eventBus;
         setStyle( "-fx-background-color:black;" );
 
         _model.getDisplayedBuilds( ).addListener( (ListChangeListener<TileViewModel>) c -> updateLayout() );
@@ -72,7 +82,7 @@ final class WallView extends StackPane {
             public void run( ) {
                 Platform.runLater( ( ) -> displayNextScreen( ) );
             }
-        }, 10000, 10000 );
+        }, SCREEN_DELAY.toMillis( ), SCREEN_DELAY.toMillis( ) );
     }
 
     private void bindViewConfig(final ViewConfig config) {
@@ -96,10 +106,26 @@ final class WallView extends StackPane {
             previousScreen.setVisible( false );
 
         _currentDisplayedScreen = nextScreen;
+
+        // Lets monitoring refresh build types of next screen before it is displayed, and check hidden ones less often
+        final Node screenAfter = getChildren( ).get( ( nextIndex + 1 ) % getChildren( ).size( ) );
+        _eventBus.post( new WallScreenEvent( getBuildTypes( nextScreen ), getBuildTypes( screenAfter ), SCREEN_DELAY ) );
+    }
+
+    private List<BuildTypeData> getBuildTypes( final Node screen ) {
+        final ImmutableList.Builder<BuildTypeData> buildTypes = ImmutableList.builder( );
+        for ( final Object model : _screenModels.getOrDefault( screen, Collections.emptyList( ) ) ) {
+            if ( model instanceof TileViewModel )
+                buildTypes.add( ( (TileViewModel) model ).getBuildTypeData( ) );
+            else if ( model instanceof ProjectTileViewModel )
+                buildTypes.addAll( ( (ProjectTileViewModel) model ).getBuildTypes( ) );
+        }
+        return buildTypes.build( );
     }
 
     private void updateLayout( ) {
         getChildren( ).clear( );
+        _screenModels.clear( );
 
         final Collection<TileViewModel> builds = _model.getDisplayedBuilds( );
         final Collection<ProjectTileViewModel> projects = _model.getDisplayedProjects( );
@@ -151,6 +177,7 @@ final class WallView extends StackPane {
                     final GridPane screenPane = buildProjectScreenPane( project, buildsInScreen, nbColumns, byColumns );
                     screenPane.setVisible( false );
                     getChildren( ).add( screenPane );
+                    _screenModels.put( screenPane, buildsInScreen );
                 }
             }
         }
@@ -160,6 +187,7 @@ final class WallView extends StackPane {
                 final GridPane screenPane = buildScreenPane( buildsInScreen, nbColumns, byColumns );
                 screenPane.setVisible( false );
                 getChildren( ).add( screenPane );
+                _screenModels.put( screenPane, buildsInScreen );
             }
         }
     }
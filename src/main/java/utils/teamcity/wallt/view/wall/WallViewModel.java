@@ -29,6 +29,7 @@ import utils.teamcity.wallt.model.build.IBuildTypeManager;
 import utils.teamcity.wallt.model.build.IProjectManager;
 import utils.teamcity.wallt.model.build.ProjectData;
 import utils.teamcity.wallt.model.configuration.Configuration;
+import utils.teamcity.wallt.model.event.TopologyChangeEvent;
 
 import javax.inject.Inject;
 import java.util.List;
@@ -42,6 +43,8 @@ import java.util.stream.Collectors;
 final class WallViewModel {
 
     private final EventBus _eventBus;
+    private final IBuildTypeManager _buildManager;
+    private final IProjectManager _projectManager;
     private final TileViewModel.Factory _tileViewModeFactory;
     private final ProjectTileViewModel.Factory _projectTileViewModeFactory;
 
@@ -60,6 +63,8 @@ final class WallViewModel {
     @Inject
     WallViewModel( final EventBus eventBus, final Configuration configuration, final IBuildTypeManager buildManager, final IProjectManager projectManager, final TileViewModel.Factory tileViewModeFactory, final ProjectTileViewModel.Factory projectTileViewModeFactory ) {
         _eventBus = eventBus;
+        _buildManager = buildManager;
+        _projectManager = projectManager;
         _tileViewModeFactory = tileViewModeFactory;
         _projectTileViewModeFactory = projectTileViewModeFactory;
         updateConfiguration( configuration );
@@ -97,6 +102,17 @@ final class WallViewModel {
         } );
     }
 
+    /**
+     * Tiles of monitored projects and build types removed from server are dropped, renames are handled by tiles themselves
+     */
+    @Subscribe
+    public void updateTopology( final TopologyChangeEvent event ) {
+        if ( !event.hasRemoval( ) )
+            return;
+        updateBuildList( _buildManager );
+        updateProjectList( _projectManager );
+    }
+
     @Subscribe
     public void updateConfiguration( final Configuration configuration ) {
         Platform.runLater( ( ) -> {
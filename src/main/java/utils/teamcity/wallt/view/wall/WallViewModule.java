@@ -38,6 +38,7 @@ public final class WallViewModule extends AbstractModule {
         bind( WallScene.class ).in( Scopes.SINGLETON );
         bind( WallView.class ).in( Scopes.SINGLETON );
         bind( WallViewModel.class ).in( Scopes.SINGLETON );
+        bind( TileAnimationClock.class ).in( Scopes.SINGLETON );
 
         install( new FactoryModuleBuilder( )
                 .implement( TileViewModel.class, TileViewModel.class )
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Clock which only moves when test advances it. Clocks returned by withZone share its time.
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public final class TestClock extends Clock {
+
+    private final AtomicReference<Instant> _instant;
+    private final ZoneId _zone;
+
+    public TestClock( ) {
+        this( new AtomicReference<>( Instant.parse( "2026-10-18T10:00:00Z" ) ), ZoneOffset.UTC );
+    }
+
+    private TestClock( final AtomicReference<Instant> instant, final ZoneId zone ) {
+        _instant = instant;
+        _zone = zone;
+    }
+
+    public void advance( final Duration duration ) {
+        _instant.updateAndGet( instant -> instant.plus( duration ) );
+    }
+
+    @Override
+    public ZoneId getZone( ) {
+        return _zone;
+    }
+
+    @Override
+    public Clock withZone( final ZoneId zone ) {
+        return new TestClock( _instant, zone );
+    }
+
+    @Override
+    public Instant instant( ) {
+        return _instant.get( );
+    }
+}
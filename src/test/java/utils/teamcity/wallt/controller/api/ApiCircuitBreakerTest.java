@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiCircuitBreakerTest {
+
+    private final TestTicker _ticker = new TestTicker( );
+    // Random value in the middle gives no jitter
+    private final ApiCircuitBreaker _circuitBreaker = new ApiCircuitBreaker( _ticker, ( ) -> 0.5 );
+    private final AtomicInteger _sentRequestCount = new AtomicInteger( );
+
+    private ListenableFuture<Object> failingRequest( final String path, final Throwable t ) {
+        return _circuitBreaker.call( path, ( ) -> {
+            _sentRequestCount.incrementAndGet( );
+            return Futures.immediateFailedFuture( t );
+        } );
+    }
+
+    private ListenableFuture<Object> successfulRequest( final String path ) {
+        return _circuitBreaker.call( path, ( ) -> {
+            _sentRequestCount.incrementAndGet( );
+            return Futures.immediateFuture( new Object( ) );
+        } );
+    }
+
+    private void openCircuit( final String path ) {
+        for ( int i = 0; i < ApiCircuitBreaker.FAILURES_BEFORE_OPENING; i++ )
+            failingRequest( path, new TimeoutException( ) );
+    }
+
+    @Test
+    public void circuit_opens_after_consecutive_server_failures( ) throws Exception {
+        // Setup
+        // Exercise
+        openCircuit( "builds/id:1" );
+        // Verify
+        assertThat( _circuitBreaker.getState( ApiEndpoint.BUILDS ), is( ApiCircuitBreaker.State.OPEN ) );
+    }
+
+    @Test
+    public void circuit_does_not_open_on_client_errors( ) throws Exception {
+        // Setup
+        // Exercise
+        for ( int i = 0; i < ApiCircuitBreaker.FAILURES_BEFORE_OPENING; i++ )
+            failingRequest( "builds/id:1", new ApiException( "Not found", 404 ) );
+        // Verify
+        assertThat( _circuitBreaker.getState( ApiEndpoint.BUILDS ), is( ApiCircuitBreaker.State.CLOSED ) );
+    }
+
+    @Test
+    public void open_circuit_fails_requests_immediately_without_sending_them( ) throws Exception {
+        // Setup
+        openCircuit( "builds/id:1" );
+        _sentRequestCount.set( 0 );
+        // Exercise
+        final ListenableFuture<Object> future = successfulRequest( "builds/id:2" );
+        // Verify
+        assertThat( future.isDone( ), is( true ) );
+        assertThat( _sentRequestCount.get( ), is( 0 ) );
+        assertThat( _circuitBreaker.getRejectedCount( ), is( 1L ) );
+    }
+
+    @Test
+    public void rejected_request_fails_with_circuit_open_exception( ) throws Exception {
+        // Setup
+        openCircuit( "builds/id:1" );
+        // Exercise
+        final ListenableFuture<Object> future = successfulRequest( "builds/id:2" );
+        // Verify
+        try {
+            future.get( );
+            fail( );
+        } catch ( ExecutionException e ) {
+            assertThat( e.getCause( ), is( instanceOf( ApiCircuitOpenException.class ) ) );
+        }
+    }
+
+    @Test
+    public void open_circuit_does_not_affect_other_endpoints( ) throws Exception {
+        // Setup
+        openCircuit( "builds/id:1" );
+        _sentRequestCount.set( 0 );
+        // Exercise
+        successfulRequest( "buildQueue" );
+        // Verify
+        assertThat( _sentRequestCount.get( ), is( 1 ) );
+        assertThat( _circuitBreaker.getState( ApiEndpoint.BUILD_QUEUE ), is( ApiCircuitBreaker.State.CLOSED ) );
+    }
+
+    @Test
+    public void cancelled_requests_do_not_open_circuit( ) throws Exception {
+        // Setup
+        // Exercise
+        for ( int i = 0; i < ApiCircuitBreaker.FAILURES_BEFORE_OPENING; i++ )
+            failingRequest( "builds/id:1", new CancellationException( ) );
+        // Verify
+        assertThat( _circuitBreaker.getState( ApiEndpoint.BUILDS ), is( ApiCircuitBreaker.State.CLOSED ) );
+    }
+
+    @Test
+    public void cancelled_probe_lets_next_request_probe_again( ) throws Exception {
+        // Setup
+        openCircuit( "projects" );
+        _ticker.advance( ApiCircuitBreaker.MIN_PROBE_DELAY );
+        failingRequest( "projects", new CancellationException( ) );
+        _sentRequestCount.set( 0 );
+        // Exercise
+        successfulRequest( "projects" );
+        // Verify
+        assertThat( _sentRequestCount.get( ), is( 1 ) );
+        assertThat( _circuitBreaker.getState( ApiEndpoint.PROJECTS ), is( ApiCircuitBreaker.State.CLOSED ) );
+    }
+
+    @Test
+    public void successful_probe_closes_circuit( ) throws Exception {
+        // Setup
+        openCircuit( "projects" );
+        _ticker.advance( ApiCircuitBreaker.MIN_PROBE_DELAY );
+        // Exercise
+        successfulRequest( "projects" );
+        // Verify
+        assertThat( _circuitBreaker.getState( ApiEndpoint.PROJECTS ), is( ApiCircuitBreaker.State.CLOSED ) );
+    }
+
+    @Test
+    public void failed_probe_opens_circuit_for_twice_longer( ) throws Exception {
+        // Setup
+        openCircuit( "projects" );
+        _ticker.advance( ApiCircuitBreaker.MIN_PROBE_DELAY );
+        // Exercise
+        failingRequest( "projects", new TimeoutException( ) );
+        // Verify
+        assertThat( _circuitBreaker.getState( ApiEndpoint.PROJECTS ), is( ApiCircuitBreaker.State.OPEN ) );
+        _ticker.advance( ApiCircuitBreaker.MIN_PROBE_DELAY );
+        _sentRequestCount.set( 0 );
+        successfulRequest( "projects" );
+        assertThat( _sentRequestCount.get( ), is( 0 ) );
+        _ticker.advance( ApiCircuitBreaker.MIN_PROBE_DELAY );
+        successfulRequest( "projects" );
+        assertThat( _sentRequestCount.get( ), is( 1 ) );
+    }
+
+    @Test
+    public void half_open_circuit_sends_a_single_probe( ) throws Exception {
+        // Setup
+        openCircuit( "projects" );
+        _ticker.advance( ApiCircuitBreaker.MIN_PROBE_DELAY );
+        _sentRequestCount.set( 0 );
+        // Exercise
+        _circuitBreaker.call( "projects", ( ) -> {
+            _sentRequestCount.incrementAndGet( );
+            return SettableFuture.create( );
+        } );
+        successfulRequest( "projects" );
+        // Verify
+        assertThat( _circuitBreaker.getState( ApiEndpoint.PROJECTS ), is( ApiCircuitBreaker.State.HALF_OPEN ) );
+        assertThat( _sentRequestCount.get( ), is( 1 ) );
+    }
+
+    private static final class TestTicker extends Ticker {
+
+        private long _time;
+
+        void advance( final Duration duration ) {
+            _time += duration.toNanos( );
+        }
+
+        @Override
+        public long read( ) {
+            return _time;
+        }
+    }
+}
@@ -22,12 +22,14 @@ import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Module;
 import junit.framework.TestCase;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
 import utils.teamcity.wallt.TestConfigurationModule;
 import utils.teamcity.wallt.ThreadingModule;
 import utils.teamcity.wallt.WallApplication;
@@ -35,13 +37,17 @@ import utils.teamcity.wallt.controller.api.json.*;
 import utils.teamcity.wallt.controller.configuration.ConfigurationModule;
 import utils.teamcity.wallt.model.build.*;
 import utils.teamcity.wallt.model.configuration.Configuration;
+import utils.teamcity.wallt.model.event.TopologyChangeEvent;
 
 import javax.inject.Inject;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
 
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -124,7 +130,7 @@ public class ApiControllerTest {
         // Exercise
         _apiController.loadProjectList( );
         // Verify
-        verify( _mockRequestController ).sendRequest( getApiVersion( ), "projects", ProjectList.class );
+        verify( _mockRequestController ).sendRequest( getApiVersion( ), "projects", ProjectList.class, ApiRequestPriority.INTERACTIVE );
     }
 
     @Test
@@ -134,7 +140,7 @@ public class ApiControllerTest {
         projectList.addProject( new Project( "pId1", "pName", "pParentId" ) );
         projectList.addProject( new Project( "pId2", "pName", "pParentId" ) );
 
-        when( _mockRequestController.sendRequest( getApiVersion( ), "projects", ProjectList.class ) )
+        when( _mockRequestController.sendRequest( getApiVersion( ), "projects", ProjectList.class, ApiRequestPriority.INTERACTIVE ) )
                 .thenReturn( Futures.immediateFuture( projectList ) );
         // Exercise
         final ListenableFuture<Void> ackFuture = _apiController.loadProjectList( );
@@ -149,7 +155,7 @@ public class ApiControllerTest {
     @Test
     public void loadProjectList_callback_registers_exception_on_ack_future( ) throws Exception {
         // Setup
-        when( _mockRequestController.sendRequest( getApiVersion( ), "projects", ProjectList.class ) )
+        when( _mockRequestController.sendRequest( getApiVersion( ), "projects", ProjectList.class, ApiRequestPriority.INTERACTIVE ) )
                 .thenReturn( Futures.immediateFailedFuture( new RuntimeException( "Unexpected test exception" ) ) );
         // Exercise
         final ListenableFuture<Void> ackFuture = _apiController.loadProjectList( );
@@ -169,7 +175,7 @@ public class ApiControllerTest {
         // Exercise
         _apiController.loadBuildTypeList( );
         // Verify
-        verify( _mockRequestController ).sendRequest( getApiVersion( ), "buildTypes", BuildTypeList.class );
+        verify( _mockRequestController ).sendRequest( getApiVersion( ), "buildTypes", BuildTypeList.class, ApiRequestPriority.INTERACTIVE );
     }
 
     @Test
@@ -179,7 +185,7 @@ public class ApiControllerTest {
         buildTypelist.addBuildType( new BuildType( "bt1", "btName", "btProjectName", "btProjectId" ) );
         buildTypelist.addBuildType( new BuildType( "bt2", "btName", "btProjectName", "btProjectId" ) );
 
-        when( _mockRequestController.sendRequest( getApiVersion( ), "buildTypes", BuildTypeList.class ) )
+        when( _mockRequestController.sendRequest( getApiVersion( ), "buildTypes", BuildTypeList.class, ApiRequestPriority.INTERACTIVE ) )
                 .thenReturn( Futures.immediateFuture( buildTypelist ) );
         // Exercise
         final ListenableFuture<Void> ackFuture = _apiController.loadBuildTypeList( );
@@ -202,7 +208,7 @@ public class ApiControllerTest {
         final BuildTypeList buildTypelist = new BuildTypeList( );
         buildTypelist.addBuildType( new BuildType( "bt1", "btName", "pname", "p2" ) );
 
-        when( _mockRequestController.sendRequest( getApiVersion( ), "buildTypes", BuildTypeList.class ) )
+        when( _mockRequestController.sendRequest( getApiVersion( ), "buildTypes", BuildTypeList.class, ApiRequestPriority.INTERACTIVE ) )
                 .thenReturn( Futures.immediateFuture( buildTypelist ) );
         // Exercise
         _apiController.loadBuildTypeList( );
@@ -214,7 +220,7 @@ public class ApiControllerTest {
     @Test
     public void loadBuildTypeList_callback_registers_exception_on_ack_future( ) throws Exception {
         // Setup
-        when( _mockRequestController.sendRequest( getApiVersion( ), "buildTypes", BuildTypeList.class ) )
+        when( _mockRequestController.sendRequest( getApiVersion( ), "buildTypes", BuildTypeList.class, ApiRequestPriority.INTERACTIVE ) )
                 .thenReturn( Futures.immediateFailedFuture( new RuntimeException( "Unexpected test exception" ) ) );
         // Exercise
         final ListenableFuture<Void> ackFuture = _apiController.loadBuildTypeList( );
@@ -295,7 +301,21 @@ public class ApiControllerTest {
         // Exercise
         _apiController.requestLastBuildStatus( bt1 );
         // Verify
-        verify( _mockRequestController ).sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class );
+        verify( _mockRequestController ).sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE );
+    }
+
+    @Test
+    public void requestLastBuildStatus_cancels_outstanding_request_when_ack_future_is_cancelled( ) throws Exception {
+        // Setup
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pname", "pId" );
+        final SettableFuture<BuildList> request = SettableFuture.create( );
+        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( request );
+        final ListenableFuture<Void> ackFuture = _apiController.requestLastBuildStatus( bt1 );
+        // Exercise
+        ackFuture.cancel( true );
+        // Verify
+        assertThat( request.isCancelled( ), is( true ) );
     }
 
     @Test
@@ -303,7 +323,7 @@ public class ApiControllerTest {
         // Setup
         final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pname", "pId" );
 
-        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class ) )
+        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE ) )
                 .thenReturn( Futures.immediateFailedFuture( new RuntimeException( "Unexpected test exception" ) ) );
         // Exercise
         final ListenableFuture<Void> ackFuture = _apiController.requestLastBuildStatus( bt1 );
@@ -334,21 +354,21 @@ public class ApiControllerTest {
         buildList.addBuild( b12247 );
         buildList.addBuild( b12246 );
 
-        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class ) )
+        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE ) )
                 .thenReturn( Futures.immediateFuture( buildList ) );
 
-        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/id:12246", Build.class ) ).thenReturn( Futures.immediateFuture( b12246 ) );
-        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/id:12247", Build.class ) ).thenReturn( Futures.immediateFuture( b12247 ) );
-        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/id:12248", Build.class ) ).thenReturn( Futures.immediateFuture( b12248 ) );
-        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/id:12249", Build.class ) ).thenReturn( Futures.immediateFuture( b12249 ) );
+        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/id:12246", Build.class, ApiRequestPriority.VISIBLE ) ).thenReturn( Futures.immediateFuture( b12246 ) );
+        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/id:12247", Build.class, ApiRequestPriority.VISIBLE ) ).thenReturn( Futures.immediateFuture( b12247 ) );
+        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/id:12248", Build.class, ApiRequestPriority.VISIBLE ) ).thenReturn( Futures.immediateFuture( b12248 ) );
+        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/id:12249", Build.class, ApiRequestPriority.VISIBLE ) ).thenReturn( Futures.immediateFuture( b12249 ) );
         // Exercise
         _apiController.requestLastBuildStatus( bt1 );
         // Verify
-        verify( _mockRequestController ).sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class );
-        verify( _mockRequestController, atLeastOnce( ) ).sendRequest( getApiVersion( ), "builds/id:12249", Build.class );
-        verify( _mockRequestController, atLeastOnce( ) ).sendRequest( getApiVersion( ), "builds/id:12248", Build.class );
-        verify( _mockRequestController, atLeastOnce( ) ).sendRequest( getApiVersion( ), "builds/id:12247", Build.class );
-        verify( _mockRequestController, never( ) ).sendRequest( getApiVersion( ), "builds/id:12246", Build.class );
+        verify( _mockRequestController ).sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE );
+        verify( _mockRequestController, atLeastOnce( ) ).sendRequest( getApiVersion( ), "builds/id:12249", Build.class, ApiRequestPriority.VISIBLE );
+        verify( _mockRequestController, atLeastOnce( ) ).sendRequest( getApiVersion( ), "builds/id:12248", Build.class, ApiRequestPriority.VISIBLE );
+        verify( _mockRequestController, atLeastOnce( ) ).sendRequest( getApiVersion( ), "builds/id:12247", Build.class, ApiRequestPriority.VISIBLE );
+        verify( _mockRequestController, never( ) ).sendRequest( getApiVersion( ), "builds/id:12246", Build.class, ApiRequestPriority.VISIBLE );
     }
 
     @Test
@@ -362,13 +382,458 @@ public class ApiControllerTest {
         final Build b12246 = new Build( 12246, new BuildType( "bt1", "btname", "btprojectName", "btProjectid" ), BuildStatus.FAILURE, BuildState.finished, false );
         buildList.addBuild( b12246 );
 
-        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class ) )
+        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE ) )
                 .thenReturn( Futures.immediateFuture( buildList ) );
-        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/id:12246", Build.class ) ).thenReturn( Futures.immediateFuture( b12246 ) );
+        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/id:12246", Build.class, ApiRequestPriority.VISIBLE ) ).thenReturn( Futures.immediateFuture( b12246 ) );
         // Exercise
         _apiController.requestLastBuildStatus( bt1 );
         // Verify
         assertThat( bt1.getBuildById( 12246 ), is( notNullValue( ) ) );
     }
 
+    @Test
+    public void requestLastBuildStatus_for_several_build_types_starts_a_single_batch_request_when_supported_by_api( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pname", "pId" );
+        final BuildTypeData bt2 = new BuildTypeData( "bt2", "btName", "pname", "pId" );
+        // Exercise
+        _apiController.requestLastBuildStatus( ImmutableList.of( bt1, bt2 ) );
+        // Verify
+        verify( _mockRequestController ).sendRequest( ApiVersion.API_2017_2, ApiController.lastBuildStatusBatchPath( ImmutableList.of( bt1, bt2 ) ), BuildTypeList.class, ApiRequestPriority.VISIBLE );
+        verify( _mockRequestController, never( ) ).sendRequest( ApiVersion.API_2017_2, "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE );
+    }
+
+    @Test
+    public void requestLastBuildStatus_for_several_build_types_sends_batch_in_given_lane( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pname", "pId" );
+        // Exercise
+        _apiController.requestLastBuildStatus( ImmutableList.of( bt1 ), ApiRequestPriority.BACKGROUND );
+        // Verify
+        verify( _mockRequestController ).sendRequest( ApiVersion.API_2017_2, ApiController.lastBuildStatusBatchPath( ImmutableList.of( bt1 ) ), BuildTypeList.class, ApiRequestPriority.BACKGROUND );
+    }
+
+    @Test
+    public void requestLastBuildStatus_for_several_build_types_callback_records_builds_on_each_build_type( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pname", "pId" );
+        final BuildTypeData bt2 = new BuildTypeData( "bt2", "btName", "pname", "pId" );
+
+        final BuildType btype1 = new BuildType( "bt1", "btName", "pname", "pId" );
+        btype1.addBuild( new Build( 12246, null, BuildStatus.FAILURE, BuildState.finished, false ) );
+        final BuildType btype2 = new BuildType( "bt2", "btName", "pname", "pId" );
+        btype2.addBuild( new Build( 12248, null, BuildStatus.SUCCESS, BuildState.finished, false ) );
+        btype2.addBuild( new Build( 12247, null, BuildStatus.FAILURE, BuildState.finished, false ) );
+        final BuildTypeList buildTypeList = new BuildTypeList( );
+        buildTypeList.addBuildType( btype1 );
+        buildTypeList.addBuildType( btype2 );
+
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.lastBuildStatusBatchPath( ImmutableList.of( bt1, bt2 ) ), BuildTypeList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( buildTypeList ) );
+        // Exercise
+        final ListenableFuture<Void> ackFuture = _apiController.requestLastBuildStatus( ImmutableList.of( bt1, bt2 ) );
+        // Verify
+        assertThat( bt1.getBuildById( 12246 ).isPresent( ), is( true ) );
+        assertThat( bt2.getBuildById( 12247 ).isPresent( ), is( true ) );
+        assertThat( bt2.getLastBuild( BuildState.finished ).get( ).getStatus( ), is( BuildStatus.SUCCESS ) );
+        assertThat( _dispatchedObjects, hasItems( bt1, bt2 ) );
+        assertThat( ackFuture.isDone( ), is( true ) );
+    }
+
+    @Test
+    public void requestLastBuildStatus_for_several_build_types_splits_requests_by_batch( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        final List<BuildTypeData> buildTypes = Lists.newArrayList( );
+        for ( int i = 0; i < ApiController.MAX_BUILD_TYPES_BY_BATCH + 1; i++ )
+            buildTypes.add( new BuildTypeData( "bt" + i, "btName", "pname", "pId" ) );
+        // Exercise
+        _apiController.requestLastBuildStatus( buildTypes );
+        // Verify
+        verify( _mockRequestController ).sendRequest( ApiVersion.API_2017_2, ApiController.lastBuildStatusBatchPath( buildTypes.subList( 0, ApiController.MAX_BUILD_TYPES_BY_BATCH ) ), BuildTypeList.class, ApiRequestPriority.VISIBLE );
+        verify( _mockRequestController ).sendRequest( ApiVersion.API_2017_2, ApiController.lastBuildStatusBatchPath( buildTypes.subList( ApiController.MAX_BUILD_TYPES_BY_BATCH, buildTypes.size( ) ) ), BuildTypeList.class, ApiRequestPriority.VISIBLE );
+    }
+
+    @Test
+    public void requestLastBuildStatus_for_several_build_types_splits_rejected_batch_and_skips_unknown_build_type( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pId", "pname" );
+        final BuildTypeData bt2 = new BuildTypeData( "bt2", "btName", "pId", "pname" );
+        _buildTypeManager.registerBuildTypes( ImmutableList.of( bt1, bt2 ) );
+        _buildTypeManager.activateMonitoring( bt2 );
+
+        final BuildType btype1 = new BuildType( "bt1", "btName", "pname", "pId" );
+        btype1.addBuild( new Build( 12246, null, BuildStatus.FAILURE, BuildState.finished, false ) );
+        final BuildTypeList buildTypeList = new BuildTypeList( );
+        buildTypeList.addBuildType( btype1 );
+
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.lastBuildStatusBatchPath( ImmutableList.of( bt1, bt2 ) ), BuildTypeList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.<BuildTypeList>immediateFailedFuture( new ApiException( "Not found", 404 ) ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.lastBuildStatusBatchPath( ImmutableList.of( bt1 ) ), BuildTypeList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( buildTypeList ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.lastBuildStatusBatchPath( ImmutableList.of( bt2 ) ), BuildTypeList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.<BuildTypeList>immediateFailedFuture( new ApiException( "Not found", 404 ) ) );
+        // Exercise
+        final ListenableFuture<Void> ackFuture = _apiController.requestLastBuildStatus( ImmutableList.of( bt1, bt2 ) );
+        // Verify
+        assertThat( ackFuture.isDone( ), is( true ) );
+        ackFuture.get( );
+        assertThat( bt1.getBuildById( 12246 ).isPresent( ), is( true ) );
+        assertThat( _buildTypeManager.getBuildTypes( ), is( ImmutableList.of( bt1, bt2 ) ) );
+        assertThat( _buildTypeManager.getMonitoredBuildTypes( ).contains( bt2 ), is( true ) );
+    }
+
+    @Test
+    public void requestLastBuildStatus_for_several_build_types_requests_each_build_type_when_batch_is_not_supported_by_api( ) throws Exception {
+        // Setup
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pname", "pId" );
+        final BuildTypeData bt2 = new BuildTypeData( "bt2", "btName", "pname", "pId" );
+        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( new BuildList( ) ) );
+        when( _mockRequestController.sendRequest( getApiVersion( ), "builds/?locator=buildType:bt2,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( new BuildList( ) ) );
+        // Exercise
+        final ListenableFuture<Void> ackFuture = _apiController.requestLastBuildStatus( ImmutableList.of( bt1, bt2 ) );
+        // Verify
+        verify( _mockRequestController ).sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE );
+        verify( _mockRequestController ).sendRequest( getApiVersion( ), "builds/?locator=buildType:bt2,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE );
+        verify( _mockRequestController, never( ) ).sendRequest( eq( getApiVersion( ) ), anyString( ), eq( BuildTypeList.class ), Mockito.any( ApiRequestPriority.class ) );
+        assertThat( ackFuture.isDone( ), is( true ) );
+    }
+
+    @Test
+    public void requestBuildChanges_requests_each_build_type_when_change_feed_is_not_supported_by_api( ) throws Exception {
+        // Setup
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pname", "pId" );
+        // Exercise
+        _apiController.requestBuildChanges( ImmutableList.of( bt1 ) );
+        // Verify
+        verify( _mockRequestController ).sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE );
+    }
+
+    @Test
+    public void requestBuildChanges_requests_last_build_status_on_first_call( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pname", "pId" );
+        // Exercise
+        _apiController.requestBuildChanges( ImmutableList.of( bt1 ) );
+        // Verify
+        verify( _mockRequestController ).sendRequest( ApiVersion.API_2017_2, ApiController.lastBuildStatusBatchPath( ImmutableList.of( bt1 ) ), BuildTypeList.class, ApiRequestPriority.VISIBLE );
+        verify( _mockRequestController, never( ) ).sendRequest( eq( ApiVersion.API_2017_2 ), anyString( ), eq( BuildList.class ), Mockito.any( ApiRequestPriority.class ) );
+    }
+
+    @Test
+    public void requestBuildChanges_requests_builds_since_last_known_build_and_records_them_on_build_types( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pname", "pId" );
+        final BuildTypeData bt2 = new BuildTypeData( "bt2", "btName", "pname", "pId" );
+        bootstrapBuildChanges( bt1, 100 );
+
+        final BuildList changedBuilds = new BuildList( );
+        changedBuilds.addBuild( new Build( 102, new BuildType( "bt2", "btName", "pname", "pId" ), BuildStatus.SUCCESS, BuildState.finished, false ) );
+        changedBuilds.addBuild( new Build( 101, new BuildType( "bt1", "btName", "pname", "pId" ), BuildStatus.FAILURE, BuildState.finished, false ) );
+        changedBuilds.addBuild( new Build( 103, new BuildType( "other", "btName", "pname", "pId" ), BuildStatus.FAILURE, BuildState.finished, false ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.buildChangesPath( 100, 0 ), BuildList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( changedBuilds ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.runningBuildsPath( ), BuildList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( new BuildList( ) ) );
+        // Exercise
+        final ListenableFuture<Void> ackFuture = _apiController.requestBuildChanges( ImmutableList.of( bt1, bt2 ) );
+        // Verify
+        assertThat( bt1.getBuildById( 101 ).isPresent( ), is( true ) );
+        assertThat( bt2.getBuildById( 102 ).isPresent( ), is( true ) );
+        assertThat( _dispatchedObjects, hasItems( bt1, bt2 ) );
+        assertThat( ackFuture.isDone( ), is( true ) );
+        _apiController.requestBuildChanges( ImmutableList.of( bt1, bt2 ) );
+        verify( _mockRequestController ).sendRequest( ApiVersion.API_2017_2, ApiController.buildChangesPath( 103, 0 ), BuildList.class, ApiRequestPriority.VISIBLE );
+    }
+
+    @Test
+    public void requestBuildChanges_reads_feed_pages_until_one_is_not_full( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pname", "pId" );
+        bootstrapBuildChanges( bt1, 100 );
+
+        final BuildList fullPage = new BuildList( );
+        for ( int i = 0; i < ApiController.MAX_BUILDS_BY_CHANGE_FEED; i++ )
+            fullPage.addBuild( new Build( 300 - i, new BuildType( "bt1", "btName", "pname", "pId" ), BuildStatus.SUCCESS, BuildState.finished, false ) );
+        final BuildList lastPage = new BuildList( );
+        lastPage.addBuild( new Build( 101, new BuildType( "bt1", "btName", "pname", "pId" ), BuildStatus.FAILURE, BuildState.finished, false ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.buildChangesPath( 100, 0 ), BuildList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( fullPage ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.buildChangesPath( 100, ApiController.MAX_BUILDS_BY_CHANGE_FEED ), BuildList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( lastPage ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.runningBuildsPath( ), BuildList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( new BuildList( ) ) );
+        // Exercise
+        final ListenableFuture<Void> ackFuture = _apiController.requestBuildChanges( ImmutableList.of( bt1 ) );
+        // Verify
+        assertThat( ackFuture.isDone( ), is( true ) );
+        assertThat( bt1.getBuildById( 300 ).isPresent( ), is( true ) );
+        _apiController.requestBuildChanges( ImmutableList.of( bt1 ) );
+        verify( _mockRequestController ).sendRequest( ApiVersion.API_2017_2, ApiController.buildChangesPath( 300, 0 ), BuildList.class, ApiRequestPriority.VISIBLE );
+    }
+
+    @Test
+    public void requestBuildChanges_starts_feed_from_running_build_when_no_build_is_finished( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pname", "pId" );
+        bt1.registerBuild( new BuildData( 100, BuildStatus.SUCCESS, BuildState.running, 50, Optional.empty( ), Duration.ofMinutes( 1 ) ) );
+        final BuildTypeList buildTypeList = new BuildTypeList( );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.lastBuildStatusBatchPath( ImmutableList.of( bt1 ) ), BuildTypeList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( buildTypeList ) );
+        // Exercise
+        _apiController.requestBuildChanges( ImmutableList.of( bt1 ) );
+        _apiController.requestBuildChanges( ImmutableList.of( bt1 ) );
+        // Verify
+        verify( _mockRequestController ).sendRequest( ApiVersion.API_2017_2, ApiController.lastBuildStatusBatchPath( ImmutableList.of( bt1 ) ), BuildTypeList.class, ApiRequestPriority.VISIBLE );
+        verify( _mockRequestController ).sendRequest( ApiVersion.API_2017_2, ApiController.buildChangesPath( 100, 0 ), BuildList.class, ApiRequestPriority.VISIBLE );
+    }
+
+    @Test
+    public void requestBuildChanges_requests_running_build_which_is_not_running_anymore( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pname", "pId" );
+        bootstrapBuildChanges( bt1, 100 );
+        bt1.registerBuild( new BuildData( 99, BuildStatus.SUCCESS, BuildState.running, 50, Optional.empty( ), Duration.ofMinutes( 1 ) ) );
+
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.buildChangesPath( 100, 0 ), BuildList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( new BuildList( ) ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.runningBuildsPath( ), BuildList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( new BuildList( ) ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, "builds/id:99", Build.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( new Build( 99, null, BuildStatus.SUCCESS, BuildState.finished, false ) ) );
+        // Exercise
+        _apiController.requestBuildChanges( ImmutableList.of( bt1 ) );
+        // Verify
+        assertThat( bt1.getBuildById( 99 ).get( ).getState( ), is( BuildState.finished ) );
+    }
+
+    @Test
+    public void requestProjectStatus_starts_a_single_request_for_project_and_its_children( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        final ProjectData project = new ProjectData( "pId", "pname", Optional.empty( ) );
+        final ProjectData child = new ProjectData( "cId", "cname", Optional.of( "pId" ) );
+        _projectManager.registerProjects( ImmutableList.of( project, child ) );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pId", "pname" );
+        final BuildTypeData bt2 = new BuildTypeData( "bt2", "btName", "cId", "cname" );
+        project.registerBuildType( bt1 );
+        child.registerBuildType( bt2 );
+
+        final BuildTypeList buildTypeList = new BuildTypeList( );
+        final BuildType btype1 = new BuildType( "bt1", "btName", "pname", "pId" );
+        btype1.addBuild( new Build( 101, null, BuildStatus.SUCCESS, BuildState.finished, false ) );
+        final BuildType btype2 = new BuildType( "bt2", "btName", "cname", "cId" );
+        btype2.addBuild( new Build( 102, null, BuildStatus.FAILURE, BuildState.finished, false ) );
+        buildTypeList.addBuildType( btype1 );
+        buildTypeList.addBuildType( btype2 );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.projectStatusPath( project ), BuildTypeList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( buildTypeList ) );
+        // Exercise
+        final ListenableFuture<Void> ackFuture = _apiController.requestProjectStatus( project );
+        // Verify
+        assertThat( ackFuture.isDone( ), is( true ) );
+        assertThat( project.getBuildTypeCount( BuildStatus.SUCCESS ), is( 1 ) );
+        assertThat( child.getBuildTypeCount( BuildStatus.FAILURE ), is( 1 ) );
+        assertThat( _dispatchedObjects, hasItems( project, child ) );
+        verify( _mockRequestController, never( ) ).sendRequest( eq( ApiVersion.API_2017_2 ), anyString( ), eq( BuildList.class ), Mockito.any( ApiRequestPriority.class ) );
+    }
+
+    @Test
+    public void requestProjectStatus_requests_each_build_type_when_multiple_build_type_status_is_not_supported( ) throws Exception {
+        // Setup
+        final ProjectData project = new ProjectData( "pId", "pname", Optional.empty( ) );
+        _projectManager.registerProjects( ImmutableList.of( project ) );
+        project.registerBuildType( new BuildTypeData( "bt1", "btName", "pname", "pId" ) );
+        // Exercise
+        _apiController.requestProjectStatus( project );
+        // Verify
+        verify( _mockRequestController ).sendRequest( getApiVersion( ), "builds/?locator=buildType:bt1,running:any,count:" + ApiController.MAX_BUILDS_TO_CONSIDER, BuildList.class, ApiRequestPriority.VISIBLE );
+        verify( _mockRequestController, never( ) ).sendRequest( eq( getApiVersion( ) ), anyString( ), eq( BuildTypeList.class ), Mockito.any( ApiRequestPriority.class ) );
+    }
+
+    @Test
+    public void synchronizeTopology_applies_server_changes_and_dispatches_change_event( ) throws Exception {
+        // Setup
+        final ProjectData project = new ProjectData( "pId", "pname", Optional.empty( ) );
+        _projectManager.registerProjects( ImmutableList.of( project ) );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pId", "pname" );
+        final BuildTypeData bt2 = new BuildTypeData( "bt2", "btName", "pId", "pname" );
+        _buildTypeManager.registerBuildTypes( ImmutableList.of( bt1, bt2 ) );
+        project.registerBuildType( bt1 );
+        project.registerBuildType( bt2 );
+
+        final ProjectList projectList = new ProjectList( );
+        projectList.addProject( new Project( "pId", "pname", null ) );
+        final BuildTypeList buildTypeList = new BuildTypeList( );
+        buildTypeList.addBuildType( new BuildType( "bt1", "btNewName", "pname", "pId" ) );
+        buildTypeList.addBuildType( new BuildType( "bt3", "btName", "pname", "pId" ) );
+        when( _mockRequestController.sendRequest( getApiVersion( ), "projects", ProjectList.class, ApiRequestPriority.BACKGROUND ) )
+                .thenReturn( Futures.immediateFuture( projectList ) );
+        when( _mockRequestController.sendRequest( getApiVersion( ), "buildTypes", BuildTypeList.class, ApiRequestPriority.BACKGROUND ) )
+                .thenReturn( Futures.immediateFuture( buildTypeList ) );
+        // Exercise
+        final ListenableFuture<Void> ackFuture = _apiController.synchronizeTopology( );
+        // Verify
+        assertThat( ackFuture.isDone( ), is( true ) );
+        assertThat( _buildTypeManager.getBuildTypes( ).get( 0 ), is( sameInstance( bt1 ) ) );
+        assertThat( bt1.getName( ), is( "btNewName" ) );
+        assertThat( project.getBuildTypes( ).stream( ).map( BuildTypeData::getId ).collect( Collectors.toList( ) ), containsInAnyOrder( "bt1", "bt3" ) );
+        assertThat( _dispatchedObjects, hasItems( bt1, project ) );
+        assertThat( _dispatchedObjects.stream( ).anyMatch( o -> o instanceof TopologyChangeEvent ), is( true ) );
+    }
+
+    @Test
+    public void synchronizeTopology_does_not_dispatch_anything_when_topology_is_unchanged( ) throws Exception {
+        // Setup
+        _projectManager.registerProjects( ImmutableList.of( new ProjectData( "pId", "pname", Optional.empty( ) ) ) );
+        final ProjectList projectList = new ProjectList( );
+        projectList.addProject( new Project( "pId", "pname", null ) );
+        when( _mockRequestController.sendRequest( getApiVersion( ), "projects", ProjectList.class, ApiRequestPriority.BACKGROUND ) )
+                .thenReturn( Futures.immediateFuture( projectList ) );
+        when( _mockRequestController.sendRequest( getApiVersion( ), "buildTypes", BuildTypeList.class, ApiRequestPriority.BACKGROUND ) )
+                .thenReturn( Futures.immediateFuture( new BuildTypeList( ) ) );
+        // Exercise
+        _apiController.synchronizeTopology( );
+        // Verify
+        assertThat( _dispatchedObjects, is( empty( ) ) );
+    }
+
+    @Test
+    public void synchronizeTopology_requests_lists_by_pages_when_supported( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pId", "pname" );
+        _buildTypeManager.registerBuildTypes( ImmutableList.of( bt1, new BuildTypeData( "bt2", "btName", "pId", "pname" ) ) );
+        final ProjectList projectPage = new ProjectList( );
+        projectPage.addProject( new Project( "pId", "pname", null ) );
+        final BuildTypeList buildTypePage = new BuildTypeList( );
+        buildTypePage.addBuildType( new BuildType( "bt1", "btName", "pname", "pId" ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.pagedPath( "projects", 0 ), ProjectList.class, ApiRequestPriority.BACKGROUND ) )
+                .thenReturn( Futures.immediateFuture( projectPage ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.pagedPath( "buildTypes", 0 ), BuildTypeList.class, ApiRequestPriority.BACKGROUND ) )
+                .thenReturn( Futures.immediateFuture( buildTypePage ) );
+        // Exercise
+        final ListenableFuture<Void> ackFuture = _apiController.synchronizeTopology( );
+        // Verify
+        assertThat( ackFuture.isDone( ), is( true ) );
+        assertThat( _buildTypeManager.getBuildTypes( ), contains( bt1 ) );
+        verify( _mockRequestController, never( ) ).sendRequest( ApiVersion.API_2017_2, "buildTypes", BuildTypeList.class, ApiRequestPriority.BACKGROUND );
+    }
+
+    @Test
+    public void loadProjectList_requests_first_page_alone_then_pages_in_parallel_until_no_next_page( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        _configuration.setMaxParallelRequests( 2 );
+        final ProjectList fullPage = new ProjectList( );
+        for ( int i = 0; i < ApiController.DISCOVERY_PAGE_SIZE; i++ )
+            fullPage.addProject( new Project( "p" + i, "pName", null ) );
+        fullPage.setNextHref( "/app/rest/projects?locator=start:1000,count:1000" );
+        final ProjectList lastPage = new ProjectList( );
+        lastPage.addProject( new Project( "pLast", "pName", null ) );
+        stubProjectPage( 0, fullPage );
+        stubProjectPage( ApiController.DISCOVERY_PAGE_SIZE, fullPage );
+        stubProjectPage( 2 * ApiController.DISCOVERY_PAGE_SIZE, lastPage );
+        // Exercise
+        final ListenableFuture<Void> ackFuture = _apiController.loadProjectList( );
+        // Verify
+        assertThat( ackFuture.isDone( ), is( true ) );
+        assertThat( _projectManager.getProjects( ).size( ), is( ApiController.DISCOVERY_PAGE_SIZE + 1 ) );
+        assertThat( _projectManager.getProjects( ).get( ApiController.DISCOVERY_PAGE_SIZE ).getId( ), is( "pLast" ) );
+        verify( _mockRequestController, never( ) ).sendRequest( ApiVersion.API_2017_2, ApiController.pagedPath( "projects", 3 * ApiController.DISCOVERY_PAGE_SIZE ), ProjectList.class, ApiRequestPriority.INTERACTIVE );
+        // Once for each page, once for the whole list
+        assertThat( Collections.frequency( _dispatchedObjects, _projectManager ), is( 4 ) );
+    }
+
+    @Test
+    public void loadProjectList_sends_a_single_request_when_list_fits_in_first_page( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        _configuration.setMaxParallelRequests( 8 );
+        final ProjectList page = new ProjectList( );
+        page.addProject( new Project( "p1", "pName", null ) );
+        stubProjectPage( 0, page );
+        // Exercise
+        _apiController.loadProjectList( );
+        // Verify
+        assertThat( _projectManager.getProjects( ).size( ), is( 1 ) );
+        verify( _mockRequestController ).sendRequest( eq( ApiVersion.API_2017_2 ), anyString( ), eq( ProjectList.class ), Mockito.any( ApiRequestPriority.class ) );
+    }
+
+    @Test
+    public void loadBuildTypeList_pages_keep_build_types_data_and_join_projects_loaded_afterwards( ) throws Exception {
+        // Setup
+        _configuration.setApiVersion( ApiVersion.API_2017_2 );
+        _configuration.setMaxParallelRequests( 1 );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "pId", "pname" );
+        _buildTypeManager.registerBuildTypes( ImmutableList.of( bt1, new BuildTypeData( "bt2", "btName", "pId", "pname" ) ) );
+        final BuildTypeList page = new BuildTypeList( );
+        page.addBuildType( new BuildType( "bt1", "btName", "pname", "pId" ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.pagedPath( "buildTypes", 0 ), BuildTypeList.class, ApiRequestPriority.INTERACTIVE ) )
+                .thenReturn( Futures.immediateFuture( page ) );
+        final ProjectList projectPage = new ProjectList( );
+        projectPage.addProject( new Project( "pId", "pname", null ) );
+        stubProjectPage( 0, projectPage );
+        // Exercise
+        _apiController.loadBuildTypeList( );
+        _apiController.loadProjectList( );
+        // Verify
+        assertThat( _buildTypeManager.getBuildTypes( ), contains( bt1 ) );
+        assertThat( _projectManager.getProject( "pId" ).get( ).getBuildTypes( ), contains( bt1 ) );
+    }
+
+    private void stubProjectPage( final int start, final ProjectList page ) {
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.pagedPath( "projects", start ), ProjectList.class, ApiRequestPriority.INTERACTIVE ) )
+                .thenReturn( Futures.immediateFuture( page ) );
+    }
+
+    @Test
+    public void detectApiVersion_selects_version_and_polling_strategy_from_server( ) throws Exception {
+        // Setup
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, "server", Server.class, ApiRequestPriority.INTERACTIVE ) )
+                .thenReturn( Futures.immediateFuture( new Server( "2017.2 (build 1)", 2017, 2 ) ) );
+        // Exercise
+        final ListenableFuture<ApiVersion> future = _apiController.detectApiVersion( );
+        // Verify
+        assertThat( future.get( ), is( ApiVersion.API_2017_2 ) );
+        assertThat( _configuration.getApiVersion( ), is( ApiVersion.API_2017_2 ) );
+        assertThat( _configuration.getPollingStrategy( ), is( PollingStrategy.CHANGE_FEED ) );
+    }
+
+    @Test
+    public void detectApiVersion_falls_back_to_older_version_when_endpoint_is_not_found( ) throws Exception {
+        // Setup
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, "server", Server.class, ApiRequestPriority.INTERACTIVE ) )
+                .thenReturn( Futures.<Server>immediateFailedFuture( new ApiException( "Not found", 404 ) ) );
+        when( _mockRequestController.sendRequest( ApiVersion.API_8_1, "server", Server.class, ApiRequestPriority.INTERACTIVE ) )
+                .thenReturn( Futures.immediateFuture( new Server( "8.1.5 (build 30240)", 8, 1 ) ) );
+        // Exercise
+        final ListenableFuture<ApiVersion> future = _apiController.detectApiVersion( );
+        // Verify
+        assertThat( future.get( ), is( ApiVersion.API_8_1 ) );
+        assertThat( _configuration.getApiVersion( ), is( ApiVersion.API_8_1 ) );
+        assertThat( _configuration.getPollingStrategy( ), is( PollingStrategy.LAST_BUILD_STATUS ) );
+    }
+
+    private void bootstrapBuildChanges( final BuildTypeData buildType, final int lastBuildId ) {
+        final BuildType btype = new BuildType( buildType.getId( ), "btName", "pname", "pId" );
+        btype.addBuild( new Build( lastBuildId, null, BuildStatus.SUCCESS, BuildState.finished, false ) );
+        final BuildTypeList buildTypeList = new BuildTypeList( );
+        buildTypeList.addBuildType( btype );
+        when( _mockRequestController.sendRequest( ApiVersion.API_2017_2, ApiController.lastBuildStatusBatchPath( ImmutableList.of( buildType ) ), BuildTypeList.class, ApiRequestPriority.VISIBLE ) )
+                .thenReturn( Futures.immediateFuture( buildTypeList ) );
+        _apiController.requestBuildChanges( ImmutableList.of( buildType ) );
+    }
+
 }
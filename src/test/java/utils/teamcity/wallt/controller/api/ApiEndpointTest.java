@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiEndpointTest {
+
+    @Test
+    public void fromPath_returns_endpoint_of_first_path_segment( ) throws Exception {
+        // Setup
+        // Exercise
+        // Verify
+        assertThat( ApiEndpoint.fromPath( "projects" ), is( ApiEndpoint.PROJECTS ) );
+        assertThat( ApiEndpoint.fromPath( "buildTypes?locator=item:(id:bt1)" ), is( ApiEndpoint.BUILD_TYPES ) );
+        assertThat( ApiEndpoint.fromPath( "buildQueue" ), is( ApiEndpoint.BUILD_QUEUE ) );
+        assertThat( ApiEndpoint.fromPath( "builds/id:12" ), is( ApiEndpoint.BUILDS ) );
+        assertThat( ApiEndpoint.fromPath( "builds?locator=running:true" ), is( ApiEndpoint.BUILDS ) );
+    }
+
+    @Test
+    public void fromPath_returns_other_for_unknown_path( ) throws Exception {
+        // Setup
+        // Exercise
+        // Verify
+        assertThat( ApiEndpoint.fromPath( "server" ), is( ApiEndpoint.OTHER ) );
+        assertThat( ApiEndpoint.fromPath( "" ), is( ApiEndpoint.OTHER ) );
+    }
+}
@@ -35,4 +35,13 @@ public class ApiExceptionTest {
         // Verify
         assertThat( exception.getMessage( ), is( "Test Error Message" ) );
     }
+
+    @Test
+    public void status_code_is_set_on_exception( ) throws Exception {
+        // Setup
+        final ApiException exception = new ApiException( "Test Error Message", 503 );
+        // Exercise
+        // Verify
+        assertThat( exception.getStatusCode( ), is( 503 ) );
+    }
 }
@@ -77,6 +77,17 @@ public class ApiModuleTest {
         assertThat( instance, is( sameInstance( instance2 ) ) );
     }
 
+    @Test
+    public void can_inject_ApiPushListener_in_singleton( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiPushListener instance = _injector.getInstance( ApiPushListener.class );
+        final ApiPushListener instance2 = _injector.getInstance( ApiPushListener.class );
+        // Verify
+        assertThat( instance, is( notNullValue( ) ) );
+        assertThat( instance, is( sameInstance( instance2 ) ) );
+    }
+
     @Test
     public void can_inject_AsyncHttpClientConfig_in_singleton( ) throws Exception {
         // Setup
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.EventBus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import utils.teamcity.wallt.TestClock;
+import utils.teamcity.wallt.controller.api.json.WebHookBuild;
+import utils.teamcity.wallt.model.build.BuildData;
+import utils.teamcity.wallt.model.build.BuildState;
+import utils.teamcity.wallt.model.build.BuildStatus;
+import utils.teamcity.wallt.model.build.BuildTypeData;
+import utils.teamcity.wallt.model.build.IBuildTypeManager;
+import utils.teamcity.wallt.model.build.IProjectManager;
+import utils.teamcity.wallt.model.configuration.Configuration;
+
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiPushListenerTest {
+
+    private final Configuration _configuration = new Configuration( );
+    private final IBuildTypeManager _buildManager = mock( IBuildTypeManager.class );
+    private final IProjectManager _projectManager = mock( IProjectManager.class );
+    private final EventBus _eventBus = mock( EventBus.class );
+    private final TestClock _clock = new TestClock( );
+    private final List<BuildTypeData> _startedBuildTypes = Lists.newArrayList( );
+    private final BuildTypeData _buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+    private ApiPushListener _listener;
+
+    @Before
+    public void setUp( ) throws Exception {
+        when( _buildManager.getBuildType( Mockito.anyString( ) ) ).thenReturn( Optional.empty( ) );
+        when( _buildManager.getBuildType( "bt1" ) ).thenReturn( Optional.of( _buildType ) );
+        when( _projectManager.getProject( Mockito.anyString( ) ) ).thenReturn( Optional.empty( ) );
+        _configuration.setPushPort( PushEventBenchmark.freePort( ) );
+        _configuration.setPushSecret( PushEventBenchmark.SECRET );
+        _listener = new ApiPushListener( _configuration, _buildManager, _projectManager, _eventBus, _clock );
+        _listener.start( _startedBuildTypes::add );
+    }
+
+    @After
+    public void tearDown( ) {
+        _listener.stop( );
+    }
+
+    private String getUrl( ) {
+        return "http://127.0.0.1:" + _configuration.getPushPort( ) + ApiPushListener.PUSH_PATH;
+    }
+
+    @Test
+    public void listener_does_not_start_without_push_port( ) throws Exception {
+        // Setup
+        final Configuration configuration = new Configuration( );
+        final ApiPushListener listener = new ApiPushListener( configuration, _buildManager, _projectManager, _eventBus, _clock );
+        // Exercise
+        listener.start( buildType -> {
+        } );
+        // Verify
+        assertThat( listener.isListening( ), is( false ) );
+        assertThat( listener.isHealthy( ), is( false ) );
+    }
+
+    @Test
+    public void listener_does_not_start_without_push_secret( ) throws Exception {
+        // Setup
+        final Configuration configuration = new Configuration( );
+        configuration.setPushPort( PushEventBenchmark.freePort( ) );
+        final ApiPushListener listener = new ApiPushListener( configuration, _buildManager, _projectManager, _eventBus, _clock );
+        // Exercise
+        listener.start( buildType -> {
+        } );
+        // Verify
+        assertThat( listener.isListening( ), is( false ) );
+    }
+
+    @Test
+    public void started_build_is_registered_as_running( ) throws Exception {
+        // Setup
+        _buildType.setQueued( true );
+        // Exercise
+        _listener.apply( new WebHookBuild( WebHookBuild.BUILD_STARTED, "bt1", "42", "success" ) );
+        // Verify
+        final BuildData build = _buildType.getBuildById( 42 ).get( );
+        assertThat( build.getState( ), is( BuildState.running ) );
+        assertThat( build.getStatus( ), is( BuildStatus.SUCCESS ) );
+        assertThat( _buildType.isQueued( ), is( false ) );
+        assertThat( _startedBuildTypes, contains( _buildType ) );
+        verify( _eventBus ).post( _buildType );
+    }
+
+    @Test
+    public void started_build_does_not_replace_progress_known_from_polling( ) throws Exception {
+        // Setup
+        final BuildData polledBuild = new BuildData( 42, BuildStatus.SUCCESS, BuildState.running, 60, Optional.empty( ), Duration.ofMinutes( 2 ) );
+        _buildType.registerBuild( polledBuild );
+        // Exercise
+        _listener.apply( new WebHookBuild( WebHookBuild.BUILD_STARTED, "bt1", "42", "success" ) );
+        // Verify
+        assertThat( _buildType.getBuildById( 42 ).get( ), is( polledBuild ) );
+    }
+
+    @Test
+    public void finished_build_is_registered_with_its_result( ) throws Exception {
+        // Setup
+        _listener.apply( new WebHookBuild( WebHookBuild.BUILD_STARTED, "bt1", "42", "success" ) );
+        // Exercise
+        _listener.apply( new WebHookBuild( WebHookBuild.BUILD_FINISHED, "bt1", "42", "failure" ) );
+        // Verify
+        final BuildData build = _buildType.getBuildById( 42 ).get( );
+        assertThat( build.getState( ), is( BuildState.finished ) );
+        assertThat( build.getStatus( ), is( BuildStatus.FAILURE ) );
+        assertThat( build.getFinishedDate( ).isPresent( ), is( true ) );
+        assertThat( _buildType.hasRunningBuild( ), is( false ) );
+    }
+
+    @Test
+    public void queue_events_flag_build_type_as_queued( ) throws Exception {
+        // Setup
+        // Exercise
+        _listener.apply( new WebHookBuild( WebHookBuild.BUILD_ADDED_TO_QUEUE, "bt1", null, null ) );
+        // Verify
+        assertThat( _buildType.isQueued( ), is( true ) );
+        _listener.apply( new WebHookBuild( WebHookBuild.BUILD_REMOVED_FROM_QUEUE, "bt1", null, null ) );
+        assertThat( _buildType.isQueued( ), is( false ) );
+    }
+
+    @Test
+    public void event_of_unknown_build_type_is_ignored( ) throws Exception {
+        // Setup
+        // Exercise
+        _listener.apply( new WebHookBuild( WebHookBuild.BUILD_STARTED, "unknown", "42", "success" ) );
+        // Verify
+        assertThat( _listener.getAppliedCount( ), is( 0L ) );
+        assertThat( _startedBuildTypes, is( empty( ) ) );
+        verify( _eventBus, never( ) ).post( Mockito.any( ) );
+    }
+
+    @Test
+    public void push_is_healthy_while_events_keep_coming( ) throws Exception {
+        // Setup
+        assertThat( _listener.isHealthy( ), is( false ) );
+        // Exercise
+        _listener.apply( new WebHookBuild( "changesLoaded", "bt1", "42", "success" ) );
+        // Verify
+        assertThat( _listener.isHealthy( ), is( true ) );
+        _clock.advance( ApiPushListener.HEALTHY_PERIOD );
+        assertThat( _listener.isHealthy( ), is( false ) );
+    }
+
+    @Test
+    public void posted_event_is_accepted_and_applied( ) throws Exception {
+        // Setup
+        // Exercise
+        final int responseCode = PushEventBenchmark.post( getUrl( ), PushEventBenchmark.event( "buildStarted", "bt1", "42", "success" ) );
+        // Verify
+        assertThat( responseCode, is( HttpURLConnection.HTTP_ACCEPTED ) );
+        assertThat( _buildType.getBuildById( 42 ).isPresent( ), is( true ) );
+    }
+
+    @Test
+    public void event_with_secret_in_url_is_accepted( ) throws Exception {
+        // Setup
+        // Exercise
+        final int responseCode = PushEventBenchmark.post( getUrl( ) + "?" + ApiPushListener.PUSH_SECRET_PARAMETER + "=" + PushEventBenchmark.SECRET, null, PushEventBenchmark.event( "buildStarted", "bt1", "42", "success" ) );
+        // Verify
+        assertThat( responseCode, is( HttpURLConnection.HTTP_ACCEPTED ) );
+    }
+
+    @Test
+    public void event_without_right_secret_is_rejected_and_not_applied( ) throws Exception {
+        // Setup
+        // Exercise
+        final int noSecretCode = PushEventBenchmark.post( getUrl( ), null, PushEventBenchmark.event( "buildStarted", "bt1", "42", "success" ) );
+        final int wrongSecretCode = PushEventBenchmark.post( getUrl( ), "wrong", PushEventBenchmark.event( "buildStarted", "bt1", "42", "success" ) );
+        // Verify
+        assertThat( noSecretCode, is( HttpURLConnection.HTTP_UNAUTHORIZED ) );
+        assertThat( wrongSecretCode, is( HttpURLConnection.HTTP_UNAUTHORIZED ) );
+        assertThat( _buildType.getBuildById( 42 ).isPresent( ), is( false ) );
+        assertThat( _listener.getRejectedCount( ), is( 2L ) );
+        assertThat( _listener.isHealthy( ), is( false ) );
+    }
+
+    @Test
+    public void invalid_payload_is_rejected( ) throws Exception {
+        // Setup
+        // Exercise
+        final int responseCode = PushEventBenchmark.post( getUrl( ), "{\"build\":" );
+        // Verify
+        assertThat( responseCode, is( HttpURLConnection.HTTP_BAD_REQUEST ) );
+        assertThat( _listener.getRejectedCount( ), is( 1L ) );
+        assertThat( _listener.isHealthy( ), is( false ) );
+    }
+
+    @Test
+    public void burst_of_events_is_entirely_applied( ) throws Exception {
+        // Setup
+        final List<String> events = PushEventBenchmark.syntheticEvents( 2000, 1 );
+        // Exercise
+        final int accepted = PushEventBenchmark.post( getUrl( ), events, 16 );
+        // Verify
+        assertThat( accepted, is( 2000 ) );
+        assertThat( _listener.getReceivedCount( ), is( 2000L ) );
+        assertThat( _listener.getAppliedCount( ), is( 2000L ) );
+    }
+}
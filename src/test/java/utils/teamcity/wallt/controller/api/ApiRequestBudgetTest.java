@@ -0,0 +1,303 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import utils.teamcity.wallt.model.configuration.Configuration;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiRequestBudgetTest {
+
+    private final Configuration _configuration = new Configuration( );
+    private final ScheduledExecutorService _executorService = mock( ScheduledExecutorService.class );
+    private final TestTicker _ticker = new TestTicker( );
+    private final List<SettableFuture<Void>> _sentRequests = Lists.newArrayList( );
+    private ApiRequestBudget _budget;
+
+    @Before
+    public void setUp( ) throws Exception {
+        _configuration.setMaxRequestsPerSecond( 2 );
+        _configuration.setMaxConcurrentRequests( 10 );
+        _budget = new ApiRequestBudget( _configuration, _executorService, _ticker );
+    }
+
+    private ListenableFuture<Void> submitRequest( ) {
+        return _budget.submit( ( ) -> {
+            final SettableFuture<Void> future = SettableFuture.create( );
+            _sentRequests.add( future );
+            return future;
+        } );
+    }
+
+    private ListenableFuture<Void> submitRequest( final ApiRequestPriority priority, final List<SettableFuture<Void>> sentRequests ) {
+        return _budget.submit( priority, ( ) -> {
+            final SettableFuture<Void> future = SettableFuture.create( );
+            sentRequests.add( future );
+            return future;
+        } );
+    }
+
+    private void runScheduledDrain( ) {
+        final ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass( Runnable.class );
+        verify( _executorService, atLeastOnce( ) ).schedule( drain.capture( ), anyLong( ), eq( TimeUnit.NANOSECONDS ) );
+        drain.getValue( ).run( );
+    }
+
+    @Test
+    public void submit_sends_requests_within_budget_immediately( ) throws Exception {
+        // Setup
+        // Exercise
+        submitRequest( );
+        submitRequest( );
+        // Verify
+        assertThat( _sentRequests.size( ), is( 2 ) );
+        assertThat( _budget.getInFlightCount( ), is( 2 ) );
+    }
+
+    @Test
+    public void submit_defers_requests_beyond_rate_until_budget_is_refilled( ) throws Exception {
+        // Setup
+        submitRequest( );
+        submitRequest( );
+        // Exercise
+        submitRequest( );
+        // Verify
+        assertThat( _sentRequests.size( ), is( 2 ) );
+        assertThat( _budget.getPendingCount( ), is( 1 ) );
+        assertThat( _budget.isExhausted( ), is( true ) );
+        _ticker.advance( Duration.ofMillis( 500 ) );
+        runScheduledDrain( );
+        assertThat( _sentRequests.size( ), is( 3 ) );
+        assertThat( _budget.isExhausted( ), is( false ) );
+    }
+
+    @Test
+    public void submit_sends_no_more_than_max_concurrent_requests( ) throws Exception {
+        // Setup
+        _configuration.setMaxConcurrentRequests( 1 );
+        final ListenableFuture<Void> future = submitRequest( );
+        submitRequest( );
+        // Exercise
+        _ticker.advance( Duration.ofSeconds( 1 ) );
+        assertThat( _sentRequests.size( ), is( 1 ) );
+        _sentRequests.get( 0 ).set( null );
+        // Verify
+        assertThat( future.isDone( ), is( true ) );
+        assertThat( _sentRequests.size( ), is( 2 ) );
+    }
+
+    @Test
+    public void background_requests_use_half_of_max_concurrent_requests( ) throws Exception {
+        // Setup
+        _configuration.setMaxRequestsPerSecond( 100 );
+        _budget = new ApiRequestBudget( _configuration, _executorService, _ticker );
+        final List<SettableFuture<Void>> backgroundRequests = Lists.newArrayList( );
+        final List<SettableFuture<Void>> visibleRequests = Lists.newArrayList( );
+        // Exercise
+        for ( int i = 0; i < 10; i++ )
+            submitRequest( ApiRequestPriority.BACKGROUND, backgroundRequests );
+        for ( int i = 0; i < 10; i++ )
+            submitRequest( ApiRequestPriority.VISIBLE, visibleRequests );
+        // Verify
+        assertThat( backgroundRequests.size( ), is( 5 ) );
+        assertThat( visibleRequests.size( ), is( 5 ) );
+        assertThat( _budget.getInFlightCount( ApiRequestPriority.BACKGROUND ), is( 5 ) );
+        assertThat( _budget.getPendingCount( ApiRequestPriority.BACKGROUND ), is( 5 ) );
+        assertThat( _budget.getPendingCount( ApiRequestPriority.VISIBLE ), is( 5 ) );
+    }
+
+    @Test
+    public void pending_requests_of_higher_lane_are_sent_first( ) throws Exception {
+        // Setup
+        _configuration.setMaxRequestsPerSecond( 100 );
+        _configuration.setMaxConcurrentRequests( 2 );
+        _budget = new ApiRequestBudget( _configuration, _executorService, _ticker );
+        final List<SettableFuture<Void>> backgroundRequests = Lists.newArrayList( );
+        final List<SettableFuture<Void>> visibleRequests = Lists.newArrayList( );
+        submitRequest( ApiRequestPriority.VISIBLE, visibleRequests );
+        submitRequest( ApiRequestPriority.VISIBLE, visibleRequests );
+        submitRequest( ApiRequestPriority.BACKGROUND, backgroundRequests );
+        submitRequest( ApiRequestPriority.VISIBLE, visibleRequests );
+        // Exercise
+        visibleRequests.get( 0 ).set( null );
+        // Verify
+        assertThat( visibleRequests.size( ), is( 3 ) );
+        assertThat( backgroundRequests.size( ), is( 0 ) );
+    }
+
+    @Test
+    public void interactive_requests_are_sent_even_when_max_concurrent_requests_are_in_flight( ) throws Exception {
+        // Setup
+        _configuration.setMaxRequestsPerSecond( 100 );
+        _configuration.setMaxConcurrentRequests( 2 );
+        _configuration.setMaxInteractiveRequests( 1 );
+        _budget = new ApiRequestBudget( _configuration, _executorService, _ticker );
+        final List<SettableFuture<Void>> visibleRequests = Lists.newArrayList( );
+        final List<SettableFuture<Void>> interactiveRequests = Lists.newArrayList( );
+        submitRequest( ApiRequestPriority.VISIBLE, visibleRequests );
+        submitRequest( ApiRequestPriority.VISIBLE, visibleRequests );
+        // Exercise
+        submitRequest( ApiRequestPriority.INTERACTIVE, interactiveRequests );
+        submitRequest( ApiRequestPriority.INTERACTIVE, interactiveRequests );
+        // Verify
+        assertThat( interactiveRequests.size( ), is( 1 ) );
+        assertThat( _budget.getInFlightCount( ), is( 2 ) );
+        assertThat( _budget.getInFlightCount( ApiRequestPriority.INTERACTIVE ), is( 1 ) );
+        assertThat( _budget.getPendingCount( ApiRequestPriority.INTERACTIVE ), is( 1 ) );
+    }
+
+    @Test
+    public void average_wait_time_is_measured_by_lane( ) throws Exception {
+        // Setup
+        submitRequest( );
+        submitRequest( );
+        submitRequest( );
+        // Exercise
+        _ticker.advance( Duration.ofMillis( 600 ) );
+        runScheduledDrain( );
+        // Verify
+        assertThat( _budget.getAverageWaitTime( ApiRequestPriority.BACKGROUND ), is( Duration.ofMillis( 200 ) ) );
+        assertThat( _budget.getAverageWaitTime( ApiRequestPriority.INTERACTIVE ), is( Duration.ZERO ) );
+    }
+
+    @Test
+    public void cancelling_submitted_request_cancels_sent_request_and_skips_pending_one( ) throws Exception {
+        // Setup
+        _configuration.setMaxConcurrentRequests( 1 );
+        final ListenableFuture<Void> sent = submitRequest( );
+        final ListenableFuture<Void> pending = submitRequest( );
+        // Exercise
+        pending.cancel( true );
+        sent.cancel( true );
+        // Verify
+        assertThat( _sentRequests.size( ), is( 1 ) );
+        assertThat( _sentRequests.get( 0 ).isCancelled( ), is( true ) );
+        assertThat( _budget.getInFlightCount( ), is( 0 ) );
+        assertThat( _budget.getPendingCount( ), is( 0 ) );
+    }
+
+    @Test
+    public void request_cancelled_while_pending_does_not_use_a_token( ) throws Exception {
+        // Setup
+        submitRequest( );
+        submitRequest( );
+        final ListenableFuture<Void> cancelled = submitRequest( );
+        final ListenableFuture<Void> next = submitRequest( );
+        // Exercise
+        cancelled.cancel( true );
+        _ticker.advance( Duration.ofMillis( 500 ) );
+        runScheduledDrain( );
+        // Verify
+        assertThat( _sentRequests.size( ), is( 3 ) );
+        assertThat( _budget.getPendingCount( ), is( 0 ) );
+        _sentRequests.get( 2 ).set( null );
+        assertThat( next.isDone( ), is( true ) );
+    }
+
+    @Test
+    public void throttle_suspends_requests_until_retry_after( ) throws Exception {
+        // Setup
+        _budget.throttle( Duration.ofSeconds( 10 ) );
+        // Exercise
+        submitRequest( );
+        // Verify
+        assertThat( _sentRequests.size( ), is( 0 ) );
+        verify( _executorService ).schedule( any( Runnable.class ), eq( TimeUnit.SECONDS.toNanos( 10 ) ), eq( TimeUnit.NANOSECONDS ) );
+        _ticker.advance( Duration.ofSeconds( 10 ) );
+        runScheduledDrain( );
+        assertThat( _sentRequests.size( ), is( 1 ) );
+        assertThat( _budget.getThrottledCount( ), is( 1L ) );
+    }
+
+    @Test
+    public void stretch_extends_delay_while_requests_are_suspended( ) throws Exception {
+        // Setup
+        // Exercise
+        _budget.throttle( Duration.ofSeconds( 120 ) );
+        // Verify
+        assertThat( _budget.stretch( 20, TimeUnit.SECONDS ), is( 120L ) );
+    }
+
+    @Test
+    public void stretch_keeps_delay_when_budget_is_available( ) throws Exception {
+        // Setup
+        // Exercise
+        // Verify
+        assertThat( _budget.stretch( 20, TimeUnit.SECONDS ), is( 20L ) );
+    }
+
+    @Test
+    public void utilisation_is_ratio_of_requests_sent_during_last_second( ) throws Exception {
+        // Setup
+        _configuration.setMaxConcurrentRequests( 100 );
+        submitRequest( );
+        // Exercise
+        _ticker.advance( Duration.ofSeconds( 1 ) );
+        // Verify
+        assertThat( _budget.getUtilisation( ), is( 0.5 ) );
+    }
+
+    @Test
+    public void parseRetryAfter_accepts_seconds_and_http_date( ) throws Exception {
+        // Setup
+        final Instant now = Instant.parse( "2026-10-18T10:00:00Z" );
+        // Exercise
+        // Verify
+        assertThat( ApiRequestBudget.parseRetryAfter( "120", now ), is( Duration.ofSeconds( 120 ) ) );
+        assertThat( ApiRequestBudget.parseRetryAfter( "Sun, 18 Oct 2026 10:01:00 GMT", now ), is( Duration.ofSeconds( 60 ) ) );
+        assertThat( ApiRequestBudget.parseRetryAfter( null, now ), is( ApiRequestBudget.DEFAULT_RETRY_AFTER ) );
+        assertThat( ApiRequestBudget.parseRetryAfter( "soon", now ), is( ApiRequestBudget.DEFAULT_RETRY_AFTER ) );
+    }
+
+    private static final class TestTicker extends Ticker {
+
+        private long _time;
+
+        void advance( final Duration duration ) {
+            _time += duration.toNanos( );
+        }
+
+        @Override
+        public long read( ) {
+            return _time;
+        }
+    }
+}
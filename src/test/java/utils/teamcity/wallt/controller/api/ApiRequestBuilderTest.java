@@ -16,6 +16,7 @@
 package utils.teamcity.wallt.controller.api;
 
 import org.junit.Test;
+import utils.teamcity.wallt.controller.api.json.BuildTypeList;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -101,4 +102,77 @@ public class ApiRequestBuilderTest {
         assertThat( request.getPassword( ), is( "c3dr1c" ) );
         assertThat( request.getURI( ), is( "http://localhost:80/guestAuth/app/rest/6.0/builds?myQuery=myValue&byPass=1" ) );
     }
+
+    @Test
+    public void build_return_authenticated_request_when_guest_user_has_token( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiRequest request = ApiRequestBuilder.newRequest( )
+                .apiVersion( ApiVersion.API_6_0 )
+                .to( "http://localhost:80" )
+                .forUser( "" )
+                .withToken( "t0k3n" )
+                .request( "builds" )
+                .build( );
+        // Verify
+        assertThat( request.getToken( ), is( "t0k3n" ) );
+        assertThat( request.isGuestMode( ), is( false ) );
+        assertThat( request.getURI( ), is( "http://localhost:80/httpAuth/app/rest/6.0/builds" ) );
+    }
+
+    @Test
+    public void build_return_request_with_fields_projection_of_response_type_when_supported_by_api( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiRequest request = ApiRequestBuilder.newRequest( )
+                .apiVersion( ApiVersion.API_2017_2 )
+                .to( "http://localhost:80" )
+                .request( "buildTypes" )
+                .projection( BuildTypeList.class )
+                .build( );
+        // Verify
+        assertThat( request.getURI( ), is( "http://localhost:80/guestAuth/app/rest/2017.2/buildTypes?fields=nextHref,buildType(id,name,projectName,projectId)" ) );
+    }
+
+    @Test
+    public void build_return_request_with_fields_appended_to_existing_query( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiRequest request = ApiRequestBuilder.newRequest( )
+                .apiVersion( ApiVersion.API_2017_2 )
+                .to( "http://localhost:80" )
+                .request( "builds?locator=buildType:bt1" )
+                .fields( "build(id)" )
+                .build( );
+        // Verify
+        assertThat( request.getURI( ), is( "http://localhost:80/guestAuth/app/rest/2017.2/builds?locator=buildType:bt1&fields=build(id)" ) );
+    }
+
+    @Test
+    public void build_return_request_without_fields_projection_when_not_supported_by_api( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiRequest request = ApiRequestBuilder.newRequest( )
+                .apiVersion( ApiVersion.API_8_0 )
+                .to( "http://localhost:80" )
+                .request( "buildTypes" )
+                .projection( BuildTypeList.class )
+                .build( );
+        // Verify
+        assertThat( request.getURI( ), is( "http://localhost:80/guestAuth/app/rest/8.0/buildTypes" ) );
+    }
+
+    @Test
+    public void build_return_request_with_path_fields_when_already_defined( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiRequest request = ApiRequestBuilder.newRequest( )
+                .apiVersion( ApiVersion.API_2017_2 )
+                .to( "http://localhost:80" )
+                .request( "buildTypes?fields=buildType(id)" )
+                .projection( BuildTypeList.class )
+                .build( );
+        // Verify
+        assertThat( request.getURI( ), is( "http://localhost:80/guestAuth/app/rest/2017.2/buildTypes?fields=buildType(id)" ) );
+    }
 }
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import utils.teamcity.wallt.model.configuration.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiRequestHedgingTest {
+
+    private static final String PATH = "builds/id:1";
+
+    private final Configuration _configuration = new Configuration( );
+    private final ScheduledExecutorService _executorService = mock( ScheduledExecutorService.class );
+    private final TestTicker _ticker = new TestTicker( );
+    private final List<SettableFuture<String>> _sentRequests = Lists.newArrayList( );
+    private ApiRequestHedging _hedging;
+
+    @Before
+    public void setUp( ) throws Exception {
+        _configuration.setHedgedRequests( true );
+        _hedging = new ApiRequestHedging( _configuration, _executorService, _ticker );
+    }
+
+    private ListenableFuture<String> call( ) {
+        return call( PATH );
+    }
+
+    private ListenableFuture<String> call( final String path ) {
+        return _hedging.call( path, Supplier::get, this::send );
+    }
+
+    private ListenableFuture<String> send( ) {
+        final SettableFuture<String> future = SettableFuture.create( );
+        _sentRequests.add( future );
+        return future;
+    }
+
+    private void warmUp( final int count, final Duration latency ) {
+        warmUp( PATH, count, latency );
+    }
+
+    private void warmUp( final String path, final int count, final Duration latency ) {
+        for ( int i = 0; i < count; i++ ) {
+            call( path );
+            _ticker.advance( latency );
+            _sentRequests.get( _sentRequests.size( ) - 1 ).set( "warm up" );
+        }
+        _sentRequests.clear( );
+        reset( _executorService );
+    }
+
+    private Runnable scheduledHedge( ) {
+        final ArgumentCaptor<Runnable> hedge = ArgumentCaptor.forClass( Runnable.class );
+        verify( _executorService ).schedule( hedge.capture( ), anyLong( ), eq( TimeUnit.NANOSECONDS ) );
+        return hedge.getValue( );
+    }
+
+    @Test
+    public void no_hedge_is_scheduled_until_enough_latencies_are_known( ) throws Exception {
+        // Setup
+        warmUp( ApiRequestHedging.MIN_LATENCY_SAMPLES - 1, Duration.ofMillis( 100 ) );
+        // Exercise
+        call( );
+        // Verify
+        verify( _executorService, never( ) ).schedule( any( Runnable.class ), anyLong( ), any( TimeUnit.class ) );
+        assertThat( _hedging.getHedgeDelay( ApiRequestKind.BUILD_STATUS ), is( Optional.<Duration>empty( ) ) );
+    }
+
+    @Test
+    public void no_hedge_is_scheduled_when_hedging_is_disabled( ) throws Exception {
+        // Setup
+        warmUp( 100, Duration.ofMillis( 100 ) );
+        _configuration.setHedgedRequests( false );
+        // Exercise
+        call( );
+        // Verify
+        verify( _executorService, never( ) ).schedule( any( Runnable.class ), anyLong( ), any( TimeUnit.class ) );
+    }
+
+    @Test
+    public void hedge_is_scheduled_after_p95_latency_of_endpoint( ) throws Exception {
+        // Setup
+        for ( int i = 0; i < 95; i++ )
+            warmUp( 1, Duration.ofMillis( 100 ) );
+        warmUp( 5, Duration.ofSeconds( 10 ) );
+        // Exercise
+        call( );
+        // Verify
+        verify( _executorService ).schedule( any( Runnable.class ), eq( Duration.ofMillis( 100 ).toNanos( ) ), eq( TimeUnit.NANOSECONDS ) );
+        assertThat( _hedging.getHedgeDelay( ApiRequestKind.BUILD_STATUS ), is( Optional.of( Duration.ofMillis( 100 ) ) ) );
+        assertThat( _hedging.getHedgeDelay( ApiRequestKind.BUILD_TYPES_STATUS ), is( Optional.<Duration>empty( ) ) );
+    }
+
+    @Test
+    public void latency_is_measured_from_request_sending_and_not_while_waiting_for_budget( ) throws Exception {
+        // Setup
+        final List<Supplier<ListenableFuture<String>>> pendingRequests = Lists.newArrayList( );
+        // Exercise
+        for ( int i = 0; i < ApiRequestHedging.MIN_LATENCY_SAMPLES; i++ ) {
+            _hedging.call( PATH, send -> {
+                pendingRequests.add( send );
+                return SettableFuture.create( );
+            }, this::send );
+            _ticker.advance( Duration.ofSeconds( 10 ) );
+            pendingRequests.remove( 0 ).get( );
+            _ticker.advance( Duration.ofMillis( 100 ) );
+            _sentRequests.remove( 0 ).set( "response" );
+        }
+        // Verify
+        assertThat( _hedging.getHedgeDelay( ApiRequestKind.BUILD_STATUS ), is( Optional.of( Duration.ofMillis( 100 ) ) ) );
+    }
+
+    @Test
+    public void requests_other_than_status_are_never_hedged( ) throws Exception {
+        // Setup
+        warmUp( "projects", 100, Duration.ofMillis( 100 ) );
+        // Exercise
+        call( "projects" );
+        // Verify
+        verify( _executorService, never( ) ).schedule( any( Runnable.class ), anyLong( ), any( TimeUnit.class ) );
+        assertThat( _hedging.getHedgeDelay( ApiRequestKind.OTHER ), is( Optional.<Duration>empty( ) ) );
+    }
+
+    @Test
+    public void hedge_wins_when_it_answers_first_and_slow_request_is_cancelled( ) throws Exception {
+        // Setup
+        warmUp( 100, Duration.ofMillis( 100 ) );
+        final ListenableFuture<String> result = call( );
+        // Exercise
+        scheduledHedge( ).run( );
+        _sentRequests.get( 1 ).set( "hedge" );
+        // Verify
+        assertThat( _sentRequests.size( ), is( 2 ) );
+        assertThat( result.get( ), is( "hedge" ) );
+        assertThat( _sentRequests.get( 0 ).isCancelled( ), is( true ) );
+        assertThat( _hedging.getHedgeCount( ), is( 1L ) );
+        assertThat( _hedging.getHedgeWinCount( ), is( 1L ) );
+    }
+
+    @Test
+    public void original_request_wins_when_it_answers_first_and_hedge_is_cancelled( ) throws Exception {
+        // Setup
+        warmUp( 100, Duration.ofMillis( 100 ) );
+        final ListenableFuture<String> result = call( );
+        scheduledHedge( ).run( );
+        // Exercise
+        _sentRequests.get( 0 ).set( "original" );
+        // Verify
+        assertThat( result.get( ), is( "original" ) );
+        assertThat( _sentRequests.get( 1 ).isCancelled( ), is( true ) );
+        assertThat( _hedging.getHedgeWinCount( ), is( 0L ) );
+    }
+
+    @Test
+    public void no_hedge_is_sent_when_request_answers_before_hedge_delay( ) throws Exception {
+        // Setup
+        warmUp( 100, Duration.ofMillis( 100 ) );
+        final ListenableFuture<String> result = call( );
+        _sentRequests.get( 0 ).set( "original" );
+        // Exercise
+        scheduledHedge( ).run( );
+        // Verify
+        assertThat( result.get( ), is( "original" ) );
+        assertThat( _sentRequests.size( ), is( 1 ) );
+        assertThat( _hedging.getHedgeCount( ), is( 0L ) );
+    }
+
+    @Test
+    public void call_fails_only_once_every_attempt_failed( ) throws Exception {
+        // Setup
+        warmUp( 100, Duration.ofMillis( 100 ) );
+        final ListenableFuture<String> result = call( );
+        scheduledHedge( ).run( );
+        // Exercise
+        _sentRequests.get( 1 ).setException( new ApiException( "hedge failed" ) );
+        final boolean doneAfterFirstFailure = result.isDone( );
+        _sentRequests.get( 0 ).setException( new ApiException( "original failed" ) );
+        // Verify
+        assertThat( doneAfterFirstFailure, is( false ) );
+        assertThat( result.isDone( ), is( true ) );
+    }
+
+    @Test
+    public void hedge_rate_is_capped( ) throws Exception {
+        // Setup
+        warmUp( 100, Duration.ofMillis( 100 ) );
+        // Exercise
+        for ( int i = 0; i < 6; i++ ) {
+            call( );
+            scheduledHedge( ).run( );
+            reset( _executorService );
+        }
+        // Verify
+        assertThat( _sentRequests.size( ), is( 6 + 5 ) );
+        assertThat( _hedging.getHedgeCount( ), is( 5L ) );
+        assertThat( _hedging.getCappedCount( ), is( 1L ) );
+        assertThat( _hedging.getHedgeRate( ) <= ApiRequestHedging.MAX_HEDGE_RATE, is( true ) );
+    }
+
+    private static final class TestTicker extends Ticker {
+
+        private long _time;
+
+        void advance( final Duration duration ) {
+            _time += duration.toNanos( );
+        }
+
+        @Override
+        public long read( ) {
+            return _time;
+        }
+    }
+}
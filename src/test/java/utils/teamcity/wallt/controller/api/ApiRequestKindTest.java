@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiRequestKindTest {
+
+    @Test
+    public void fromPath_tells_apart_requests_of_same_endpoint( ) throws Exception {
+        // Setup
+        // Exercise
+        // Verify
+        assertThat( ApiRequestKind.fromPath( "buildTypes?locator=item:(id:bt1),item:(id:bt2)&fields=buildType(id)" ), is( ApiRequestKind.BUILD_TYPES_STATUS ) );
+        assertThat( ApiRequestKind.fromPath( "buildTypes?locator=affectedProject:(id:p1)&fields=buildType(id)" ), is( ApiRequestKind.PROJECT_STATUS ) );
+        assertThat( ApiRequestKind.fromPath( "buildTypes" ), is( ApiRequestKind.OTHER ) );
+        assertThat( ApiRequestKind.fromPath( "builds/id:12" ), is( ApiRequestKind.BUILD_STATUS ) );
+        assertThat( ApiRequestKind.fromPath( "builds?locator=sinceBuild:(id:12),running:any" ), is( ApiRequestKind.BUILD_CHANGES ) );
+        assertThat( ApiRequestKind.fromPath( "builds?locator=running:true" ), is( ApiRequestKind.RUNNING_BUILDS ) );
+    }
+
+    @Test
+    public void only_requests_updating_wall_are_status_requests( ) throws Exception {
+        // Setup
+        // Exercise
+        // Verify
+        assertThat( ApiRequestKind.fromPath( "buildQueue" ).isStatus( ), is( true ) );
+        assertThat( ApiRequestKind.fromPath( "builds/id:12" ).isStatus( ), is( true ) );
+        assertThat( ApiRequestKind.fromPath( "projects?locator=start:0,count:1000" ).isStatus( ), is( false ) );
+        assertThat( ApiRequestKind.fromPath( "server" ).isStatus( ), is( false ) );
+    }
+
+}
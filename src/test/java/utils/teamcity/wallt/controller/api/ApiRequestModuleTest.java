@@ -54,4 +54,92 @@ public class ApiRequestModuleTest {
         assertThat( instance, is( sameInstance( instance2 ) ) );
     }
 
+    @Test
+    public void can_inject_ApiRequestSingleFlight_in_singleton( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiRequestSingleFlight instance = _injector.getInstance( ApiRequestSingleFlight.class );
+        final ApiRequestSingleFlight instance2 = _injector.getInstance( ApiRequestSingleFlight.class );
+        // Verify
+        assertThat( instance, is( notNullValue( ) ) );
+        assertThat( instance, is( sameInstance( instance2 ) ) );
+    }
+
+    @Test
+    public void can_inject_ApiRequestBudget_in_singleton( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiRequestBudget instance = _injector.getInstance( ApiRequestBudget.class );
+        final ApiRequestBudget instance2 = _injector.getInstance( ApiRequestBudget.class );
+        // Verify
+        assertThat( instance, is( notNullValue( ) ) );
+        assertThat( instance, is( sameInstance( instance2 ) ) );
+    }
+
+    @Test
+    public void can_inject_ApiCircuitBreaker_in_singleton( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiCircuitBreaker instance = _injector.getInstance( ApiCircuitBreaker.class );
+        final ApiCircuitBreaker instance2 = _injector.getInstance( ApiCircuitBreaker.class );
+        // Verify
+        assertThat( instance, is( notNullValue( ) ) );
+        assertThat( instance, is( sameInstance( instance2 ) ) );
+    }
+
+    @Test
+    public void can_inject_ApiTransferStatistics_in_singleton( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiTransferStatistics instance = _injector.getInstance( ApiTransferStatistics.class );
+        final ApiTransferStatistics instance2 = _injector.getInstance( ApiTransferStatistics.class );
+        // Verify
+        assertThat( instance, is( notNullValue( ) ) );
+        assertThat( instance, is( sameInstance( instance2 ) ) );
+    }
+
+    @Test
+    public void can_inject_ApiRequestHedging_in_singleton( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiRequestHedging instance = _injector.getInstance( ApiRequestHedging.class );
+        final ApiRequestHedging instance2 = _injector.getInstance( ApiRequestHedging.class );
+        // Verify
+        assertThat( instance, is( notNullValue( ) ) );
+        assertThat( instance, is( sameInstance( instance2 ) ) );
+    }
+
+    @Test
+    public void can_inject_ApiResponseExecutor_in_singleton( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiResponseExecutor instance = _injector.getInstance( ApiResponseExecutor.class );
+        final ApiResponseExecutor instance2 = _injector.getInstance( ApiResponseExecutor.class );
+        // Verify
+        assertThat( instance, is( notNullValue( ) ) );
+        assertThat( instance, is( sameInstance( instance2 ) ) );
+    }
+
+    @Test
+    public void can_inject_ApiSession_in_singleton( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiSession instance = _injector.getInstance( ApiSession.class );
+        final ApiSession instance2 = _injector.getInstance( ApiSession.class );
+        // Verify
+        assertThat( instance, is( notNullValue( ) ) );
+        assertThat( instance, is( sameInstance( instance2 ) ) );
+    }
+
+    @Test
+    public void can_inject_ApiResponseCache_in_singleton( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiResponseCache instance = _injector.getInstance( ApiResponseCache.class );
+        final ApiResponseCache instance2 = _injector.getInstance( ApiResponseCache.class );
+        // Verify
+        assertThat( instance, is( notNullValue( ) ) );
+        assertThat( instance, is( sameInstance( instance2 ) ) );
+    }
+
 }
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiRequestPipelineTest {
+
+    @Test
+    public void start_sends_no_more_requests_than_max_in_flight( ) throws Exception {
+        // Setup
+        final List<SettableFuture<Void>> requests = Lists.newArrayList( );
+        final ApiRequestPipeline<Integer> pipeline = new ApiRequestPipeline<>( "test", ImmutableList.of( 1, 2, 3, 4, 5 ), 2, item -> {
+            final SettableFuture<Void> future = SettableFuture.create( );
+            requests.add( future );
+            return future;
+        } );
+        // Exercise
+        pipeline.start( );
+        // Verify
+        assertThat( requests.size( ), is( 2 ) );
+        assertThat( pipeline.getInFlightCount( ), is( 2 ) );
+    }
+
+    @Test
+    public void cancelling_pipeline_cancels_requests_in_flight_and_drops_pending_ones( ) throws Exception {
+        // Setup
+        final List<SettableFuture<Void>> requests = Lists.newArrayList( );
+        final ApiRequestPipeline<Integer> pipeline = new ApiRequestPipeline<>( "test", ImmutableList.of( 1, 2, 3, 4, 5 ), 2, item -> {
+            final SettableFuture<Void> future = SettableFuture.create( );
+            requests.add( future );
+            return future;
+        } );
+        // Exercise
+        pipeline.start( ).cancel( true );
+        // Verify
+        assertThat( requests.size( ), is( 2 ) );
+        assertThat( requests.get( 0 ).isCancelled( ), is( true ) );
+        assertThat( requests.get( 1 ).isCancelled( ), is( true ) );
+        assertThat( pipeline.getInFlightCount( ), is( 0 ) );
+    }
+
+    @Test
+    public void start_sends_next_request_when_one_is_done( ) throws Exception {
+        // Setup
+        final List<SettableFuture<Void>> requests = Lists.newArrayList( );
+        final ApiRequestPipeline<Integer> pipeline = new ApiRequestPipeline<>( "test", ImmutableList.of( 1, 2, 3 ), 2, item -> {
+            final SettableFuture<Void> future = SettableFuture.create( );
+            requests.add( future );
+            return future;
+        } );
+        pipeline.start( );
+        // Exercise
+        requests.get( 0 ).set( null );
+        // Verify
+        assertThat( requests.size( ), is( 3 ) );
+        assertThat( pipeline.getInFlightCount( ), is( 2 ) );
+        assertThat( pipeline.getMaxInFlightCount( ), is( 2 ) );
+    }
+
+    @Test
+    public void start_returns_future_done_when_all_requests_are_done_even_in_failure( ) throws Exception {
+        // Setup
+        final ApiRequestPipeline<Integer> pipeline = new ApiRequestPipeline<>( "test", ImmutableList.of( 1, 2, 3, 4 ), 3,
+                item -> item % 2 == 0 ? Futures.immediateFailedFuture( new RuntimeException( "Unexpected test exception" ) ) : Futures.immediateFuture( null ) );
+        // Exercise
+        final ListenableFuture<Void> future = pipeline.start( );
+        // Verify
+        assertThat( future.isDone( ), is( true ) );
+        assertThat( pipeline.getRequestCount( ), is( 4 ) );
+        assertThat( pipeline.getFailureCount( ), is( 2 ) );
+        assertThat( pipeline.getInFlightCount( ), is( 0 ) );
+    }
+
+    @Test
+    public void start_returns_done_future_when_there_is_nothing_to_request( ) throws Exception {
+        // Setup
+        final ApiRequestPipeline<Integer> pipeline = new ApiRequestPipeline<>( "test", ImmutableList.<Integer>of( ), 3, item -> Futures.immediateFuture( null ) );
+        // Exercise
+        final ListenableFuture<Void> future = pipeline.start( );
+        // Verify
+        assertThat( future.isDone( ), is( true ) );
+    }
+
+    @Test
+    public void start_supports_many_requests_done_immediately( ) throws Exception {
+        // Setup
+        final List<Integer> items = Lists.newArrayList( );
+        for ( int i = 0; i < 100000; i++ )
+            items.add( i );
+        final ApiRequestPipeline<Integer> pipeline = new ApiRequestPipeline<>( "test", items, 8, item -> Futures.immediateFuture( null ) );
+        // Exercise
+        final ListenableFuture<Void> future = pipeline.start( );
+        // Verify
+        assertThat( future.isDone( ), is( true ) );
+        assertThat( pipeline.getMaxInFlightCount( ), is( 1 ) );
+    }
+
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.base.Ticker;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiRequestRateMeterTest {
+
+    private final TestTicker _ticker = new TestTicker( );
+    private final ApiRequestRateMeter _rateMeter = new ApiRequestRateMeter( _ticker );
+
+    @Test
+    public void no_request_has_no_variation( ) throws Exception {
+        // Setup
+        _ticker.advance( Duration.ofSeconds( 10 ) );
+        // Exercise
+        // Verify
+        assertThat( _rateMeter.getMeanRate( ), is( 0.0 ) );
+        assertThat( _rateMeter.getRateVariation( ), is( 0.0 ) );
+    }
+
+    @Test
+    public void evenly_spread_requests_have_no_variation( ) throws Exception {
+        // Setup
+        for ( int i = 0; i < 20; i++ ) {
+            _rateMeter.record( );
+            _rateMeter.record( );
+            _ticker.advance( Duration.ofSeconds( 1 ) );
+        }
+        // Exercise
+        // Verify
+        assertThat( _rateMeter.getMeanRate( ), is( closeTo( 2, 0.001 ) ) );
+        assertThat( _rateMeter.getRateVariation( ), is( closeTo( 0, 0.001 ) ) );
+    }
+
+    @Test
+    public void requests_in_bursts_have_high_variation( ) throws Exception {
+        // Setup
+        for ( int i = 0; i < 20; i++ ) {
+            if ( i % 10 == 0 )
+                for ( int j = 0; j < 20; j++ )
+                    _rateMeter.record( );
+            _ticker.advance( Duration.ofSeconds( 1 ) );
+        }
+        // Exercise
+        // Verify
+        assertThat( _rateMeter.getMeanRate( ), is( closeTo( 2, 0.001 ) ) );
+        assertThat( _rateMeter.getRateVariation( ), is( greaterThan( 2.0 ) ) );
+    }
+
+    @Test
+    public void requests_older_than_window_are_forgotten( ) throws Exception {
+        // Setup
+        for ( int i = 0; i < 10; i++ )
+            _rateMeter.record( );
+        // Exercise
+        _ticker.advance( Duration.ofSeconds( ApiRequestRateMeter.WINDOW_IN_SECONDS + 1 ) );
+        // Verify
+        assertThat( _rateMeter.getMeanRate( ), is( 0.0 ) );
+    }
+
+    private static final class TestTicker extends Ticker {
+
+        private long _time;
+
+        void advance( final Duration duration ) {
+            _time += duration.toNanos( );
+        }
+
+        @Override
+        public long read( ) {
+            return _time;
+        }
+    }
+}
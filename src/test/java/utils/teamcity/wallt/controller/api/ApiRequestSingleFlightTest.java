@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Test;
+import utils.teamcity.wallt.controller.api.json.BuildList;
+import utils.teamcity.wallt.controller.api.json.ProjectList;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiRequestSingleFlightTest {
+
+    private final ApiRequestSingleFlight _singleFlight = new ApiRequestSingleFlight( );
+
+    @Test
+    public void share_sends_identical_concurrent_requests_only_once( ) throws Exception {
+        // Setup
+        final AtomicInteger requestCount = new AtomicInteger( );
+        final SettableFuture<BuildList> response = SettableFuture.create( );
+        // Exercise
+        final ListenableFuture<BuildList> future1 = _singleFlight.share( ApiVersion.API_8_1, "builds", BuildList.class, ( ) -> {
+            requestCount.incrementAndGet( );
+            return response;
+        } );
+        final ListenableFuture<BuildList> future2 = _singleFlight.share( ApiVersion.API_8_1, "builds", BuildList.class, ( ) -> {
+            requestCount.incrementAndGet( );
+            return response;
+        } );
+        final BuildList buildList = new BuildList( );
+        response.set( buildList );
+        // Verify
+        assertThat( requestCount.get( ), is( 1 ) );
+        assertThat( future1.get( ), is( sameInstance( buildList ) ) );
+        assertThat( future2.get( ), is( sameInstance( buildList ) ) );
+        assertThat( _singleFlight.getHitCount( ), is( 1L ) );
+        assertThat( _singleFlight.getMissCount( ), is( 1L ) );
+        assertThat( _singleFlight.getHitRate( ), is( 0.5 ) );
+    }
+
+    @Test
+    public void share_sends_request_again_once_previous_one_is_done( ) throws Exception {
+        // Setup
+        final AtomicInteger requestCount = new AtomicInteger( );
+        final SettableFuture<BuildList> response = SettableFuture.create( );
+        _singleFlight.share( ApiVersion.API_8_1, "builds", BuildList.class, ( ) -> {
+            requestCount.incrementAndGet( );
+            return response;
+        } );
+        response.set( new BuildList( ) );
+        // Exercise
+        _singleFlight.share( ApiVersion.API_8_1, "builds", BuildList.class, ( ) -> {
+            requestCount.incrementAndGet( );
+            return SettableFuture.create( );
+        } );
+        // Verify
+        assertThat( requestCount.get( ), is( 2 ) );
+        assertThat( _singleFlight.getHitCount( ), is( 0L ) );
+    }
+
+    @Test
+    public void share_does_not_share_requests_with_different_version_path_or_type( ) throws Exception {
+        // Setup
+        final AtomicInteger requestCount = new AtomicInteger( );
+        // Exercise
+        _singleFlight.share( ApiVersion.API_8_1, "builds", BuildList.class, ( ) -> {
+            requestCount.incrementAndGet( );
+            return SettableFuture.create( );
+        } );
+        _singleFlight.share( ApiVersion.API_8_0, "builds", BuildList.class, ( ) -> {
+            requestCount.incrementAndGet( );
+            return SettableFuture.create( );
+        } );
+        _singleFlight.share( ApiVersion.API_8_1, "projects", BuildList.class, ( ) -> {
+            requestCount.incrementAndGet( );
+            return SettableFuture.create( );
+        } );
+        _singleFlight.share( ApiVersion.API_8_1, "builds", ProjectList.class, ( ) -> {
+            requestCount.incrementAndGet( );
+            return SettableFuture.create( );
+        } );
+        // Verify
+        assertThat( requestCount.get( ), is( 4 ) );
+        assertThat( _singleFlight.getInFlightCount( ), is( 4 ) );
+    }
+
+    @Test
+    public void share_propagates_failure_to_all_callers( ) throws Exception {
+        // Setup
+        final SettableFuture<BuildList> response = SettableFuture.create( );
+        final ListenableFuture<BuildList> future1 = _singleFlight.share( ApiVersion.API_8_1, "builds", BuildList.class, ( ) -> response );
+        final ListenableFuture<BuildList> future2 = _singleFlight.share( ApiVersion.API_8_1, "builds", BuildList.class, ( ) -> response );
+        // Exercise
+        response.setException( new ApiException( "error" ) );
+        // Verify
+        assertThat( future1.isDone( ), is( true ) );
+        assertThat( future2.isDone( ), is( true ) );
+        assertThat( _singleFlight.getInFlightCount( ), is( 0 ) );
+    }
+
+    @Test
+    public void cancelling_a_caller_future_does_not_cancel_other_callers( ) throws Exception {
+        // Setup
+        final SettableFuture<BuildList> response = SettableFuture.create( );
+        final ListenableFuture<BuildList> future1 = _singleFlight.share( ApiVersion.API_8_1, "builds", BuildList.class, ( ) -> response );
+        final ListenableFuture<BuildList> future2 = _singleFlight.share( ApiVersion.API_8_1, "builds", BuildList.class, ( ) -> response );
+        // Exercise
+        future1.cancel( true );
+        response.set( new BuildList( ) );
+        // Verify
+        assertThat( response.isCancelled( ), is( false ) );
+        assertThat( future2.isDone( ), is( true ) );
+        assertThat( future2.isCancelled( ), is( false ) );
+    }
+
+    @Test
+    public void request_is_cancelled_once_all_its_callers_cancelled( ) throws Exception {
+        // Setup
+        final SettableFuture<BuildList> response = SettableFuture.create( );
+        final ListenableFuture<BuildList> future1 = _singleFlight.share( ApiVersion.API_8_1, "builds", BuildList.class, ( ) -> response );
+        final ListenableFuture<BuildList> future2 = _singleFlight.share( ApiVersion.API_8_1, "builds", BuildList.class, ( ) -> response );
+        // Exercise
+        future1.cancel( true );
+        future2.cancel( true );
+        // Verify
+        assertThat( response.isCancelled( ), is( true ) );
+        assertThat( _singleFlight.getInFlightCount( ), is( 0 ) );
+    }
+
+    @Test
+    public void caller_sharing_request_while_its_last_caller_cancels_never_gets_a_cancelled_future( ) throws Exception {
+        // Setup
+        final AtomicInteger doneCallerCount = new AtomicInteger( );
+        final Runnable caller = ( ) -> {
+            for ( int i = 0; i < 20_000; i++ ) {
+                final ListenableFuture<BuildList> future = _singleFlight.share( ApiVersion.API_8_1, "builds", BuildList.class, SettableFuture::create );
+                if ( future.isDone( ) )
+                    doneCallerCount.incrementAndGet( );
+                future.cancel( true );
+            }
+        };
+        final Thread thread1 = new Thread( caller );
+        final Thread thread2 = new Thread( caller );
+        // Exercise
+        thread1.start( );
+        thread2.start( );
+        thread1.join( );
+        thread2.join( );
+        // Verify
+        assertThat( doneCallerCount.get( ), is( 0 ) );
+        assertThat( _singleFlight.getInFlightCount( ), is( 0 ) );
+    }
+
+}
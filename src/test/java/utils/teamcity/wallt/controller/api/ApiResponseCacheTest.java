@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import org.junit.Before;
+import org.junit.Test;
+import utils.teamcity.wallt.controller.api.json.BuildList;
+import utils.teamcity.wallt.controller.api.json.BuildTypeList;
+
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiResponseCacheTest {
+
+    private ApiResponseCache _cache;
+
+    @Before
+    public void setUp( ) throws Exception {
+        _cache = new ApiResponseCache( );
+    }
+
+    @Test
+    public void modified_response_with_validators_is_kept( ) throws Exception {
+        // Setup
+        final BuildTypeList response = new BuildTypeList( );
+        // Exercise
+        _cache.modified( "http://localhost/buildTypes", "\"etag\"", "Sat, 18 Oct 2026 10:00:00 GMT", response );
+        // Verify
+        final Optional<ApiResponseCache.CachedResponse> cachedResponse = _cache.getValidators( "http://localhost/buildTypes" );
+        assertThat( cachedResponse.isPresent( ), is( true ) );
+        assertThat( cachedResponse.get( ).getETag( ).get( ), is( "\"etag\"" ) );
+        assertThat( cachedResponse.get( ).getLastModified( ).get( ), is( "Sat, 18 Oct 2026 10:00:00 GMT" ) );
+        assertThat( _cache.getMissCount( ), is( 1L ) );
+    }
+
+    @Test
+    public void modified_response_without_validators_is_not_kept( ) throws Exception {
+        // Setup
+        _cache.modified( "http://localhost/buildTypes", "\"etag\"", null, new BuildTypeList( ) );
+        // Exercise
+        _cache.modified( "http://localhost/buildTypes", null, null, new BuildTypeList( ) );
+        // Verify
+        assertThat( _cache.getValidators( "http://localhost/buildTypes" ).isPresent( ), is( false ) );
+        assertThat( _cache.getMissCount( ), is( 2L ) );
+    }
+
+    @Test
+    public void notModified_returns_cached_response_and_counts_hit( ) throws Exception {
+        // Setup
+        final BuildTypeList response = new BuildTypeList( );
+        _cache.modified( "http://localhost/buildTypes", "\"etag\"", null, response );
+        // Exercise
+        final Optional<BuildTypeList> cachedResponse = _cache.notModified( "http://localhost/buildTypes", BuildTypeList.class );
+        // Verify
+        assertThat( cachedResponse.get( ), is( sameInstance( response ) ) );
+        assertThat( _cache.getHitCount( ), is( 1L ) );
+    }
+
+    @Test
+    public void hit_rate_is_ratio_of_not_modified_responses( ) throws Exception {
+        // Setup
+        _cache.modified( "http://localhost/buildTypes", "\"etag\"", null, new BuildTypeList( ) );
+        // Exercise
+        _cache.notModified( "http://localhost/buildTypes", BuildTypeList.class );
+        _cache.notModified( "http://localhost/buildTypes", BuildTypeList.class );
+        _cache.notModified( "http://localhost/buildTypes", BuildTypeList.class );
+        // Verify
+        assertThat( _cache.getHitRate( ), is( 0.75 ) );
+    }
+
+    @Test
+    public void notModified_returns_empty_if_response_is_not_cached_or_of_other_type( ) throws Exception {
+        // Setup
+        _cache.modified( "http://localhost/buildTypes", "\"etag\"", null, new BuildTypeList( ) );
+        // Exercise
+        final Optional<BuildList> otherType = _cache.notModified( "http://localhost/buildTypes", BuildList.class );
+        final Optional<BuildList> notCached = _cache.notModified( "http://localhost/builds", BuildList.class );
+        // Verify
+        assertThat( otherType.isPresent( ), is( false ) );
+        assertThat( notCached.isPresent( ), is( false ) );
+        assertThat( _cache.getHitCount( ), is( 0L ) );
+        assertThat( _cache.size( ), is( 0L ) );
+    }
+
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.base.Charsets;
+import org.junit.Before;
+import org.junit.Test;
+import utils.teamcity.wallt.controller.api.json.BuildTypeList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiResponseDecoderTest {
+
+    private static final String BUILD_TYPES = "{\"count\":2,\"buildType\":[" +
+            "{\"id\":\"bt1\",\"name\":\"Build\",\"projectName\":\"Project é\",\"projectId\":\"p1\",\"href\":\"/app/rest/buildTypes/id:bt1\"}," +
+            "{\"id\":\"bt2\",\"name\":\"Test\",\"projectName\":\"Project é\",\"projectId\":\"p1\",\"href\":\"/app/rest/buildTypes/id:bt2\"}]}";
+
+    private ApiResponseDecoder _decoder;
+
+    @Before
+    public void setUp( ) throws Exception {
+        _decoder = new ApiResponseDecoder( );
+    }
+
+    @Test
+    public void decode_from_stream_returns_response_of_expected_type( ) throws Exception {
+        // Setup
+        // Exercise
+        final BuildTypeList response = _decoder.decode( new ByteArrayInputStream( BUILD_TYPES.getBytes( Charsets.UTF_8 ) ), BuildTypeList.class );
+        // Verify
+        assertThat( response.getBuildTypes( ).size( ), is( 2 ) );
+        assertThat( response.getBuildTypes( ).get( 1 ).getId( ), is( "bt2" ) );
+        assertThat( response.getBuildTypes( ).get( 1 ).getProjectName( ), is( "Project é" ) );
+    }
+
+    @Test
+    public void decode_from_string_returns_response_of_expected_type( ) throws Exception {
+        // Setup
+        // Exercise
+        final BuildTypeList response = _decoder.decode( BUILD_TYPES, BuildTypeList.class );
+        // Verify
+        assertThat( response.getBuildTypes( ).size( ), is( 2 ) );
+        assertThat( response.getBuildTypes( ).get( 0 ).getId( ), is( "bt1" ) );
+        assertThat( response.getBuildTypes( ).get( 0 ).getProjectName( ), is( "Project é" ) );
+    }
+
+    @Test
+    public void decode_from_gzip_decompressed_stream_returns_response_of_expected_type( ) throws Exception {
+        // Setup
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream( );
+        try ( OutputStream out = new GZIPOutputStream( compressed ) ) {
+            out.write( BUILD_TYPES.getBytes( Charsets.UTF_8 ) );
+        }
+        // Exercise
+        final InputStream content = ApiResponseDecoder.decompress( new ByteArrayInputStream( compressed.toByteArray( ) ), "gzip" );
+        // Verify
+        assertThat( _decoder.decode( content, BuildTypeList.class ).getBuildTypes( ).size( ), is( 2 ) );
+    }
+
+    @Test
+    public void decode_from_deflate_decompressed_stream_returns_response_of_expected_type( ) throws Exception {
+        // Setup
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream( );
+        try ( OutputStream out = new DeflaterOutputStream( compressed ) ) {
+            out.write( BUILD_TYPES.getBytes( Charsets.UTF_8 ) );
+        }
+        // Exercise
+        final InputStream content = ApiResponseDecoder.decompress( new ByteArrayInputStream( compressed.toByteArray( ) ), "deflate" );
+        // Verify
+        assertThat( _decoder.decode( content, BuildTypeList.class ).getBuildTypes( ).size( ), is( 2 ) );
+    }
+
+    @Test
+    public void decompress_returns_same_stream_when_content_is_not_encoded( ) throws Exception {
+        // Setup
+        final InputStream content = new ByteArrayInputStream( BUILD_TYPES.getBytes( Charsets.UTF_8 ) );
+        // Exercise
+        // Verify
+        assertThat( ApiResponseDecoder.decompress( content, null ), is( content ) );
+        assertThat( ApiResponseDecoder.decompress( content, "identity" ), is( content ) );
+    }
+
+    @Test( expected = ApiException.class )
+    public void decompress_fails_on_unsupported_encoding( ) throws Exception {
+        // Setup
+        // Exercise
+        ApiResponseDecoder.decompress( new ByteArrayInputStream( new byte[0] ), "br" );
+        // Verify
+    }
+
+}
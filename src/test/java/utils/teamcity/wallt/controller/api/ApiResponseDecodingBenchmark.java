@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.base.Charsets;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import utils.teamcity.wallt.controller.api.json.BuildTypeList;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Compares decoding of a large build type list through a string copy and a fresh Gson (previous behaviour)
+ * with streaming decoding of response bytes through the shared {@link ApiResponseDecoder}.
+ * <p>
+ * Run it as a java application: args are [payload size in MB] [iterations]
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public final class ApiResponseDecodingBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 10;
+
+    private ApiResponseDecodingBenchmark( ) {
+    }
+
+    public static void main( final String[] args ) throws Exception {
+        final int payloadSizeInMb = args.length > 0 ? Integer.parseInt( args[0] ) : 5;
+        final int iterations = args.length > 1 ? Integer.parseInt( args[1] ) : 50;
+
+        final byte[] payload = buildTypesPayload( payloadSizeInMb * 1024 * 1024 );
+        System.out.println( "Payload: " + payload.length / 1024 + " KB, " + iterations + " iterations" );
+
+        final ApiResponseDecoder decoder = new ApiResponseDecoder( );
+
+        final Decoding stringDecoding = ( ) -> {
+            final String content = new String( payload, Charsets.UTF_8 );
+            final Gson gson = new GsonBuilder( ).create( );
+            return gson.fromJson( content, BuildTypeList.class ).getBuildTypes( ).size( );
+        };
+        final Decoding streamDecoding = ( ) -> decoder.decode( new ByteArrayInputStream( payload ), BuildTypeList.class ).getBuildTypes( ).size( );
+
+        run( "string", stringDecoding, WARMUP_ITERATIONS );
+        run( "stream", streamDecoding, WARMUP_ITERATIONS );
+
+        report( "string", run( "string", stringDecoding, iterations ), iterations );
+        report( "stream", run( "stream", streamDecoding, iterations ), iterations );
+    }
+
+    private static long[] run( final String name, final Decoding decoding, final int iterations ) throws Exception {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean( );
+        final long allocatedBefore = allocatedBytes( threadBean );
+        final long before = System.nanoTime( );
+        int decodedCount = 0;
+        for ( int i = 0; i < iterations; i++ )
+            decodedCount += decoding.decode( );
+        final long elapsed = System.nanoTime( ) - before;
+        if ( decodedCount == 0 )
+            throw new IllegalStateException( name + " decoding returned nothing" );
+        return new long[]{ elapsed, allocatedBytes( threadBean ) - allocatedBefore };
+    }
+
+    private static void report( final String name, final long[] result, final int iterations ) {
+        System.out.println( String.format( "%-7s %8.2f ms/op %10d KB allocated/op", name, result[0] / 1e6 / iterations, result[1] / 1024 / iterations ) );
+    }
+
+    private static long allocatedBytes( final ThreadMXBean threadBean ) {
+        if ( threadBean instanceof com.sun.management.ThreadMXBean )
+            return ( (com.sun.management.ThreadMXBean) threadBean ).getThreadAllocatedBytes( Thread.currentThread( ).getId( ) );
+        return 0;
+    }
+
+    /**
+     * Build types payload looking like a full (not projected) response of TeamCity server
+     */
+    private static byte[] buildTypesPayload( final int minSize ) {
+        final StringBuilder builder = new StringBuilder( minSize + 1024 );
+        builder.append( "{\"count\":0,\"href\":\"/httpAuth/app/rest/buildTypes\",\"buildType\":[" );
+        int i = 0;
+        while ( builder.length( ) < minSize ) {
+            if ( i > 0 )
+                builder.append( ',' );
+            builder.append( "{\"id\":\"Project" ).append( i / 10 ).append( "_BuildType" ).append( i ).append( "\"," )
+                    .append( "\"name\":\"Build type n°" ).append( i ).append( "\"," )
+                    .append( "\"description\":\"Compiles, tests and packages module " ).append( i ).append( " of the product\"," )
+                    .append( "\"projectName\":\"Root project :: Product :: Module " ).append( i / 10 ).append( "\"," )
+                    .append( "\"projectId\":\"Project" ).append( i / 10 ).append( "\"," )
+                    .append( "\"paused\":false," )
+                    .append( "\"href\":\"/httpAuth/app/rest/buildTypes/id:Project" ).append( i / 10 ).append( "_BuildType" ).append( i ).append( "\"," )
+                    .append( "\"webUrl\":\"http://teamcity.example.com/viewType.html?buildTypeId=Project" ).append( i / 10 ).append( "_BuildType" ).append( i ).append( "\"}" );
+            i++;
+        }
+        builder.append( "]}" );
+        return builder.toString( ).getBytes( Charsets.UTF_8 );
+    }
+
+    @FunctionalInterface
+    private interface Decoding {
+        int decode( ) throws Exception;
+    }
+}
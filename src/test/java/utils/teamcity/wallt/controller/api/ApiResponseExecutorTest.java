@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiResponseExecutorTest {
+
+    @Test
+    public void execute_processes_response_on_its_own_thread( ) throws Exception {
+        // Setup
+        final ApiResponseExecutor executor = new ApiResponseExecutor( );
+        final AtomicReference<Thread> thread = new AtomicReference<>( );
+        final CountDownLatch done = new CountDownLatch( 1 );
+        // Exercise
+        executor.execute( ( ) -> {
+            thread.set( Thread.currentThread( ) );
+            done.countDown( );
+        } );
+        // Verify
+        assertThat( done.await( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat( thread.get( ), is( not( Thread.currentThread( ) ) ) );
+        assertThat( thread.get( ).getName( ), startsWith( "api-response-" ) );
+        assertThat( thread.get( ).isDaemon( ), is( true ) );
+    }
+
+    @Test
+    public void queue_depth_is_measured_while_processing_thread_is_busy( ) throws Exception {
+        // Setup
+        final ApiResponseExecutor executor = new ApiResponseExecutor( 1, 10 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final CountDownLatch done = new CountDownLatch( 4 );
+        executor.execute( ( ) -> {
+            try {
+                release.await( );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread( ).interrupt( );
+            }
+            done.countDown( );
+        } );
+        // Exercise
+        for ( int i = 0; i < 3; i++ )
+            executor.execute( done::countDown );
+        final int queueDepth = executor.getQueueDepth( );
+        release.countDown( );
+        // Verify
+        assertThat( done.await( 10, TimeUnit.SECONDS ), is( true ) );
+        assertThat( queueDepth, is( 3 ) );
+        assertThat( executor.getMaxQueueDepth( ), is( 3 ) );
+        assertThat( executor.getCallerRunCount( ), is( 0L ) );
+    }
+
+    @Test
+    public void response_is_processed_by_caller_when_queue_is_full( ) throws Exception {
+        // Setup
+        final ApiResponseExecutor executor = new ApiResponseExecutor( 1, 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        executor.execute( ( ) -> {
+            try {
+                release.await( );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread( ).interrupt( );
+            }
+        } );
+        executor.execute( ( ) -> {
+        } );
+        final AtomicReference<Thread> thread = new AtomicReference<>( );
+        // Exercise
+        executor.execute( ( ) -> thread.set( Thread.currentThread( ) ) );
+        release.countDown( );
+        // Verify
+        assertThat( thread.get( ), is( Thread.currentThread( ) ) );
+        assertThat( executor.getCallerRunCount( ), is( 1L ) );
+    }
+
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.net.HttpHeaders;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiSessionTest {
+
+    private static ApiRequest request( final String serverUrl, final String user, final String token ) {
+        return ApiRequestBuilder.newRequest( )
+                .to( serverUrl )
+                .forUser( user )
+                .withPassword( "pwd" )
+                .withToken( token )
+                .request( "projects" )
+                .apiVersion( ApiVersion.API_8_1 )
+                .build( );
+    }
+
+    @Test
+    public void authenticate_sends_basic_credentials_when_no_session_is_opened( ) throws Exception {
+        // Setup
+        final ApiSession session = new ApiSession( );
+        final Map<String, String> headers = Maps.newHashMap( );
+        // Exercise
+        final boolean withSession = session.authenticate( request( "http://localhost", "user", null ), headers );
+        // Verify
+        assertThat( withSession, is( false ) );
+        assertThat( headers.get( HttpHeaders.AUTHORIZATION ), is( "Basic dXNlcjpwd2Q=" ) );
+        assertThat( session.getAuthenticatedCount( ), is( 1L ) );
+    }
+
+    @Test
+    public void authenticate_sends_bearer_token_when_defined( ) throws Exception {
+        // Setup
+        final ApiSession session = new ApiSession( );
+        final Map<String, String> headers = Maps.newHashMap( );
+        // Exercise
+        session.authenticate( request( "http://localhost", "user", "t0k3n" ), headers );
+        // Verify
+        assertThat( headers.get( HttpHeaders.AUTHORIZATION ), is( "Bearer t0k3n" ) );
+    }
+
+    @Test
+    public void authenticate_sends_nothing_in_guest_mode( ) throws Exception {
+        // Setup
+        final ApiSession session = new ApiSession( );
+        final Map<String, String> headers = Maps.newHashMap( );
+        // Exercise
+        session.authenticate( request( "http://localhost", null, null ), headers );
+        // Verify
+        assertThat( headers.isEmpty( ), is( true ) );
+        assertThat( session.getAuthenticatedCount( ), is( 0L ) );
+    }
+
+    @Test
+    public void authenticate_sends_session_cookie_once_captured( ) throws Exception {
+        // Setup
+        final ApiSession session = new ApiSession( );
+        final ApiRequest request = request( "http://localhost", "user", null );
+        session.authenticate( request, Maps.newHashMap( ) );
+        session.capture( request, ImmutableList.of( "RememberMe=; Path=/", "TCSESSIONID=abc123; Path=/; HttpOnly" ) );
+        final Map<String, String> headers = Maps.newHashMap( );
+        // Exercise
+        final boolean withSession = session.authenticate( request( "http://localhost", "user", null ), headers );
+        // Verify
+        assertThat( withSession, is( true ) );
+        assertThat( headers.get( HttpHeaders.COOKIE ), is( "TCSESSIONID=abc123" ) );
+        assertThat( headers.containsKey( HttpHeaders.AUTHORIZATION ), is( false ) );
+        assertThat( session.getReusedCount( ), is( 1L ) );
+        assertThat( session.getReuseRatio( ), is( 0.5 ) );
+    }
+
+    @Test
+    public void session_is_not_reused_for_another_user_or_server( ) throws Exception {
+        // Setup
+        final ApiSession session = new ApiSession( );
+        session.capture( request( "http://localhost", "user", null ), ImmutableList.of( "TCSESSIONID=abc123" ) );
+        // Exercise
+        // Verify
+        assertThat( session.getSessionCookie( request( "http://localhost", "other", null ) ), is( Optional.<String>empty( ) ) );
+        assertThat( session.getSessionCookie( request( "http://otherhost", "user", null ) ), is( Optional.<String>empty( ) ) );
+        assertThat( session.getSessionCookie( request( "http://localhost/", "user", null ) ), is( Optional.of( "TCSESSIONID=abc123" ) ) );
+    }
+
+    @Test
+    public void expire_forgets_session_so_that_next_request_logs_in_again( ) throws Exception {
+        // Setup
+        final ApiSession session = new ApiSession( );
+        final ApiRequest request = request( "http://localhost", "user", null );
+        session.capture( request, ImmutableList.of( "TCSESSIONID=abc123" ) );
+        final Map<String, String> headers = Maps.newHashMap( );
+        // Exercise
+        session.expire( request );
+        // Verify
+        assertThat( session.authenticate( request, headers ), is( false ) );
+        assertThat( headers.get( HttpHeaders.AUTHORIZATION ), is( "Basic dXNlcjpwd2Q=" ) );
+        assertThat( session.getExpiredCount( ), is( 1L ) );
+    }
+
+}
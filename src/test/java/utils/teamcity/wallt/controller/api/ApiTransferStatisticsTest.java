@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class ApiTransferStatisticsTest {
+
+    private final ApiTransferStatistics _statistics = new ApiTransferStatistics( );
+
+    @Test
+    public void record_accumulates_sizes_by_endpoint( ) throws Exception {
+        // Setup
+        // Exercise
+        _statistics.record( ApiEndpoint.BUILD_TYPES, 100, 1000, 10 );
+        _statistics.record( ApiEndpoint.BUILD_TYPES, 200, 1000, 20 );
+        _statistics.record( ApiEndpoint.PROJECTS, 50, 50, 5 );
+        // Verify
+        assertThat( _statistics.getResponseCount( ApiEndpoint.BUILD_TYPES ), is( 2L ) );
+        assertThat( _statistics.getWireBytes( ApiEndpoint.BUILD_TYPES ), is( 300L ) );
+        assertThat( _statistics.getDecodedBytes( ApiEndpoint.BUILD_TYPES ), is( 2000L ) );
+        assertThat( _statistics.getSavedBytes( ApiEndpoint.BUILD_TYPES ), is( 1700L ) );
+        assertThat( _statistics.getCompressionRatio( ApiEndpoint.BUILD_TYPES ), is( 0.15 ) );
+        assertThat( _statistics.getDecodingTime( ApiEndpoint.BUILD_TYPES ), is( Duration.ofNanos( 30 ) ) );
+        assertThat( _statistics.getWireBytes( ApiEndpoint.PROJECTS ), is( 50L ) );
+    }
+
+    @Test
+    public void compression_ratio_is_one_without_response( ) throws Exception {
+        // Setup
+        // Exercise
+        // Verify
+        assertThat( _statistics.getCompressionRatio( ApiEndpoint.BUILDS ), is( 1.0 ) );
+    }
+}
@@ -18,6 +18,7 @@ package utils.teamcity.wallt.controller.api;
 import org.junit.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 
@@ -36,6 +37,7 @@ public class ApiVersionTest {
         assertThat( ApiVersion.API_6_0.getIdentifier( ), is( "6.0" ) );
         assertThat( ApiVersion.API_8_0.getIdentifier( ), is( "8.0" ) );
         assertThat( ApiVersion.API_8_1.getIdentifier( ), is( "8.0" ) );
+        assertThat( ApiVersion.API_2017_2.getIdentifier( ), is( "2017.2" ) );
     }
 
     @Test
@@ -46,6 +48,7 @@ public class ApiVersionTest {
         assertThat( ApiVersion.API_6_0.getName( ), is( "6.0" ) );
         assertThat( ApiVersion.API_8_0.getName( ), is( "8.0" ) );
         assertThat( ApiVersion.API_8_1.getName( ), is( "8.1" ) );
+        assertThat( ApiVersion.API_2017_2.getName( ), is( "2017.2" ) );
     }
 
     @Test
@@ -57,6 +60,41 @@ public class ApiVersionTest {
         assertThat( ApiVersion.API_8_0.isSupported( ApiFeature.QUEUE_STATUS ), is( false ) );
         assertThat( ApiVersion.API_8_1.isSupported( ApiFeature.QUEUE_STATUS ), is( true ) );
         assertThat( ApiVersion.API_8_0.isSupported( ApiFeature.QUEUE_STATUS, ApiFeature.BUILD_TYPE_STATUS ), is( false ) );
+        assertThat( ApiVersion.API_8_1.isSupported( ApiFeature.MULTIPLE_BUILD_TYPE_STATUS ), is( false ) );
+        assertThat( ApiVersion.API_2017_2.isSupported( ApiFeature.MULTIPLE_BUILD_TYPE_STATUS ), is( true ) );
+        assertThat( ApiVersion.API_8_1.isSupported( ApiFeature.FIELDS_PROJECTION ), is( false ) );
+        assertThat( ApiVersion.API_2017_2.isSupported( ApiFeature.FIELDS_PROJECTION ), is( true ) );
+        assertThat( ApiVersion.API_8_1.isSupported( ApiFeature.PAGED_LOCATOR ), is( false ) );
+        assertThat( ApiVersion.API_2017_2.isSupported( ApiFeature.PAGED_LOCATOR ), is( true ) );
+    }
+
+    @Test
+    public void bestFor_returns_newest_version_not_newer_than_server( ) throws Exception {
+        // Setup
+        // Exercise
+        // Verify
+        assertThat( ApiVersion.bestFor( 2018, 1 ), is( ApiVersion.API_2017_2 ) );
+        assertThat( ApiVersion.bestFor( 2017, 2 ), is( ApiVersion.API_2017_2 ) );
+        assertThat( ApiVersion.bestFor( 10, 0 ), is( ApiVersion.API_8_1 ) );
+        assertThat( ApiVersion.bestFor( 8, 0 ), is( ApiVersion.API_8_0 ) );
+        assertThat( ApiVersion.bestFor( 5, 0 ), is( ApiVersion.API_6_0 ) );
+    }
+
+    @Test
+    public void probingOrder_returns_one_version_by_identifier_newest_first( ) throws Exception {
+        // Setup
+        // Exercise
+        // Verify
+        assertThat( ApiVersion.probingOrder( ), contains( ApiVersion.API_2017_2, ApiVersion.API_8_1, ApiVersion.API_7_0, ApiVersion.API_6_0 ) );
+    }
+
+    @Test
+    public void cheapestFor_returns_change_feed_only_when_supported( ) throws Exception {
+        // Setup
+        // Exercise
+        // Verify
+        assertThat( PollingStrategy.cheapestFor( ApiVersion.API_2017_2 ), is( PollingStrategy.CHANGE_FEED ) );
+        assertThat( PollingStrategy.cheapestFor( ApiVersion.API_8_1 ), is( PollingStrategy.LAST_BUILD_STATUS ) );
     }
 
     @Test
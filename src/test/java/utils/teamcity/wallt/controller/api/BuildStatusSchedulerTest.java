@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import utils.teamcity.wallt.TestClock;
+import utils.teamcity.wallt.model.build.BuildData;
+import utils.teamcity.wallt.model.build.BuildState;
+import utils.teamcity.wallt.model.build.BuildStatus;
+import utils.teamcity.wallt.model.build.BuildTypeData;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class BuildStatusSchedulerTest {
+
+    private TestClock _clock;
+    private BuildStatusScheduler _scheduler;
+
+    @Before
+    public void setUp( ) {
+        _clock = new TestClock( );
+        _scheduler = new BuildStatusScheduler( _clock, 0, ( ) -> 0.5 );
+    }
+
+    @Test
+    public void new_monitored_build_type_is_due_immediately( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        // Exercise
+        // Verify
+        assertThat( _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) ), contains( buildType ) );
+    }
+
+    @Test
+    public void polled_build_type_is_not_due_again_until_rescheduled( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) );
+        // Exercise
+        _clock.advance( Duration.ofHours( 1 ) );
+        // Verify
+        assertThat( _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) ), is( empty( ) ) );
+    }
+
+    @Test
+    public void rescheduled_build_type_is_due_after_its_delay( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        buildType.setQueued( true );
+        _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) );
+        _scheduler.reschedule( ImmutableList.of( buildType ) );
+        // Exercise
+        _clock.advance( BuildStatusScheduler.QUEUED_DELAY.minusSeconds( 1 ) );
+        assertThat( _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) ), is( empty( ) ) );
+        _clock.advance( Duration.ofSeconds( 1 ) );
+        // Verify
+        assertThat( _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) ), contains( buildType ) );
+    }
+
+    @Test
+    public void build_type_not_monitored_anymore_is_not_due( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) );
+        _scheduler.reschedule( ImmutableList.of( buildType ) );
+        _scheduler.pollDueBuildTypes( ImmutableList.of( ) );
+        // Exercise
+        _clock.advance( Duration.ofHours( 1 ) );
+        // Verify
+        assertThat( _scheduler.pollDueBuildTypes( ImmutableList.of( ) ), is( empty( ) ) );
+    }
+
+    @Test
+    public void running_build_is_checked_at_its_estimated_end( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        buildType.registerBuild( new BuildData( 1, BuildStatus.SUCCESS, BuildState.running, 90, Optional.empty( ), Duration.ofSeconds( 8 ) ) );
+        // Exercise
+        // Verify
+        assertThat( _scheduler.nextCheckDelay( buildType ), is( Duration.ofSeconds( 8 ) ) );
+    }
+
+    @Test
+    public void running_build_far_from_its_end_is_checked_at_max_running_delay( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        buildType.registerBuild( new BuildData( 1, BuildStatus.SUCCESS, BuildState.running, 10, Optional.empty( ), Duration.ofMinutes( 30 ) ) );
+        // Exercise
+        // Verify
+        assertThat( _scheduler.nextCheckDelay( buildType ), is( BuildStatusScheduler.MAX_RUNNING_DELAY ) );
+    }
+
+    @Test
+    public void overdue_running_build_is_checked_at_min_delay( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        buildType.registerBuild( new BuildData( 1, BuildStatus.SUCCESS, BuildState.running, 100, Optional.empty( ), Duration.ZERO ) );
+        // Exercise
+        // Verify
+        assertThat( _scheduler.nextCheckDelay( buildType ), is( BuildStatusScheduler.MIN_DELAY ) );
+    }
+
+    @Test
+    public void failed_build_type_is_checked_at_failure_delay( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        buildType.registerBuild( finishedBuild( BuildStatus.FAILURE, Duration.ofDays( 30 ) ) );
+        // Exercise
+        // Verify
+        assertThat( _scheduler.nextCheckDelay( buildType ), is( BuildStatusScheduler.FAILURE_DELAY ) );
+    }
+
+    @Test
+    public void inactive_build_type_is_checked_less_often( ) throws Exception {
+        // Setup
+        final BuildTypeData recent = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        recent.registerBuild( finishedBuild( BuildStatus.SUCCESS, Duration.ofMinutes( 10 ) ) );
+        final BuildTypeData daily = new BuildTypeData( "bt2", "name", "pid", "pname" );
+        daily.registerBuild( finishedBuild( BuildStatus.SUCCESS, Duration.ofHours( 5 ) ) );
+        final BuildTypeData weekly = new BuildTypeData( "bt3", "name", "pid", "pname" );
+        weekly.registerBuild( finishedBuild( BuildStatus.SUCCESS, Duration.ofDays( 3 ) ) );
+        final BuildTypeData inactive = new BuildTypeData( "bt4", "name", "pid", "pname" );
+        inactive.registerBuild( finishedBuild( BuildStatus.SUCCESS, Duration.ofDays( 30 ) ) );
+        // Exercise
+        // Verify
+        assertThat( _scheduler.nextCheckDelay( recent ), is( BuildStatusScheduler.RECENT_ACTIVITY_DELAY ) );
+        assertThat( _scheduler.nextCheckDelay( daily ), is( BuildStatusScheduler.DAILY_ACTIVITY_DELAY ) );
+        assertThat( _scheduler.nextCheckDelay( weekly ), is( BuildStatusScheduler.WEEKLY_ACTIVITY_DELAY ) );
+        assertThat( _scheduler.nextCheckDelay( inactive ), is( BuildStatusScheduler.NO_ACTIVITY_DELAY ) );
+    }
+
+    @Test
+    public void idle_build_type_is_checked_at_its_phase_between_half_and_one_and_a_half_delay( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        final Instant now = _clock.instant( );
+        final long delay = BuildStatusScheduler.RECENT_ACTIVITY_DELAY.toMillis( );
+        // Exercise
+        final Instant nextCheckTime = _scheduler.nextCheckTime( buildType, now );
+        // Verify
+        final long elapsed = Duration.between( now, nextCheckTime ).toMillis( );
+        assertThat( elapsed, greaterThanOrEqualTo( delay / 2 ) );
+        assertThat( elapsed, lessThan( delay + delay / 2 ) );
+        assertThat( Math.floorMod( nextCheckTime.toEpochMilli( ), delay ), is( _scheduler.getPhase( buildType, delay ) ) );
+    }
+
+    @Test
+    public void phase_is_stable_for_a_build_type( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        final BuildTypeData sameBuildType = new BuildTypeData( "bt1", "other name", "pid", "pname" );
+        // Exercise
+        // Verify
+        assertThat( _scheduler.getPhase( buildType, 60_000 ), is( _scheduler.getPhase( sameBuildType, 60_000 ) ) );
+        assertThat( new BuildStatusScheduler( _clock, 0, ( ) -> 0.5 ).getPhase( buildType, 60_000 ), is( _scheduler.getPhase( buildType, 60_000 ) ) );
+    }
+
+    @Test
+    public void phase_depends_on_seed( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        // Exercise
+        final long otherPhase = new BuildStatusScheduler( _clock, 42, ( ) -> 0.5 ).getPhase( buildType, 60_000 );
+        // Verify
+        assertThat( otherPhase, is( not( _scheduler.getPhase( buildType, 60_000 ) ) ) );
+    }
+
+    @Test
+    public void build_types_rescheduled_together_are_spread_over_their_delay( ) throws Exception {
+        // Setup
+        final Instant now = _clock.instant( );
+        final Set<Long> secondsOfChecks = new TreeSet<>( );
+        // Exercise
+        for ( int i = 0; i < 60; i++ )
+            secondsOfChecks.add( _scheduler.nextCheckTime( new BuildTypeData( "bt" + i, "name", "pid", "pname" ), now ).getEpochSecond( ) );
+        // Verify
+        assertThat( secondsOfChecks.size( ), is( greaterThanOrEqualTo( 30 ) ) );
+    }
+
+    @Test
+    public void jitter_is_bounded_by_a_tenth_of_delay( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        buildType.setQueued( true );
+        final Instant now = _clock.instant( );
+        final long delay = BuildStatusScheduler.QUEUED_DELAY.toMillis( );
+        // Exercise
+        final long earliest = Duration.between( now, new BuildStatusScheduler( _clock, 0, ( ) -> 0 ).nextCheckTime( buildType, now ) ).toMillis( );
+        final long latest = Duration.between( now, new BuildStatusScheduler( _clock, 0, ( ) -> 0.999 ).nextCheckTime( buildType, now ) ).toMillis( );
+        // Verify
+        assertThat( earliest, is( delay - delay / 10 ) );
+        assertThat( latest, is( lessThanOrEqualTo( delay + delay / 10 ) ) );
+    }
+
+    @Test
+    public void hidden_build_type_is_checked_less_often( ) throws Exception {
+        // Setup
+        final BuildTypeData displayed = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        displayed.setQueued( true );
+        final BuildTypeData hidden = new BuildTypeData( "bt2", "name", "pid", "pname" );
+        hidden.setQueued( true );
+        final Instant now = _clock.instant( );
+        // Exercise
+        _scheduler.updateVisibility( ImmutableList.of( displayed ), ImmutableList.of( ), Duration.ofSeconds( 10 ) );
+        // Verify
+        assertThat( _scheduler.isHidden( displayed ), is( false ) );
+        assertThat( _scheduler.isHidden( hidden ), is( true ) );
+        assertThat( _scheduler.nextCheckTime( displayed, now ), is( now.plus( BuildStatusScheduler.QUEUED_DELAY ) ) );
+        assertThat( _scheduler.nextCheckTime( hidden, now ), is( now.plus( BuildStatusScheduler.QUEUED_DELAY.multipliedBy( BuildStatusScheduler.HIDDEN_DELAY_FACTOR ) ) ) );
+    }
+
+    @Test
+    public void build_types_are_all_visible_until_visibility_is_known( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        // Exercise
+        // Verify
+        assertThat( _scheduler.isHidden( buildType ), is( false ) );
+    }
+
+    @Test
+    public void build_type_of_next_screen_is_refreshed_just_before_screen_is_displayed( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        _scheduler.updateVisibility( ImmutableList.of( ), ImmutableList.of( ), Duration.ofSeconds( 10 ) );
+        _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) );
+        _scheduler.reschedule( ImmutableList.of( buildType ) );
+        // Exercise
+        _scheduler.updateVisibility( ImmutableList.of( ), ImmutableList.of( buildType ), Duration.ofSeconds( 10 ) );
+        // Verify
+        _clock.advance( Duration.ofSeconds( 10 ).minus( BuildStatusScheduler.PREFETCH_LEAD ).minusSeconds( 1 ) );
+        assertThat( _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) ), is( empty( ) ) );
+        _clock.advance( Duration.ofSeconds( 1 ) );
+        assertThat( _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) ), contains( buildType ) );
+    }
+
+    @Test
+    public void hidden_build_type_newly_displayed_is_due_immediately( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        _scheduler.updateVisibility( ImmutableList.of( ), ImmutableList.of( ), Duration.ofSeconds( 10 ) );
+        _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) );
+        _scheduler.reschedule( ImmutableList.of( buildType ) );
+        // Exercise
+        _scheduler.updateVisibility( ImmutableList.of( buildType ), ImmutableList.of( ), Duration.ofSeconds( 10 ) );
+        // Verify
+        assertThat( _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) ), contains( buildType ) );
+    }
+
+    @Test
+    public void build_type_already_visible_is_not_refreshed_again( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        _scheduler.updateVisibility( ImmutableList.of( ), ImmutableList.of( buildType ), Duration.ofSeconds( 10 ) );
+        _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) );
+        _scheduler.reschedule( ImmutableList.of( buildType ) );
+        // Exercise
+        _scheduler.updateVisibility( ImmutableList.of( buildType ), ImmutableList.of( ), Duration.ofSeconds( 10 ) );
+        // Verify
+        assertThat( _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) ), is( empty( ) ) );
+    }
+
+    @Test
+    public void idle_build_type_is_only_reconciled_while_push_is_healthy( ) throws Exception {
+        // Setup
+        final BuildTypeData idle = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        idle.setQueued( true );
+        final BuildTypeData running = new BuildTypeData( "bt2", "name", "pid", "pname" );
+        running.registerBuild( new BuildData( 1, BuildStatus.SUCCESS, BuildState.running, 10, Optional.empty( ), Duration.ofSeconds( 30 ) ) );
+        final Instant now = _clock.instant( );
+        // Exercise
+        _scheduler.setPushHealthy( true );
+        // Verify
+        final long reconciliationDelay = BuildStatusScheduler.RECONCILIATION_DELAY.toMillis( );
+        assertThat( Duration.between( now, _scheduler.nextCheckTime( idle, now ) ).toMillis( ), is( greaterThanOrEqualTo( reconciliationDelay / 2 ) ) );
+        assertThat( _scheduler.nextCheckTime( running, now ), is( now.plusSeconds( 30 ) ) );
+    }
+
+    @Test
+    public void reconciled_build_type_is_checked_at_its_usual_delay_when_push_is_not_healthy_anymore( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        buildType.setQueued( true );
+        _scheduler.setPushHealthy( true );
+        _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) );
+        _scheduler.reschedule( ImmutableList.of( buildType ) );
+        // Exercise
+        _scheduler.setPushHealthy( false );
+        // Verify
+        _clock.advance( BuildStatusScheduler.QUEUED_DELAY );
+        assertThat( _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) ), contains( buildType ) );
+    }
+
+    @Test
+    public void refreshed_build_type_is_due_immediately( ) throws Exception {
+        // Setup
+        final BuildTypeData buildType = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) );
+        _scheduler.reschedule( ImmutableList.of( buildType ) );
+        // Exercise
+        _scheduler.refresh( buildType );
+        // Verify
+        assertThat( _scheduler.pollDueBuildTypes( ImmutableList.of( buildType ) ), contains( buildType ) );
+    }
+
+    private BuildData finishedBuild( final BuildStatus status, final Duration finishedSince ) {
+        final LocalDateTime finishedDate = LocalDateTime.now( _clock ).minus( finishedSince );
+        return new BuildData( 1, status, BuildState.finished, 100, Optional.of( finishedDate ), Duration.ZERO );
+    }
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.ning.http.client.AsyncHttpClient;
+import utils.teamcity.wallt.model.configuration.Configuration;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares throughput and latency of http transports, sending status-like requests to a local stub server
+ * with a fixed number of concurrent requests.
+ * <p>
+ * Run it as a java application: args are [requests] [concurrent requests] [server latency in ms]
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public final class HttpTransportBenchmark {
+
+    private static final int WARMUP_REQUESTS = 500;
+    private static final String BODY = "{\"count\":1,\"build\":[{\"id\":12345,\"status\":\"SUCCESS\",\"state\":\"finished\",\"running\":false,\"finishDate\":\"20261018T101500+0200\"}]}";
+
+    private HttpTransportBenchmark( ) {
+    }
+
+    public static void main( final String[] args ) throws Exception {
+        final int requests = args.length > 0 ? Integer.parseInt( args[0] ) : 5000;
+        final int concurrency = args.length > 1 ? Integer.parseInt( args[1] ) : 32;
+        final long latencyInMs = args.length > 2 ? Long.parseLong( args[2] ) : 5;
+
+        final ExecutorService executorService = Executors.newCachedThreadPool( );
+        try ( StubApiServer server = new StubApiServer( BODY.getBytes( Charsets.UTF_8 ), latencyInMs );
+              AsyncHttpClient httpClient = new AsyncHttpClient( new ApiModule( ).httpClientConfig( ) ) ) {
+            final Configuration configuration = new Configuration( );
+            final ApiRequest request = ApiRequestBuilder.newRequest( )
+                    .to( server.getUrl( ) )
+                    .forUser( "user" )
+                    .withPassword( "pwd" )
+                    .request( "builds/id:12345" )
+                    .apiVersion( ApiVersion.API_8_1 )
+                    .build( );
+
+            final IApiTransport ningTransport = new NingApiTransport( configuration, httpClient );
+            final IApiTransport jdkTransport = new JdkApiTransport( configuration, executorService );
+
+            System.out.println( requests + " requests, " + concurrency + " concurrent, server latency " + latencyInMs + " ms" );
+            run( ningTransport, request, WARMUP_REQUESTS, concurrency );
+            run( jdkTransport, request, WARMUP_REQUESTS, concurrency );
+
+            report( "ning", run( ningTransport, request, requests, concurrency ), requests );
+            report( "jdk", run( jdkTransport, request, requests, concurrency ), requests );
+        } finally {
+            executorService.shutdownNow( );
+        }
+    }
+
+    private static Result run( final IApiTransport transport, final ApiRequest request, final int requests, final int concurrency ) throws Exception {
+        final Semaphore inFlight = new Semaphore( concurrency );
+        final List<Long> latencies = Collections.synchronizedList( Lists.newArrayListWithCapacity( requests ) );
+        final List<ListenableFuture<ApiTransportResponse>> futures = Lists.newArrayListWithCapacity( requests );
+
+        final long before = System.nanoTime( );
+        for ( int i = 0; i < requests; i++ ) {
+            inFlight.acquire( );
+            final long start = System.nanoTime( );
+            final ListenableFuture<ApiTransportResponse> future = transport.get( request, ImmutableMap.of( ) );
+            future.addListener( ( ) -> {
+                latencies.add( System.nanoTime( ) - start );
+                inFlight.release( );
+            }, Runnable::run );
+            futures.add( future );
+        }
+        for ( final ListenableFuture<ApiTransportResponse> future : futures ) {
+            final ApiTransportResponse response = future.get( 60, TimeUnit.SECONDS );
+            if ( response.getStatusCode( ) != 200 || ByteStreams.toByteArray( response.getBody( ) ).length == 0 )
+                throw new IllegalStateException( "Unexpected response: " + response.getStatusCode( ) );
+        }
+        final long elapsed = System.nanoTime( ) - before;
+
+        final List<Long> sortedLatencies = Lists.newArrayList( latencies );
+        Collections.sort( sortedLatencies );
+        return new Result( elapsed, sortedLatencies );
+    }
+
+    private static void report( final String name, final Result result, final int requests ) {
+        System.out.println( String.format( "%-5s %8.0f requests/s   latency p50 %6.2f ms   p95 %6.2f ms   p99 %6.2f ms",
+                name, requests / ( result._elapsed / 1e9 ), result.percentile( 0.5 ), result.percentile( 0.95 ), result.percentile( 0.99 ) ) );
+    }
+
+    private static final class Result {
+
+        private final long _elapsed;
+        private final List<Long> _sortedLatencies;
+
+        Result( final long elapsed, final List<Long> sortedLatencies ) {
+            _elapsed = elapsed;
+            _sortedLatencies = sortedLatencies;
+        }
+
+        double percentile( final double percentile ) {
+            final int index = Math.min( _sortedLatencies.size( ) - 1, (int) Math.ceil( percentile * _sortedLatencies.size( ) ) - 1 );
+            return _sortedLatencies.get( Math.max( 0, index ) ) / 1e6;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.net.HttpHeaders;
+import com.ning.http.client.AsyncHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import utils.teamcity.wallt.model.configuration.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class NingApiTransportTest {
+
+    private static final String BODY = "{\"count\":0}";
+
+    private final Configuration _configuration = new Configuration( );
+    private StubApiServer _server;
+    private AsyncHttpClient _httpClient;
+    private IApiTransport _transport;
+
+    @Before
+    public void setUp( ) throws Exception {
+        _server = new StubApiServer( BODY.getBytes( Charsets.UTF_8 ), 0 );
+        _httpClient = new AsyncHttpClient( new ApiModule( ).httpClientConfig( ) );
+        _transport = new NingApiTransport( _configuration, _httpClient );
+    }
+
+    @After
+    public void tearDown( ) throws Exception {
+        _httpClient.close( );
+        _server.close( );
+    }
+
+    private ApiRequest request( final String user ) {
+        return ApiRequestBuilder.newRequest( )
+                .to( _server.getUrl( ) )
+                .forUser( user )
+                .withPassword( "pwd" )
+                .request( "projects" )
+                .apiVersion( ApiVersion.API_8_1 )
+                .build( );
+    }
+
+    @Test
+    public void get_returns_status_headers_and_body_of_response( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiTransportResponse response = _transport.get( request( null ), ImmutableMap.of( ) ).get( 10, TimeUnit.SECONDS );
+        // Verify
+        assertThat( response.getStatusCode( ), is( 200 ) );
+        assertThat( response.getHeader( "etag" ), is( "\"stub\"" ) );
+        assertThat( new String( ByteStreams.toByteArray( response.getBody( ) ), Charsets.UTF_8 ), is( BODY ) );
+    }
+
+    @Test
+    public void get_sends_headers( ) throws Exception {
+        // Setup
+        // Exercise
+        _transport.get( request( "user" ), ImmutableMap.of( HttpHeaders.ACCEPT, "application/json", HttpHeaders.COOKIE, "TCSESSIONID=abc" ) ).get( 10, TimeUnit.SECONDS );
+        // Verify
+        assertThat( _server.getLastRequestHeaders( ).getFirst( HttpHeaders.ACCEPT ), is( "application/json" ) );
+        assertThat( _server.getLastRequestHeaders( ).getFirst( HttpHeaders.COOKIE ), is( "TCSESSIONID=abc" ) );
+        assertThat( _server.getLastRequestHeaders( ).containsKey( HttpHeaders.AUTHORIZATION ), is( false ) );
+    }
+
+    @Test
+    public void get_returns_all_values_of_header( ) throws Exception {
+        // Setup
+        // Exercise
+        final ApiTransportResponse response = _transport.get( request( null ), ImmutableMap.of( ) ).get( 10, TimeUnit.SECONDS );
+        // Verify
+        assertThat( response.getHeaders( "set-cookie" ), containsInAnyOrder( "TCSESSIONID=stub; Path=/", "RememberMe=; Path=/" ) );
+        assertThat( response.getHeaders( "X-Unknown" ), is( empty( ) ) );
+    }
+
+    @Test
+    public void get_returns_error_status_of_response( ) throws Exception {
+        // Setup
+        _server.setStatusCode( 404 );
+        // Exercise
+        final ApiTransportResponse response = _transport.get( request( null ), ImmutableMap.of( ) ).get( 10, TimeUnit.SECONDS );
+        // Verify
+        assertThat( response.getStatusCode( ), is( 404 ) );
+    }
+
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import org.junit.Test;
+import utils.teamcity.wallt.TestClock;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class PollCycleWatchdogTest {
+
+    private static final Duration MAX_AGE = Duration.ofMinutes( 5 );
+
+    private final TestClock _clock = new TestClock( );
+    private final PollCycleWatchdog _watchdog = new PollCycleWatchdog( _clock );
+
+    @Test
+    public void check_cycling_regularly_is_not_stalled( ) throws Exception {
+        // Setup
+        // Exercise
+        for ( int i = 0; i < 10; i++ ) {
+            _watchdog.started( "status" );
+            _clock.advance( Duration.ofMinutes( 1 ) );
+            _watchdog.done( "status", false );
+        }
+        // Verify
+        assertThat( _watchdog.findStalledChecks( MAX_AGE ), is( empty( ) ) );
+        assertThat( _watchdog.getLastDoneTime( "status" ), is( Optional.of( _clock.instant( ) ) ) );
+    }
+
+    @Test
+    public void check_running_for_longer_than_max_age_is_stalled( ) throws Exception {
+        // Setup
+        _watchdog.started( "status" );
+        _watchdog.started( "queue" );
+        _watchdog.done( "queue", false );
+        // Exercise
+        _clock.advance( MAX_AGE.plusSeconds( 1 ) );
+        _watchdog.started( "queue" );
+        // Verify
+        assertThat( _watchdog.findStalledChecks( MAX_AGE ), contains( "status" ) );
+    }
+
+    @Test
+    public void check_not_cycling_anymore_is_stalled( ) throws Exception {
+        // Setup
+        _watchdog.started( "status" );
+        _watchdog.done( "status", false );
+        // Exercise
+        _clock.advance( MAX_AGE.plusSeconds( 1 ) );
+        // Verify
+        assertThat( _watchdog.findStalledChecks( MAX_AGE ), contains( "status" ) );
+    }
+
+    @Test
+    public void overrun_cycles_are_counted_by_check( ) throws Exception {
+        // Setup
+        _watchdog.started( "status" );
+        _watchdog.done( "status", true );
+        _watchdog.started( "queue" );
+        _watchdog.done( "queue", false );
+        // Exercise
+        _watchdog.started( "status" );
+        _watchdog.done( "status", true );
+        // Verify
+        assertThat( _watchdog.getOverrunCount( ), is( 2L ) );
+        assertThat( _watchdog.getOverrunCount( "status" ), is( 2L ) );
+        assertThat( _watchdog.getOverrunCount( "queue" ), is( 0L ) );
+        assertThat( _watchdog.getOverrunCount( "unknown" ), is( 0L ) );
+    }
+}
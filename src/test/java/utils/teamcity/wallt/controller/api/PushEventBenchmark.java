@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.base.Charsets;
+import com.google.common.eventbus.EventBus;
+import org.mockito.Mockito;
+import utils.teamcity.wallt.model.build.BuildTypeData;
+import utils.teamcity.wallt.model.build.IBuildTypeManager;
+import utils.teamcity.wallt.model.build.IProjectManager;
+import utils.teamcity.wallt.model.configuration.Configuration;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Posts synthetic webhook build events to a local push listener, with a fixed number of concurrent senders,
+ * and reports how fast they are accepted.
+ * <p>
+ * Run it as a java application: args are [events] [concurrent senders] [build types]
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public final class PushEventBenchmark {
+
+    static final String SECRET = "s3cr3t";
+
+    private PushEventBenchmark( ) {
+    }
+
+    public static void main( final String[] args ) throws Exception {
+        final int events = args.length > 0 ? Integer.parseInt( args[0] ) : 20000;
+        final int concurrency = args.length > 1 ? Integer.parseInt( args[1] ) : 16;
+        final int buildTypeCount = args.length > 2 ? Integer.parseInt( args[2] ) : 200;
+
+        final List<BuildTypeData> buildTypes = IntStream.rangeClosed( 1, buildTypeCount )
+                .mapToObj( i -> new BuildTypeData( "bt" + i, "name", "pid", "pname" ) )
+                .collect( Collectors.toList( ) );
+        final IBuildTypeManager buildManager = mock( IBuildTypeManager.class );
+        when( buildManager.getBuildType( Mockito.anyString( ) ) ).thenReturn( Optional.empty( ) );
+        for ( final BuildTypeData buildType : buildTypes )
+            when( buildManager.getBuildType( buildType.getId( ) ) ).thenReturn( Optional.of( buildType ) );
+        final IProjectManager projectManager = mock( IProjectManager.class );
+        when( projectManager.getProject( Mockito.anyString( ) ) ).thenReturn( Optional.empty( ) );
+        final Configuration configuration = new Configuration( );
+        configuration.setPushPort( freePort( ) );
+        configuration.setPushSecret( SECRET );
+
+        final ApiPushListener listener = new ApiPushListener( configuration, buildManager, projectManager, new EventBus( ) );
+        listener.start( buildType -> {
+        } );
+        try {
+            final String url = "http://127.0.0.1:" + configuration.getPushPort( ) + ApiPushListener.PUSH_PATH;
+            System.out.println( events + " events, " + concurrency + " concurrent senders, " + buildTypeCount + " build types" );
+            final long start = System.nanoTime( );
+            final int accepted = post( url, syntheticEvents( events, buildTypeCount ), concurrency );
+            final long elapsed = System.nanoTime( ) - start;
+            System.out.println( String.format( "%d events accepted, %.0f events/s, %d applied", accepted, accepted / ( elapsed / 1e9 ), listener.getAppliedCount( ) ) );
+        } finally {
+            listener.stop( );
+        }
+    }
+
+    /**
+     * Started then finished events, spread over build types bt1 to btN
+     */
+    static List<String> syntheticEvents( final int count, final int buildTypeCount ) {
+        return IntStream.range( 0, count )
+                .mapToObj( i -> event( i % 2 == 0 ? "buildStarted" : "buildFinished", "bt" + ( 1 + ( i / 2 ) % buildTypeCount ), String.valueOf( i / 2 ), "success" ) )
+                .collect( Collectors.toList( ) );
+    }
+
+    static String event( final String notifyType, final String buildTypeId, final String buildId, final String buildResult ) {
+        return "{\"build\":{\"notifyType\":\"" + notifyType + "\",\"buildTypeId\":\"" + buildTypeId + "\",\"buildId\":\"" + buildId
+                + "\",\"buildResult\":\"" + buildResult + "\",\"buildStatus\":\"Running\",\"projectName\":\"pname\"}}";
+    }
+
+    /**
+     * @return Count of events accepted by listener
+     */
+    static int post( final String url, final List<String> events, final int concurrency ) throws InterruptedException {
+        final AtomicInteger accepted = new AtomicInteger( );
+        final ExecutorService executorService = Executors.newFixedThreadPool( concurrency );
+        try {
+            for ( final String event : events )
+                executorService.execute( ( ) -> {
+                    try {
+                        if ( post( url, event ) == HttpURLConnection.HTTP_ACCEPTED )
+                            accepted.incrementAndGet( );
+                    } catch ( IOException ignored ) {
+                        // Not accepted
+                    }
+                } );
+        } finally {
+            executorService.shutdown( );
+            executorService.awaitTermination( 5, TimeUnit.MINUTES );
+        }
+        return accepted.get( );
+    }
+
+    static int post( final String url, final String event ) throws IOException {
+        return post( url, SECRET, event );
+    }
+
+    static int post( final String url, final String secret, final String event ) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL( url ).openConnection( );
+        connection.setRequestMethod( "POST" );
+        connection.setDoOutput( true );
+        connection.setRequestProperty( "Content-Type", "application/json" );
+        if ( secret != null )
+            connection.setRequestProperty( ApiPushListener.PUSH_SECRET_HEADER, secret );
+        try ( OutputStream out = connection.getOutputStream( ) ) {
+            out.write( event.getBytes( Charsets.UTF_8 ) );
+        }
+        final int responseCode = connection.getResponseCode( );
+        connection.disconnect( );
+        return responseCode;
+    }
+
+    static int freePort( ) throws IOException {
+        try ( ServerSocket socket = new ServerSocket( 0 ) ) {
+            return socket.getLocalPort( );
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.controller.api;
+
+import com.google.common.net.HttpHeaders;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local http server answering every request with the same body, after an optional latency
+ *
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+final class StubApiServer implements AutoCloseable {
+
+    static {
+        // Otherwise Nagle's algorithm adds about 40 ms to every response
+        System.setProperty( "sun.net.httpserver.nodelay", "true" );
+    }
+
+    private final HttpServer _server;
+    private final ExecutorService _executorService = Executors.newCachedThreadPool( );
+    private volatile int _statusCode = 200;
+    private volatile Headers _lastRequestHeaders;
+
+    StubApiServer( final byte[] body, final long latencyInMs ) throws IOException {
+        _server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        _server.setExecutor( _executorService );
+        _server.createContext( "/", exchange -> {
+            _lastRequestHeaders = exchange.getRequestHeaders( );
+            try {
+                if ( latencyInMs > 0 )
+                    TimeUnit.MILLISECONDS.sleep( latencyInMs );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread( ).interrupt( );
+            }
+            exchange.getResponseHeaders( ).add( HttpHeaders.CONTENT_TYPE, "application/json" );
+            exchange.getResponseHeaders( ).add( HttpHeaders.ETAG, "\"stub\"" );
+            exchange.getResponseHeaders( ).add( HttpHeaders.SET_COOKIE, "TCSESSIONID=stub; Path=/" );
+            exchange.getResponseHeaders( ).add( HttpHeaders.SET_COOKIE, "RememberMe=; Path=/" );
+            exchange.sendResponseHeaders( _statusCode, body.length );
+            try ( OutputStream out = exchange.getResponseBody( ) ) {
+                out.write( body );
+            }
+        } );
+        _server.start( );
+    }
+
+    String getUrl( ) {
+        return "http://127.0.0.1:" + _server.getAddress( ).getPort( );
+    }
+
+    void setStatusCode( final int statusCode ) {
+        _statusCode = statusCode;
+    }
+
+    Headers getLastRequestHeaders( ) {
+        return _lastRequestHeaders;
+    }
+
+    @Override
+    public void close( ) {
+        _server.stop( 0 );
+        _executorService.shutdownNow( );
+    }
+}
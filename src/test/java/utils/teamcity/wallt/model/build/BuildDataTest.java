@@ -46,4 +46,44 @@ public class BuildDataTest {
         assertThat( data.getTimeLeft( ), is( Duration.ofSeconds( 98 ) ) );
     }
 
+    @Test
+    public void time_left_decreases_with_elapsed_time( ) throws Exception {
+        // Setup
+        final BuildData data = new BuildData( 1, BuildStatus.SUCCESS, BuildState.running, 50, Optional.empty( ), Duration.ofSeconds( 60 ) );
+        // Exercise
+        // Verify
+        assertThat( data.getTimeLeft( Duration.ofSeconds( 20 ) ), is( Duration.ofSeconds( 40 ) ) );
+        assertThat( data.getTimeLeft( Duration.ofSeconds( 90 ) ), is( Duration.ofSeconds( -30 ) ) );
+    }
+
+    @Test
+    public void percentage_complete_progresses_steadily_until_estimated_end( ) throws Exception {
+        // Setup
+        final BuildData data = new BuildData( 1, BuildStatus.SUCCESS, BuildState.running, 50, Optional.empty( ), Duration.ofSeconds( 60 ) );
+        // Exercise
+        // Verify
+        assertThat( data.getPercentageComplete( Duration.ZERO ), is( 50 ) );
+        assertThat( data.getPercentageComplete( Duration.ofSeconds( 30 ) ), is( 75 ) );
+        assertThat( data.getPercentageComplete( Duration.ofSeconds( 60 ) ), is( 100 ) );
+        assertThat( data.getPercentageComplete( Duration.ofSeconds( 90 ) ), is( 100 ) );
+    }
+
+    @Test
+    public void percentage_complete_of_overdue_build_does_not_progress( ) throws Exception {
+        // Setup
+        final BuildData data = new BuildData( 1, BuildStatus.SUCCESS, BuildState.running, 97, Optional.empty( ), Duration.ofSeconds( -10 ) );
+        // Exercise
+        // Verify
+        assertThat( data.getPercentageComplete( Duration.ofSeconds( 30 ) ), is( 97 ) );
+    }
+
+    @Test
+    public void percentage_complete_of_finished_build_does_not_progress( ) throws Exception {
+        // Setup
+        final BuildData data = new BuildData( 1, BuildStatus.SUCCESS, BuildState.finished, 100, Optional.of( LocalDateTime.now( ) ), Duration.ofSeconds( 60 ) );
+        // Exercise
+        // Verify
+        assertThat( data.getPercentageComplete( Duration.ofSeconds( 30 ) ), is( 100 ) );
+    }
+
 }
@@ -23,10 +23,14 @@ import org.junit.Test;
 import utils.teamcity.wallt.TestModules;
 
 import javax.inject.Inject;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 
 /**
  * Date: 02/03/14
@@ -125,6 +129,49 @@ public class BuildTypeManagerTest {
         assertThat( buildTypesInManager.get( 0 ).getAliasName( ), is( "myAlias" ) );
     }
 
+    @Test
+    public void synchronizeBuildTypes_keeps_registered_instances_and_their_builds( ) throws Exception {
+        // Setup
+        final BuildTypeData bt1 = newBuildType( "bt1" );
+        bt1.registerBuild( new BuildData( 1, BuildStatus.SUCCESS, BuildState.finished, 100, Optional.empty( ), Duration.ZERO ) );
+        _buildManager.registerBuildTypes( ImmutableList.of( bt1, newBuildType( "bt2" ) ) );
+        _buildManager.activateMonitoring( bt1 );
+        // Exercise
+        final TopologyChange change = _buildManager.synchronizeBuildTypes( ImmutableList.of( new BuildTypeData( "bt1", "newName", "btProjectId", "btProjectName" ), newBuildType( "bt3" ) ) );
+        // Verify
+        assertThat( _buildManager.getBuildTypes( ).get( 0 ), is( sameInstance( bt1 ) ) );
+        assertThat( _buildManager.getBuildTypes( ).get( 1 ).getId( ), is( "bt3" ) );
+        assertThat( _buildManager.getMonitoredBuildTypes( ), contains( bt1 ) );
+        assertThat( bt1.getName( ), is( "newName" ) );
+        assertThat( bt1.getBuildById( 1 ).isPresent( ), is( true ) );
+        assertThat( change.getAddedIds( ), contains( "bt3" ) );
+        assertThat( change.getRemovedIds( ), contains( "bt2" ) );
+        assertThat( change.getRenamedIds( ), contains( "bt1" ) );
+    }
+
+    @Test
+    public void synchronizeBuildTypes_stops_monitoring_of_removed_build_types( ) throws Exception {
+        // Setup
+        final BuildTypeData bt1 = newBuildType( "bt1" );
+        _buildManager.registerBuildTypes( ImmutableList.of( bt1 ) );
+        _buildManager.activateMonitoring( bt1 );
+        // Exercise
+        final TopologyChange change = _buildManager.synchronizeBuildTypes( ImmutableList.of( newBuildType( "bt2" ) ) );
+        // Verify
+        assertThat( _buildManager.getMonitoredBuildTypes( ).isEmpty( ), is( true ) );
+        assertThat( change.isEmpty( ), is( false ) );
+    }
+
+    @Test
+    public void synchronizeBuildTypes_returns_empty_change_when_nothing_changed( ) throws Exception {
+        // Setup
+        _buildManager.registerBuildTypes( ImmutableList.of( newBuildType( "bt1" ) ) );
+        // Exercise
+        final TopologyChange change = _buildManager.synchronizeBuildTypes( ImmutableList.of( newBuildType( "bt1" ) ) );
+        // Verify
+        assertThat( change.isEmpty( ), is( true ) );
+    }
+
     @Test
     public void when_activating_monitoring_build_is_pushed_into_monitored_build_type_list( ) throws Exception {
         // Setup
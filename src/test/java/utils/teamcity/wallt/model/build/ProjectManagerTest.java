@@ -26,8 +26,10 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 
 /**
  * Date: 02/03/14
@@ -222,6 +224,26 @@ public class ProjectManagerTest {
         assertThat( allChildren, containsInAnyOrder( p11, p12, p111 ) );
     }
 
+    @Test
+    public void synchronizeProjects_keeps_registered_instances_and_their_build_types( ) throws Exception {
+        // Setup
+        final ProjectData p1 = newProject( "p1" );
+        final BuildTypeData bt1 = new BuildTypeData( "bt1", "btName", "p1", "pName" );
+        p1.registerBuildType( bt1 );
+        _projectManager.registerProjects( ImmutableList.of( p1, newProject( "p2" ) ) );
+        _projectManager.activateMonitoring( p1 );
+        // Exercise
+        final TopologyChange change = _projectManager.synchronizeProjects( ImmutableList.of( newProject( "p1", "p3" ), newProject( "p3" ) ) );
+        // Verify
+        assertThat( _projectManager.getProjects( ).get( 0 ), is( sameInstance( p1 ) ) );
+        assertThat( _projectManager.getMonitoredProjects( ), contains( p1 ) );
+        assertThat( p1.getParentId( ), is( Optional.of( "p3" ) ) );
+        assertThat( p1.getBuildTypes( ), contains( bt1 ) );
+        assertThat( change.getAddedIds( ), contains( "p3" ) );
+        assertThat( change.getRemovedIds( ), contains( "p2" ) );
+        assertThat( change.getRenamedIds( ), contains( "p1" ) );
+    }
+
     private ProjectData newProject( final String id ) {
         return new ProjectData( id, "pName", Optional.<String>empty( ) );
     }
@@ -19,6 +19,8 @@ import com.google.common.collect.ImmutableList;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 import utils.teamcity.wallt.controller.api.ApiVersion;
+import utils.teamcity.wallt.controller.api.HttpTransport;
+import utils.teamcity.wallt.controller.api.PollingStrategy;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -40,9 +42,21 @@ public class ConfigurationTest {
         final SavedProjectData project2 = new SavedProjectData( "id2", "name2", "parentId2", "alias2" );
         // Exercise
         configuration.setApiVersion( ApiVersion.API_7_0 );
+        configuration.setAutoDetectApiVersion( false );
+        configuration.setMaxParallelRequests( 12 );
+        configuration.setPollingStrategy( PollingStrategy.CHANGE_FEED );
+        configuration.setHedgedRequests( true );
+        configuration.setPushPort( 8111 );
+        configuration.setPushAddress( "0.0.0.0" );
+        configuration.setPushSecret( "s3cr3t" );
+        configuration.setMaxInteractiveRequests( 7 );
+        configuration.setMaxRequestsPerSecond( 5 );
+        configuration.setMaxConcurrentRequests( 3 );
+        configuration.setHttpTransport( HttpTransport.JDK );
         configuration.setLightMode( true );
         configuration.setCredentialsUser( "Toto" );
         configuration.setCredentialsPassword( "t0t0" );
+        configuration.setCredentialsToken( "t0k3n" );
         configuration.setServerUrl( "http://mylocalhost" );
         configuration.setMaxTilesByColumn( 44 );
         configuration.setMaxTilesByRow( 45 );
@@ -55,9 +69,21 @@ public class ConfigurationTest {
         configuration.setSavedProjects( ImmutableList.of( project1, project2 ) );
         // Verify
         assertThat( configuration.getApiVersion( ), is( ApiVersion.API_7_0 ) );
+        assertThat( configuration.isAutoDetectApiVersion( ), is( false ) );
+        assertThat( configuration.getMaxParallelRequests( ), is( 12 ) );
+        assertThat( configuration.getPollingStrategy( ), is( PollingStrategy.CHANGE_FEED ) );
+        assertThat( configuration.isHedgedRequests( ), is( true ) );
+        assertThat( configuration.getPushPort( ), is( 8111 ) );
+        assertThat( configuration.getPushAddress( ), is( "0.0.0.0" ) );
+        assertThat( configuration.getPushSecret( ), is( "s3cr3t" ) );
+        assertThat( configuration.getMaxInteractiveRequests( ), is( 7 ) );
+        assertThat( configuration.getMaxRequestsPerSecond( ), is( 5 ) );
+        assertThat( configuration.getMaxConcurrentRequests( ), is( 3 ) );
+        assertThat( configuration.getHttpTransport( ), is( HttpTransport.JDK ) );
         assertThat( configuration.isLightMode( ), is( true ) );
         assertThat( configuration.getCredentialsUser( ), is( "Toto" ) );
         assertThat( configuration.getCredentialsPassword( ), is( "t0t0" ) );
+        assertThat( configuration.getCredentialsToken( ), is( "t0k3n" ) );
         assertThat( configuration.getServerUrl( ), is( "http://mylocalhost" ) );
         assertThat( configuration.getMaxTilesByColumn( ), is( 44 ) );
         assertThat( configuration.getMaxTilesByRow( ), is( 45 ) );
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2014 Cedric Longo.
+ *
+ * This file is part of Wall-T program.
+ *
+ * Wall-T is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * Wall-T is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with Wall-T.
+ * If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package utils.teamcity.wallt.model.event;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import utils.teamcity.wallt.model.build.BuildTypeData;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Date: 18/10/26
+ *
+ * @author agent
+ */
+public class WallScreenEventTest {
+
+    @Test
+    public void event_returns_displayed_and_next_build_types( ) {
+        // Setup
+        final BuildTypeData displayed = new BuildTypeData( "bt1", "name", "pid", "pname" );
+        final BuildTypeData next = new BuildTypeData( "bt2", "name", "pid", "pname" );
+        final WallScreenEvent event = new WallScreenEvent( ImmutableList.of( displayed ), ImmutableList.of( next ), Duration.ofSeconds( 10 ) );
+        // Exercise
+        // Verify
+        assertThat( event.getDisplayedBuildTypes( ), contains( displayed ) );
+        assertThat( event.getNextBuildTypes( ), contains( next ) );
+        assertThat( event.getNextScreenDelay( ), is( Duration.ofSeconds( 10 ) ) );
+    }
+
+}